@@ -0,0 +1,120 @@
+package de.fz_juelich.phyphox_interface.connection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import de.fz_juelich.phyphox_interface.data.PhyphoxBuffer;
+
+/**
+ * A streaming decoder for the JSON answer of the phone's "/get" request.<br>
+ * The JSON text is read token by token (using Google's 'gson' streaming API) and the values are written directly into a double array per buffer,
+ * so neither the whole answer (as String) nor a tree of JSON elements is kept in memory.<br>
+ * 
+ * The answer is expected to look like this (other fields are skipped):
+ * 
+ * <pre>
+ * {"buffer": {"bufferName": {"size": 0, "updateMode": "full", "buffer": [1.0, 2.0, ...]}, ...}, "status": {...}}
+ * </pre>
+ */
+class PhyphoxBufferDecoder {
+	
+	private static final int INITIAL_CAPACITY = 64;
+	
+	/**
+	 * Decode the buffers from a stream of JSON text.
+	 * 
+	 * @param input
+	 *        The stream of the HTTP answer (that is not closed by this method)
+	 * 
+	 * @param charset
+	 *        The charset of the stream (or null to use UTF-8)
+	 */
+	public List<PhyphoxBuffer> decode(InputStream input, Charset charset) throws IOException {
+		Reader reader = new InputStreamReader(input, charset != null ? charset : StandardCharsets.UTF_8);
+		return decode(reader);
+	}
+	
+	/**
+	 * Decode the buffers from a reader of JSON text (the reader is not closed by this method).
+	 */
+	public List<PhyphoxBuffer> decode(Reader input) throws IOException {
+		List<PhyphoxBuffer> buffers = new ArrayList<PhyphoxBuffer>();
+		JsonReader reader = new JsonReader(input);
+		//be as lenient as Gson.fromJson(...) was
+		reader.setLenient(true);
+		try {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (reader.nextName().equals("buffer")) {
+					readBuffers(reader, buffers);
+				}
+				else {
+					//e.g. the status of the experiment
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		}
+		catch (IllegalStateException | NumberFormatException e) {
+			//the JSON text is valid but doesn't have the expected structure
+			throw new IOException("The data from the phone has an unexpected structure.", e);
+		}
+		return buffers;
+	}
+	
+	private void readBuffers(JsonReader reader, List<PhyphoxBuffer> buffers) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String bufferName = reader.nextName();
+			PhyphoxBuffer buffer = new PhyphoxBuffer(bufferName, new double[0]);
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (reader.nextName().equals("buffer")) {
+					buffer = readValues(reader, bufferName);
+				}
+				else {
+					//e.g. size and updateMode
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			buffers.add(buffer);
+		}
+		reader.endObject();
+	}
+	
+	/**
+	 * Read the values of a buffer into a growing array (the capacity is doubled when needed). The array is not trimmed, but used as storage of the
+	 * buffer (that only uses the first values of the array).
+	 */
+	private PhyphoxBuffer readValues(JsonReader reader, String bufferName) throws IOException {
+		double[] values = new double[INITIAL_CAPACITY];
+		int size = 0;
+		reader.beginArray();
+		while (reader.hasNext()) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, values.length * 2);
+			}
+			if (reader.peek() == JsonToken.NULL) {
+				//the phone sends missing values (NaN) as null
+				reader.nextNull();
+				values[size++] = Double.NaN;
+			}
+			else {
+				values[size++] = reader.nextDouble();
+			}
+		}
+		reader.endArray();
+		return new PhyphoxBuffer(bufferName, values, size);
+	}
+}
\ No newline at end of file
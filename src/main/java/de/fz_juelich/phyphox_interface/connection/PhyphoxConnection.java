@@ -1,20 +1,31 @@
 package de.fz_juelich.phyphox_interface.connection;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.ParseException;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
 
@@ -22,14 +33,69 @@ import de.fz_juelich.phyphox_interface.data.PhyphoxBuffer;
 
 /**
  * The connection to phyphox (via REST) is implemented here. The requests are sent to the phone (in remote mode) and the raw data is received in this
- * class. The data is not kept here but is just passed on (Transformed and usable data is to be found in the class PhyphoxData in the data package).
+ * class. The data is not kept here but is just passed on (Transformed and usable data is to be found in the class PhyphoxData in the data package).<br>
+ * 
+ * The HTTP client (and it's pool of keep-alive connections) is created once and reused for every request, so the connection should be closed
+ * using the close() method when it's no longer needed.<br>
+ * 
+ * Every request is also available as non-blocking method (e.g. getDataAsync) that returns a CompletableFuture. The asynchronous requests are
+ * executed by an Executor that can be shared by many connections (by default a small thread pool that is shared by all connections is used).
  */
-public class PhyphoxConnection {
+public class PhyphoxConnection implements Closeable {
+	
+	public static final int DEFAULT_ASYNC_THREADS = 8;
 	
 	private PhyphoxConnectionSettings connection;
+	private Executor executor;//executes the asynchronous requests
+	private ThreadSafeClientConnManager connectionManager;//the pool of (keep-alive) connections to the phone
+	private DefaultHttpClient httpClient;//the client that is reused for all requests
+	private volatile boolean closed;
+	private PhyphoxBufferDecoder bufferDecoder;//decodes the buffers from the JSON stream
 	
 	public PhyphoxConnection(PhyphoxConnectionSettings connection) {
+		this(connection, DefaultExecutorHolder.DEFAULT_EXECUTOR);
+	}
+	/**
+	 * @param connection
+	 *        The connection settings (ip and port of the phone)
+	 * 
+	 * @param executor
+	 *        The executor that executes the asynchronous requests (can be shared with other connections)
+	 */
+	public PhyphoxConnection(PhyphoxConnectionSettings connection, Executor executor) {
 		this.connection = connection;
+		this.executor = Objects.requireNonNull(executor, "A null object is no valid executor.");
+		connectionManager = new ThreadSafeClientConnManager();
+		connectionManager.setMaxTotal(connection.getMaxConnections());
+		//all requests go to the same phone (so there is only one route)
+		connectionManager.setDefaultMaxPerRoute(connection.getMaxConnections());
+		httpClient = new DefaultHttpClient(connectionManager);
+		bufferDecoder = new PhyphoxBufferDecoder();
+		httpClient.setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+			
+			@Override
+			public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+				long keepAlive = super.getKeepAliveDuration(response, context);
+				if (keepAlive < 0) {
+					//the phone didn't send a keep-alive header, so use the time from the settings
+					keepAlive = PhyphoxConnection.this.connection.getKeepAliveMillis();
+				}
+				return keepAlive;
+			}
+		});
+	}
+	
+	/**
+	 * Close all pooled connections to the phone. The connection can't be used after it was closed.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		connectionManager.shutdown();
+	}
+	
+	public boolean isClosed() {
+		return closed;
 	}
 	
 	/**
@@ -184,11 +250,98 @@ public class PhyphoxConnection {
 	}
 	
 	/**
-	 * Collect the data from the phone using a HTTP-GET request and parse the data into a PhyphoxBuffer object.
+	 * Collect the data from the phone without blocking the calling thread.<br>
+	 * The returned future is completed exceptionally with a CompletionException (caused by a PhyphoxConnectionException) if the request fails.
+	 */
+	public CompletableFuture<List<PhyphoxBuffer>> getDataAsync(PhyphoxDataRequest request) {
+		return executeAsync(() -> getData(request));
+	}
+	/**
+	 * Collect the data from the phone without blocking the calling thread.<br>
+	 * The returned future is completed exceptionally with a CompletionException (caused by a PhyphoxConnectionException) if the request fails.
+	 */
+	public CompletableFuture<List<PhyphoxBuffer>> getDataAsync(String request) {
+		return executeAsync(() -> getData(request));
+	}
+	
+	/**
+	 * Remote start the experiment on the phone without blocking the calling thread.
+	 */
+	public CompletableFuture<Void> startExperimentAsync() {
+		return executeAsync(() -> {
+			startExperiment();
+			return null;
+		});
+	}
+	/**
+	 * Remote stop the experiment on the phone without blocking the calling thread.
+	 */
+	public CompletableFuture<Void> stopExperimentAsync() {
+		return executeAsync(() -> {
+			stopExperiment();
+			return null;
+		});
+	}
+	/**
+	 * Delete all the data of this experiment on the phone without blocking the calling thread.
+	 */
+	public CompletableFuture<Void> clearExperimentDataAsync() {
+		return executeAsync(() -> {
+			clearExperimentData();
+			return null;
+		});
+	}
+	/**
+	 * Send an user given value from an input element to a buffer on the phone without blocking the calling thread.
+	 */
+	public CompletableFuture<Void> setExperimentBufferAsync(String bufferName, String value) {
+		return executeAsync(() -> {
+			setExperimentBuffer(bufferName, value);
+			return null;
+		});
+	}
+	/**
+	 * Trigger an element of the experiment on the phone without blocking the calling thread.
+	 */
+	public CompletableFuture<Void> triggerExperimentElementAsync(String elementId) {
+		return executeAsync(() -> {
+			triggerExperimentElement(elementId);
+			return null;
+		});
+	}
+	
+	/**
+	 * Execute a (blocking) request using the executor of this connection.
+	 */
+	private <T> CompletableFuture<T> executeAsync(PhyphoxRequestCall<T> call) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return call.execute();
+			}
+			catch (PhyphoxConnectionException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+	
+	/**
+	 * Collect the data from the phone using a HTTP-GET request and parse the data into a PhyphoxBuffer object.<br>
+	 * The answer is decoded directly from the HTTP stream (without creating a String or a JSON tree first).
 	 */
 	private List<PhyphoxBuffer> getDataFromRestServerApache(String httpRequest) throws ParseException, IOException {
-		String jsonRepresentation = getDataInJsonRepresentation(httpRequest);
-		List<PhyphoxBuffer> data = getBufferDataFromJsonRepresentation(jsonRepresentation);
+		List<PhyphoxBuffer> data = executeGetRequest(httpRequest, httpEntity -> {
+			Charset charset = null;
+			ContentType contentType = ContentType.get(httpEntity);
+			if (contentType != null) {
+				charset = contentType.getCharset();
+			}
+			try (InputStream input = httpEntity.getContent()) {
+				List<PhyphoxBuffer> buffers = bufferDecoder.decode(input, charset);
+				//read the rest of the answer (if any) so the connection can be reused
+				EntityUtils.consume(httpEntity);
+				return buffers;
+			}
+		});
 		return data;
 	}
 	
@@ -206,69 +359,53 @@ public class PhyphoxConnection {
 	 * Tutorial from: https://howtodoinjava.com/httpclient/jaxrs-client-httpclient-get-post/
 	 */
 	private String getDataInJsonRepresentation(String request) throws ParseException, IOException {
+		//reading the entity completely releases the connection to the pool (to be reused by the next request)
+		return executeGetRequest(request, EntityUtils::toString);
+	}
+	
+	/**
+	 * Send a HTTP-GET request to the phone (using the pooled connections) and read the answer using the given handler.<br>
+	 * The handler has to read the entity completely, so the connection is released to the pool.
+	 */
+	private <T> T executeGetRequest(String request, EntityHandler<T> handler) throws ParseException, IOException {
+		if (closed) {
+			throw new IOException("The connection to the phone was already closed.");
+		}
+		
+		//Define a HttpGet request; You can choose between HttpPost, HttpDelete or HttpPut also.
+		//Choice depends on type of method you will be invoking.
+		
+		//System.out.println("Generating HTTP-GET request:\n" + request);
+		HttpGet getRequest = new HttpGet(request);
+		
+		//Set the API media type in http accept header (it always returns json for there is nothing else but...)
+		getRequest.addHeader("accept", "application/json");
 		
-		DefaultHttpClient httpClient = new DefaultHttpClient();
+		//remove connections that were closed by the phone or that exceeded their keep-alive time before they are reused
+		connectionManager.closeExpiredConnections();
 		
 		try {
-			//Define a HttpGet request; You can choose between HttpPost, HttpDelete or HttpPut also.
-			//Choice depends on type of method you will be invoking.
-			
-			//System.out.println("Generating HTTP-GET request:\n" + request);
-			HttpGet getRequest = new HttpGet(request);
-			
-			//Set the API media type in http accept header (it always returns json for there is nothing else but...)
-			getRequest.addHeader("accept", "application/json");
-			
 			//Send the request; It will immediately return the response in HttpResponse object
 			HttpResponse response = httpClient.execute(getRequest);
 			
+			//Now pull back the response object
+			HttpEntity httpEntity = response.getEntity();
+			
 			//verify the valid error code first
 			int statusCode = response.getStatusLine().getStatusCode();
 			if (statusCode != 200) {
+				//consume the content, so the connection is released to the pool
+				EntityUtils.consume(httpEntity);
 				throw new RuntimeException("Get data from experiment failed with HTTP error code : " + statusCode);
 			}
 			
-			//Now pull back the response object
-			HttpEntity httpEntity = response.getEntity();
-			String apiOutput = EntityUtils.toString(httpEntity);
-			
-			return apiOutput;
+			return handler.handle(httpEntity);
 		}
-		finally {
-			//Important: Close the connect
-			httpClient.getConnectionManager().shutdown();
-		}
-	}
-	
-	/**
-	 * Get the buffer data from the JSON representation using Google's 'gson' API:<br>
-	 * https://github.com/google/gson
-	 * 
-	 * Tutorial from: <br>
-	 * http://blog.mynotiz.de/programmieren/java-json-decode-tutorial-2074/ <br>
-	 * https://github.com/google/gson/blob/master/UserGuide.md
-	 */
-	private List<PhyphoxBuffer> getBufferDataFromJsonRepresentation(String jsonRepresentation) {
-		List<PhyphoxBuffer> buffers = new ArrayList<PhyphoxBuffer>();
-		Gson gson = new Gson();
-		
-		JsonObject json = gson.fromJson(jsonRepresentation, JsonObject.class);
-		JsonObject allBuffers = json.getAsJsonObject("buffer");
-		
-		for (Entry<String, JsonElement> buffer : allBuffers.entrySet()) {
-			String bufferName = buffer.getKey();
-			JsonObject value = buffer.getValue().getAsJsonObject();
-			JsonArray bufferDataAsArray = value.getAsJsonArray("buffer");
-			double[] bufferData = new double[bufferDataAsArray.size()];
-			for (int i = 0; i < bufferDataAsArray.size(); i++) {
-				bufferData[i] = bufferDataAsArray.get(i).getAsDouble();
-			}
-			
-			PhyphoxBuffer phyBuffer = new PhyphoxBuffer(bufferName, bufferData);
-			buffers.add(phyBuffer);
+		catch (IOException | RuntimeException e) {
+			//don't return a broken connection to the pool
+			getRequest.abort();
+			throw e;
 		}
-		
-		return buffers;
 	}
 	
 	private boolean getResultFromJsonRepresentation(String jsonRepresentation) {
@@ -282,4 +419,40 @@ public class PhyphoxConnection {
 		
 		return result;
 	}
+	
+	/**
+	 * A (blocking) request to the phone.
+	 */
+	@FunctionalInterface
+	private interface PhyphoxRequestCall<T> {
+		
+		public T execute() throws PhyphoxConnectionException;
+	}
+	
+	/**
+	 * Holds the executor that is shared by all connections that were not created with an own executor (created with the first of these connections).
+	 */
+	private static class DefaultExecutorHolder {
+		
+		private static final ExecutorService DEFAULT_EXECUTOR = Executors.newFixedThreadPool(DEFAULT_ASYNC_THREADS, new ThreadFactory() {
+			
+			private final AtomicInteger threadNumber = new AtomicInteger();
+			
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "phyphox_connection_thread_" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);//set to daemon to be terminated automatically when the application terminates
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Reads the content of a HTTP answer.
+	 */
+	@FunctionalInterface
+	private interface EntityHandler<T> {
+		
+		public T handle(HttpEntity httpEntity) throws ParseException, IOException;
+	}
 }
\ No newline at end of file
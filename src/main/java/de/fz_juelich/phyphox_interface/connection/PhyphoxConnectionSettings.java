@@ -1,19 +1,57 @@
 package de.fz_juelich.phyphox_interface.connection;
 
 /**
- * Simple class to hold the IP and port for a connection to the phone in remote mode. 
+ * Simple class to hold the IP and port for a connection to the phone in remote mode.<br>
+ * The settings also define the pool of (keep-alive) HTTP connections that is used by a PhyphoxConnection.
  */
 public class PhyphoxConnectionSettings {
 	
+	public static final int DEFAULT_MAX_CONNECTIONS = 2;
+	public static final long DEFAULT_KEEP_ALIVE_MILLIS = 5000;
+	
 	private String ip;
 	private int port;
+	private int maxConnections;//the maximum number of pooled connections to the phone
+	private long keepAliveMillis;//the time an idle connection is kept open (if the phone doesn't send a keep-alive header)
 	
 	public PhyphoxConnectionSettings(String ip, int port) {
+		this(ip, port, DEFAULT_MAX_CONNECTIONS, DEFAULT_KEEP_ALIVE_MILLIS);
+	}
+	/**
+	 * @param ip
+	 *        The IP of the phone
+	 * 
+	 * @param port
+	 *        The port of the phone's remote server
+	 * 
+	 * @param maxConnections
+	 *        The maximum number of connections that are kept in the pool (and can be used in parallel)
+	 * 
+	 * @param keepAliveMillis
+	 *        The time (in milliseconds) an idle connection is kept open to be reused, if the phone doesn't send a keep-alive header
+	 */
+	public PhyphoxConnectionSettings(String ip, int port, int maxConnections, long keepAliveMillis) {
+		if (maxConnections <= 0) {
+			throw new IllegalArgumentException("The maximum number of connections must be a value greater than zero.");
+		}
+		if (keepAliveMillis < 0) {
+			throw new IllegalArgumentException("The keep-alive time must not be negative.");
+		}
 		this.ip = ip;
 		this.port = port;
+		this.maxConnections = maxConnections;
+		this.keepAliveMillis = keepAliveMillis;
 	}
 	
 	public String getUrlAsString() {
 		return ip + ":" + port;
 	}
+	
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+	
+	public long getKeepAliveMillis() {
+		return keepAliveMillis;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package de.fz_juelich.phyphox_interface.data;
+
+/**
+ * The settings for an adaptive update rate, that is adjusted to the number of new samples the phone sends per update.<br>
+ * The update rate is chosen to receive about the target number of samples per update (based on the observed sample rate), but it's kept between
+ * the minimum and the maximum update rate. The update rate is also never lower than the measured duration of an update (round trip time), so the
+ * phone is never asked for new data before the last request was answered. The maximum update rate is the highest latency of the data.<br>
+ * 
+ * The number of samples is best observed when only the new data is requested (using a continues buffer). When full updates are used the phone
+ * sends all data on every update, so only the samples that were received in addition to the last update are counted as new samples.
+ */
+public class PhyphoxAdaptiveUpdateRate {
+	
+	private int minUpdateRate;
+	private int maxUpdateRate;
+	private int targetSamplesPerUpdate;
+	
+	/**
+	 * @param minUpdateRate
+	 *        The lowest time between two updates (in milliseconds)
+	 * 
+	 * @param maxUpdateRate
+	 *        The highest time between two updates (in milliseconds)
+	 * 
+	 * @param targetSamplesPerUpdate
+	 *        The number of new samples (of the largest buffer) that should be received with one update
+	 */
+	public PhyphoxAdaptiveUpdateRate(int minUpdateRate, int maxUpdateRate, int targetSamplesPerUpdate) {
+		if (minUpdateRate <= 0) {
+			throw new IllegalArgumentException("The minimum update rate must be a value greater than zero.");
+		}
+		if (maxUpdateRate < minUpdateRate) {
+			throw new IllegalArgumentException("The maximum update rate must not be lower than the minimum update rate.");
+		}
+		if (targetSamplesPerUpdate <= 0) {
+			throw new IllegalArgumentException("The target number of samples per update must be a value greater than zero.");
+		}
+		this.minUpdateRate = minUpdateRate;
+		this.maxUpdateRate = maxUpdateRate;
+		this.targetSamplesPerUpdate = targetSamplesPerUpdate;
+	}
+	
+	public int getMinUpdateRate() {
+		return minUpdateRate;
+	}
+	
+	public int getMaxUpdateRate() {
+		return maxUpdateRate;
+	}
+	
+	public int getTargetSamplesPerUpdate() {
+		return targetSamplesPerUpdate;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,347 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Joins the values of several buffers (from one or several experiments) on their time buffers, so the values can be combined although they were
+ * recorded at different times.<br>
+ * 
+ * Every source of the aligner is a value buffer with it's time buffer (the values and times are paired by their index, so the buffers don't need to
+ * have the same length when they are received). The values of all sources are calculated at common times using a PhyphoxInterpolation:
+ * <ul>
+ * <li>on a uniform grid (if a step is given) or</li>
+ * <li>at the times of the first source (the reference source)</li>
+ * </ul>
+ * The alignment works incrementally: a time is aligned as soon as all sources have values after that time; the samples that are not needed
+ * anymore are removed, so the whole history is never recomputed. The aligned data is stored in buffers (a time buffer and one buffer for every
+ * source) and passed to the listeners.
+ */
+public class PhyphoxAligner {
+	
+	public static final String TIME_BUFFER_NAME = "time";
+	
+	private final double step;//the step of the uniform grid (or 0 to use the times of the reference source)
+	private final PhyphoxInterpolation interpolation;
+	private final List<Source> sources = new ArrayList<Source>();
+	private final List<PhyphoxBuffer> alignedData = new ArrayList<PhyphoxBuffer>();//the time buffer and the buffers of the sources
+	private final List<PhyphoxDataListener> dataListeners = new ArrayList<PhyphoxDataListener>();
+	private boolean started;//whether values were aligned (no sources can be added afterwards)
+	private double lastAlignedTime = Double.NEGATIVE_INFINITY;
+	private double gridStart = Double.NaN;
+	private long gridIndex;//the index of the next time of the uniform grid
+	
+	/**
+	 * Create an aligner that calculates the values of all sources on a uniform grid (starting at the first time, at which all sources have values).
+	 * 
+	 * @param step
+	 *        The time between two aligned values
+	 * 
+	 * @param interpolation
+	 *        Defines how the values between two samples are calculated
+	 */
+	public PhyphoxAligner(double step, PhyphoxInterpolation interpolation) {
+		if (!(step > 0) || Double.isInfinite(step)) {
+			throw new IllegalArgumentException("The step must be a finite value greater than zero.");
+		}
+		this.step = step;
+		this.interpolation = Objects.requireNonNull(interpolation, "A null object is no valid interpolation.");
+		alignedData.add(new PhyphoxBuffer(TIME_BUFFER_NAME, new double[0]));
+	}
+	/**
+	 * Create an aligner that calculates the values of all sources at the times of the first source (the reference source).
+	 * 
+	 * @param interpolation
+	 *        Defines how the values between two samples are calculated
+	 */
+	public PhyphoxAligner(PhyphoxInterpolation interpolation) {
+		this.step = 0;
+		this.interpolation = Objects.requireNonNull(interpolation, "A null object is no valid interpolation.");
+		alignedData.add(new PhyphoxBuffer(TIME_BUFFER_NAME, new double[0]));
+	}
+	
+	/**
+	 * Add a source whose data is added using addData(int, double[], double[]).
+	 * 
+	 * @param name
+	 *        The name of the aligned buffer of the source
+	 * 
+	 * @return The id of the source
+	 */
+	public synchronized int addSource(String name) {
+		Objects.requireNonNull(name, "A null object is no valid buffer name.");
+		if (started) {
+			throw new IllegalStateException("Sources can only be added before the data is aligned.");
+		}
+		if (name.equals(TIME_BUFFER_NAME) || PhyphoxBuffer.getByName(alignedData, name).isPresent()) {
+			throw new IllegalArgumentException("The name '" + name + "' is already used by another buffer.");
+		}
+		Source source = new Source(alignedData.size());
+		sources.add(source);
+		alignedData.add(new PhyphoxBuffer(name, new double[0]));
+		return sources.size() - 1;
+	}
+	/**
+	 * Add a source that gets it's data from an experiment (using a PhyphoxBatchListener, so the data that is added to the experiment afterwards is
+	 * aligned). The aligned buffer has the name of the value buffer.
+	 */
+	public int addSource(PhyphoxExperiment experiment, String timeBuffer, String valueBuffer) {
+		return addSource(experiment, timeBuffer, valueBuffer, valueBuffer);
+	}
+	/**
+	 * Add a source that gets it's data from an experiment (using a PhyphoxBatchListener, so the data that is added to the experiment afterwards is
+	 * aligned).
+	 * 
+	 * @param experiment
+	 *        The experiment that contains the buffers
+	 * 
+	 * @param timeBuffer
+	 *        The name of the time buffer of the values
+	 * 
+	 * @param valueBuffer
+	 *        The name of the buffer that contains the values
+	 * 
+	 * @param name
+	 *        The name of the aligned buffer of the source
+	 * 
+	 * @return The id of the source
+	 */
+	public int addSource(PhyphoxExperiment experiment, String timeBuffer, String valueBuffer, String name) {
+		//check the buffer names
+		experiment.getBufferHandle(timeBuffer);
+		experiment.getBufferHandle(valueBuffer);
+		int source = addSource(name);
+		experiment.addBatchListener(batch -> {
+			int timeBufferId = batch.getBufferId(timeBuffer);
+			int valueBufferId = batch.getBufferId(valueBuffer);
+			synchronized (this) {
+				Source sourceData = sources.get(source);
+				sourceData.addTimes(batch.getArray(timeBufferId), batch.getOffset(timeBufferId), batch.getLength(timeBufferId));
+				sourceData.addValues(batch.getArray(valueBufferId), batch.getOffset(valueBufferId), batch.getLength(valueBufferId));
+				align();
+			}
+		});
+		return source;
+	}
+	
+	/**
+	 * Set a time offset of a source, that is added to all times of the source that are added afterwards (e.g. to combine experiments with different
+	 * time bases).
+	 */
+	public synchronized void setTimeOffset(int source, double timeOffset) {
+		getSource(source).timeOffset = timeOffset;
+	}
+	
+	/**
+	 * Add new data of a source and align the data (the times and values are paired by their index since the first added data; if there are more
+	 * times than values or the other way round, the remaining times or values are paired with the next added data).
+	 */
+	public synchronized void addData(int source, double[] times, double[] values) {
+		Source sourceData = getSource(source);
+		sourceData.addTimes(times, 0, times.length);
+		sourceData.addValues(values, 0, values.length);
+		align();
+	}
+	
+	private Source getSource(int source) {
+		if (source < 0 || source >= sources.size()) {
+			throw new IllegalArgumentException("A source with the id " + source + " doesn't exist.");
+		}
+		return sources.get(source);
+	}
+	
+	/**
+	 * Calculate the values of all sources at the times that can be aligned (all sources have values after the time).
+	 */
+	private void align() {
+		if (sources.isEmpty()) {
+			return;
+		}
+		double lastCommonTime = Double.POSITIVE_INFINITY;//the last time at which all sources have values
+		double firstCommonTime = Double.NEGATIVE_INFINITY;//the first time at which all sources have values
+		for (Source source : sources) {
+			if (source.size() == 0) {
+				return;
+			}
+			lastCommonTime = Math.min(lastCommonTime, source.getTime(source.size() - 1));
+			firstCommonTime = Math.max(firstCommonTime, source.getTime(0));
+		}
+		double[] times = findAlignedTimes(firstCommonTime, lastCommonTime);
+		if (times.length == 0) {
+			return;
+		}
+		started = true;
+		lastAlignedTime = times[times.length - 1];
+		
+		List<PhyphoxBuffer> newData = new ArrayList<PhyphoxBuffer>(alignedData.size());
+		newData.add(new PhyphoxBuffer(TIME_BUFFER_NAME, times));
+		for (Source source : sources) {
+			double[] values = new double[times.length];
+			for (int i = 0; i < times.length; i++) {
+				values[i] = source.getValueAt(times[i], interpolation);
+			}
+			//the samples before the last aligned time are not needed anymore
+			source.removeSamplesBefore(lastAlignedTime);
+			newData.add(new PhyphoxBuffer(alignedData.get(source.bufferIndex).getName(), values));
+		}
+		for (int i = 0; i < alignedData.size(); i++) {
+			alignedData.get(i).attachData(newData.get(i));
+		}
+		for (PhyphoxDataListener listener : dataListeners) {
+			listener.updateData(newData);
+		}
+	}
+	
+	/**
+	 * Find the next times at which the values are aligned (on the uniform grid or the times of the reference source).
+	 */
+	private double[] findAlignedTimes(double firstCommonTime, double lastCommonTime) {
+		double[] times = new double[16];
+		int count = 0;
+		if (step > 0) {
+			if (Double.isNaN(gridStart)) {
+				gridStart = firstCommonTime;
+			}
+			double time;
+			while ((time = gridStart + gridIndex * step) <= lastCommonTime) {
+				if (count == times.length) {
+					times = Arrays.copyOf(times, 2 * count);
+				}
+				times[count++] = time;
+				gridIndex++;
+			}
+		}
+		else {
+			Source reference = sources.get(0);
+			for (int i = 0; i < reference.size(); i++) {
+				double time = reference.getTime(i);
+				if (time > lastCommonTime) {
+					break;
+				}
+				if (time > lastAlignedTime && time >= firstCommonTime) {
+					if (count == times.length) {
+						times = Arrays.copyOf(times, 2 * count);
+					}
+					times[count++] = time;
+				}
+			}
+		}
+		return Arrays.copyOf(times, count);
+	}
+	
+	/**
+	 * Get the aligned data: the time buffer (with the name TIME_BUFFER_NAME) and the buffers of all sources (in the order they were added).<br>
+	 * The buffers are not cloned, so be careful when changing them.
+	 */
+	public synchronized List<PhyphoxBuffer> getAlignedData() {
+		return new ArrayList<PhyphoxBuffer>(alignedData);
+	}
+	
+	/**
+	 * Add a listener that is informed about the newly aligned data (the time buffer and the buffers of all sources).
+	 */
+	public synchronized void addDataListener(PhyphoxDataListener listener) {
+		dataListeners.add(listener);
+	}
+	public synchronized void removeDataListener(PhyphoxDataListener listener) {
+		dataListeners.remove(listener);
+	}
+	
+	/**
+	 * The samples of a source, that were not aligned yet (and the last aligned sample that is needed for the interpolation).
+	 */
+	private static class Source {
+		
+		private final int bufferIndex;//the index of the source's buffer in the aligned data
+		private double timeOffset;
+		private double[] times = new double[16];
+		private double[] values = new double[16];
+		private int start;//the index of the first sample in the arrays
+		private int timeCount;//the number of times in the array (including the removed samples before start)
+		private int valueCount;//the number of values in the array (including the removed samples before start)
+		private int position;//the index of the last sample that was used for an interpolation (the times are aligned in increasing order)
+		
+		public Source(int bufferIndex) {
+			this.bufferIndex = bufferIndex;
+		}
+		
+		/**
+		 * The number of samples (pairs of a time and a value).
+		 */
+		public int size() {
+			return Math.min(timeCount, valueCount) - start;
+		}
+		
+		public double getTime(int index) {
+			return times[start + index];
+		}
+		
+		public void addTimes(double[] newTimes, int offset, int length) {
+			ensureCapacity(timeCount + length);
+			for (int i = 0; i < length; i++) {
+				times[timeCount + i] = newTimes[offset + i] + timeOffset;
+			}
+			timeCount += length;
+		}
+		
+		public void addValues(double[] newValues, int offset, int length) {
+			ensureCapacity(valueCount + length);
+			System.arraycopy(newValues, offset, values, valueCount, length);
+			valueCount += length;
+		}
+		
+		private void ensureCapacity(int capacity) {
+			if (capacity <= times.length) {
+				return;
+			}
+			//remove the samples before start before the arrays are enlarged
+			System.arraycopy(times, start, times, 0, timeCount - start);
+			System.arraycopy(values, start, values, 0, valueCount - start);
+			capacity -= start;
+			timeCount -= start;
+			valueCount -= start;
+			start = 0;
+			if (capacity > times.length) {
+				int newLength = Math.max(capacity, 2 * times.length);
+				times = Arrays.copyOf(times, newLength);
+				values = Arrays.copyOf(values, newLength);
+			}
+		}
+		
+		/**
+		 * Calculate the value at a time (between the first and the last time of the samples).
+		 */
+		public double getValueAt(double time, PhyphoxInterpolation interpolation) {
+			int index = findLastSampleNotAfter(time);
+			double sampleTime = getTime(index);
+			if (sampleTime == time || index == size() - 1 || interpolation == PhyphoxInterpolation.ZERO_ORDER_HOLD) {
+				return values[start + index];
+			}
+			double nextTime = getTime(index + 1);
+			double value = values[start + index];
+			double nextValue = values[start + index + 1];
+			return value + (nextValue - value) * (time - sampleTime) / (nextTime - sampleTime);
+		}
+		
+		/**
+		 * Find the index of the last sample with a time that is not after the given time (or the first sample if all samples are after the time).<br>
+		 * The times are aligned in increasing order, so the search starts at the last found sample.
+		 */
+		private int findLastSampleNotAfter(double time) {
+			while (position + 1 < size() && getTime(position + 1) <= time) {
+				position++;
+			}
+			return position;
+		}
+		
+		/**
+		 * Remove the samples that are not needed to calculate the values at the given time (or later).
+		 */
+		public void removeSamplesBefore(double time) {
+			start += findLastSampleNotAfter(time);
+			position = 0;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,265 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A listener that informs another listener asynchronously (see PhyphoxExperiment.addAsyncDataListener).<br>
+ * 
+ * The new data is added to a bounded queue and the listener is informed by it's own thread, so a slow listener doesn't slow down the data updates
+ * (or the other listeners). When the queue is full the PhyphoxOverflowPolicy defines what happens to the new data.
+ */
+public class PhyphoxAsyncDataListener implements PhyphoxDataListener {
+	
+	private final PhyphoxDataListener listener;
+	private final int queueCapacity;
+	private final PhyphoxOverflowPolicy overflowPolicy;
+	
+	private final Deque<List<PhyphoxBuffer>> queue;//the batches that wait to be dispatched to the listener
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final Thread dispatchThread;
+	private boolean closed;
+	
+	private int maxQueueSize;
+	private long deliveredBatches;
+	private long droppedBatches;
+	private long coalescedBatches;
+	
+	/**
+	 * @param listener
+	 *        The listener that is informed about the new data
+	 * 
+	 * @param queueCapacity
+	 *        The maximum number of batches that wait to be dispatched to the listener
+	 * 
+	 * @param overflowPolicy
+	 *        Defines what happens to new data when the queue is full
+	 */
+	public PhyphoxAsyncDataListener(PhyphoxDataListener listener, int queueCapacity, PhyphoxOverflowPolicy overflowPolicy) {
+		this.listener = Objects.requireNonNull(listener, "A null object is no valid listener.");
+		this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "A null object is no valid overflow policy.");
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException("The queue capacity must be a value greater than zero.");
+		}
+		this.queueCapacity = queueCapacity;
+		queue = new ArrayDeque<List<PhyphoxBuffer>>(queueCapacity);
+		dispatchThread = new Thread(this::dispatchData, "phyphox_listener_thread");
+		dispatchThread.setDaemon(true);//set to daemon to be terminated automatically when the application terminates
+		dispatchThread.start();
+	}
+	
+	/**
+	 * Add the new data to the queue of the listener (the caller is only blocked if the queue is full and the overflow policy is BLOCK).<br>
+	 * The experiment calls this method without holding it's lock, so the listener can use the experiment while the caller is blocked.
+	 */
+	@Override
+	public void updateData(List<PhyphoxBuffer> newData) {
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			if (queue.size() == queueCapacity) {
+				switch (overflowPolicy) {
+					case BLOCK:
+						while (queue.size() == queueCapacity && !closed) {
+							notFull.await();
+						}
+						if (closed) {
+							return;
+						}
+						break;
+					case DROP_OLDEST:
+						queue.pollFirst();
+						droppedBatches++;
+						break;
+					case COALESCE:
+						newData = coalesce(queue.pollLast(), newData);
+						coalescedBatches++;
+						break;
+				}
+			}
+			queue.addLast(newData);
+			maxQueueSize = Math.max(maxQueueSize, queue.size());
+			notEmpty.signal();
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Combine two batches of new data into one batch (the new values of every buffer are attached to the older values).
+	 */
+	static List<PhyphoxBuffer> coalesce(List<PhyphoxBuffer> olderData, List<PhyphoxBuffer> newerData) {
+		List<PhyphoxBuffer> coalesced = new ArrayList<PhyphoxBuffer>(olderData.size());
+		for (PhyphoxBuffer buffer : olderData) {
+			coalesced.add(buffer.clone());
+		}
+		for (PhyphoxBuffer buffer : newerData) {
+			Optional<PhyphoxBuffer> older = PhyphoxBuffer.getByName(coalesced, buffer.getName());
+			if (older.isPresent()) {
+				older.get().attachData(buffer);
+			}
+			else {
+				coalesced.add(buffer);
+			}
+		}
+		return coalesced;
+	}
+	
+	/**
+	 * The loop of the dispatch thread: take the batches from the queue and inform the listener.
+	 */
+	private void dispatchData() {
+		while (true) {
+			List<PhyphoxBuffer> newData;
+			lock.lock();
+			try {
+				while (queue.isEmpty() && !closed) {
+					notEmpty.await();
+				}
+				if (queue.isEmpty()) {
+					//closed and all batches were dispatched
+					return;
+				}
+				newData = queue.pollFirst();
+				notFull.signal();
+			}
+			catch (InterruptedException ie) {
+				return;
+			}
+			finally {
+				lock.unlock();
+			}
+			try {
+				listener.updateData(newData);
+			}
+			catch (RuntimeException e) {
+				//a failing listener must not stop the dispatch of the following batches
+				Thread thread = Thread.currentThread();
+				thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+			}
+			lock.lock();
+			try {
+				deliveredBatches++;
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+	}
+	
+	/**
+	 * Stop the dispatch thread after the waiting batches were dispatched (new data is ignored afterwards).
+	 */
+	public void close() {
+		lock.lock();
+		try {
+			closed = true;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Wait until the dispatch thread has stopped (after close() was called).
+	 */
+	public void awaitTermination() throws InterruptedException {
+		dispatchThread.join();
+	}
+	
+	/**
+	 * The listener that is informed asynchronously.
+	 */
+	public PhyphoxDataListener getListener() {
+		return listener;
+	}
+	
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+	
+	public PhyphoxOverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+	
+	/**
+	 * The number of batches that currently wait to be dispatched to the listener.
+	 */
+	public int getQueueSize() {
+		lock.lock();
+		try {
+			return queue.size();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * The maximum number of batches that were waiting in the queue at the same time.
+	 */
+	public int getMaxQueueSize() {
+		lock.lock();
+		try {
+			return maxQueueSize;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * The number of batches that were dispatched to the listener.
+	 */
+	public long getDeliveredBatches() {
+		lock.lock();
+		try {
+			return deliveredBatches;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * The number of batches that were dropped because the queue was full (DROP_OLDEST).
+	 */
+	public long getDroppedBatches() {
+		lock.lock();
+		try {
+			return droppedBatches;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * The number of batches that were coalesced with another batch because the queue was full (COALESCE).
+	 */
+	public long getCoalescedBatches() {
+		lock.lock();
+		try {
+			return coalescedBatches;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+}
\ No newline at end of file
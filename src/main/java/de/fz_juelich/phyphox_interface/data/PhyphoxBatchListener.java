@@ -0,0 +1,13 @@
+package de.fz_juelich.phyphox_interface.data;
+
+/**
+ * An interface to be informed about changes in the data, without creating new buffers for every update (see PhyphoxDataBatch).
+ */
+public interface PhyphoxBatchListener {
+	
+	/**
+	 * @param batch
+	 *        The new data of all buffers; the batch (and the arrays it references) is reused, so it's only valid until the method returns
+	 */
+	public void updateData(PhyphoxDataBatch batch);
+}
\ No newline at end of file
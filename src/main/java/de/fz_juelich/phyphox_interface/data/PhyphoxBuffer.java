@@ -1,28 +1,82 @@
 package de.fz_juelich.phyphox_interface.data;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * A named buffer of double values (e.g. the data of a sensor or the time).<br>
+ * The values are stored in an array that can be larger than the buffer's size. The capacity of the array is doubled when it's full, so attaching
+ * new data only copies the existing data now and then (amortized O(1) per value) instead of copying everything on every attach.<br>
+ * 
+ * The array is used as a ring buffer (the first value of the buffer doesn't need to be at the start of the array), so the oldest values can be
+ * removed without copying the other values. If a maximum size is set, the oldest values are overwritten when new data is attached to a full
+ * buffer, so the memory that is used by the buffer stays constant.<br>
+ * 
+ * If a spill storage is used, only the last values are kept in the array. The older values are moved to a file that is mapped into memory (see
+ * PhyphoxSpillStorage), so the number of values is not limited by the heap size.
+ */
 public class PhyphoxBuffer implements Cloneable {
 	
+	public static final int UNLIMITED_SIZE = Integer.MAX_VALUE;
+	
 	private String name;
-	private double[] data;
+	private double[] data;//the last values (as ring buffer; only 'heapSize' values, starting at index 'start', are used)
+	private int start;//the index of the first value in the data array
+	private int heapSize;//the number of values in the data array
+	private int maxSize = UNLIMITED_SIZE;//the maximum number of values (the oldest values are removed if there are more)
+	private long removedValues;//the number of (oldest) values that were removed from the buffer
+	
+	private PhyphoxSpillStorage spillStorage;//the settings of the spill storage (or null if all values are kept on the heap)
+	private PhyphoxMappedStorage spilledData;//the older values, that were moved to a file (or null if no spill storage is used)
 	
 	public PhyphoxBuffer(String name, double[] data) {
+		this(name, data, data.length);
+	}
+	/**
+	 * Create a buffer that uses the first values of the given array (the array is not copied, but used as storage of the buffer).
+	 * 
+	 * @param name
+	 *        The name of the buffer
+	 * 
+	 * @param data
+	 *        The array that contains the values
+	 * 
+	 * @param size
+	 *        The number of values (at the start of the array) that are used
+	 */
+	public PhyphoxBuffer(String name, double[] data, int size) {
+		if (size < 0 || size > data.length) {
+			throw new IllegalArgumentException("The size of the buffer must be between 0 and the length of the data array.");
+		}
 		this.name = name;
 		this.data = data;
+		this.heapSize = size;
+	}
+	/**
+	 * Create a buffer that reads it's values from a file that is mapped into memory (e.g. a recording), without copying them. New values are added on
+	 * the heap.
+	 */
+	PhyphoxBuffer(String name, PhyphoxMappedStorage storedData) {
+		this.name = name;
+		this.data = new double[0];
+		this.spilledData = storedData;
 	}
 	private PhyphoxBuffer(PhyphoxBuffer copy, int startIndex) {
 		this.name = copy.name;
-		this.data = new double[Math.max(copy.data.length - startIndex, 0)];
-		if (copy.size() - startIndex > 0) {
-			System.arraycopy(copy.data, startIndex, data, 0, data.length);
-		}
+		this.data = new double[Math.max(copy.size() - startIndex, 0)];
+		this.heapSize = data.length;
+		copy.copyValues(startIndex, data, 0, heapSize);
 	}
 	
 	public static Optional<PhyphoxBuffer> getByName(List<PhyphoxBuffer> buffers, String name) {
-		Optional<PhyphoxBuffer> searchedBuffer = buffers.stream().filter(buffer -> buffer.getName().equals(name)).findFirst();
-		return searchedBuffer;
+		//a simple loop instead of a stream, because the method is used for every received buffer
+		for (PhyphoxBuffer buffer : buffers) {
+			if (buffer.getName().equals(name)) {
+				return Optional.of(buffer);
+			}
+		}
+		return Optional.empty();
 	}
 	
 	public String getName() {
@@ -32,27 +86,344 @@ public class PhyphoxBuffer implements Cloneable {
 		this.name = name;
 	}
 	
+	/**
+	 * Get the values of the buffer as an array that has exactly the buffer's size.<br>
+	 * If the storage array has exactly the buffer's values it's returned without a copy (changes to the array change the buffer). Otherwise (the
+	 * storage array has spare capacity, the values don't start at the beginning of the array or values were spilled to a file) the values are copied
+	 * into a new array, while the storage array is kept (so the next attach doesn't need to enlarge it again). Use get(int) or
+	 * getCopyFromIndex(int) instead, if possible.
+	 */
 	public double[] getData() {
-		return data;
+		if (getSpilledSize() > 0) {
+			double[] values = new double[size()];
+			copyValues(0, values, 0, values.length);
+			return values;
+		}
+		if (start == 0 && data.length == heapSize) {
+			return data;
+		}
+		return toArray(heapSize);
 	}
 	public void setData(double[] data) {
+		if (spilledData != null) {
+			spilledData.removeOldest(spilledData.size());
+		}
 		this.data = data;
+		this.start = 0;
+		this.heapSize = data.length;
+		if (heapSize > maxSize) {
+			removeOldest(heapSize - maxSize);
+		}
+		spillOldest(heapSize - getHeapCapacity());
+	}
+	
+	/**
+	 * Get a single value of the buffer.
+	 */
+	public double get(int index) {
+		int spilledSize = getSpilledSize();
+		if (index < 0 || index >= spilledSize + heapSize) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		if (index < spilledSize) {
+			return spilledData.get(index);
+		}
+		return data[toArrayIndex(index - spilledSize)];
 	}
+	
 	/**
-	 * Add new data to the end of the buffer (the array size is adapted).
+	 * Add new data to the end of the buffer (the capacity of the storage array is doubled if needed).<br>
+	 * If the buffer has a maximum size the oldest values are removed to make room for the new data.
 	 */
 	public void attachData(double[] newData) {
-		double[] newDataArray = new double[data.length + newData.length];
-		System.arraycopy(data, 0, newDataArray, 0, data.length);
-		System.arraycopy(newData, 0, newDataArray, data.length, newData.length);
-		data = newDataArray;
+		attachData(newData, 0, newData.length);
+	}
+	/**
+	 * Add the data of another buffer to the end of this buffer (the capacity of the storage array is doubled if needed).<br>
+	 * If the buffer has a maximum size the oldest values are removed to make room for the new data.
+	 */
+	public void attachData(PhyphoxBuffer newData) {
+		if (newData.getSpilledSize() > 0) {
+			attachData(newData.getData());
+			return;
+		}
+		int firstPart = Math.min(newData.heapSize, newData.data.length - newData.start);
+		attachData(newData.data, newData.start, firstPart);
+		attachData(newData.data, 0, newData.heapSize - firstPart);
+	}
+	private void attachData(double[] newData, int offset, int length) {
+		if (length == 0) {
+			return;
+		}
+		if (length > maxSize) {
+			//only the last values of the new data fit into the buffer
+			removedValues += length - maxSize;
+			offset += length - maxSize;
+			length = maxSize;
+		}
+		if (size() + length > maxSize) {
+			//overwrite the oldest values
+			removeOldest(size() + length - maxSize);
+		}
+		int heapCapacity = getHeapCapacity();
+		if (heapSize + length > heapCapacity) {
+			//move the oldest values to the file to make room for the new data
+			spillOldest(heapSize + length - heapCapacity);
+			if (length > heapCapacity) {
+				//the first values of the new data are moved to the file directly
+				int spilled = length - heapCapacity;
+				appendToSpilledData(newData, offset, spilled);
+				offset += spilled;
+				length -= spilled;
+			}
+		}
+		ensureCapacity(heapSize + length);
+		int end = toArrayIndex(heapSize);
+		int firstPart = Math.min(length, data.length - end);
+		System.arraycopy(newData, offset, data, end, firstPart);
+		System.arraycopy(newData, offset + firstPart, data, 0, length - firstPart);
+		heapSize += length;
+	}
+	
+	/**
+	 * Remove the oldest values from the buffer (without copying the other values).
+	 * 
+	 * @param count
+	 *        The number of values that are removed (if the buffer has less values all values are removed)
+	 */
+	public void removeOldest(int count) {
+		count = Math.min(Math.max(count, 0), size());
+		int spilledCount = Math.min(count, getSpilledSize());
+		if (spilledCount > 0) {
+			spilledData.removeOldest(spilledCount);
+		}
+		removeOldestFromHeap(count - spilledCount);
+		removedValues += count;
+	}
+	private void removeOldestFromHeap(int count) {
+		if (count == heapSize) {
+			start = 0;
+		}
+		else {
+			start = toArrayIndex(count);
+		}
+		heapSize -= count;
+	}
+	
+	/**
+	 * The number of (oldest) values that were removed from the buffer (by removeOldest(int) or because the maximum size was reached).<br>
+	 * The index of a value in this buffer plus the number of removed values is the index that the value had when it was attached.
+	 */
+	public long getRemovedValues() {
+		return removedValues;
+	}
+	/**
+	 * Count the values of another buffer as removed values of this buffer (e.g. when a buffer is cleared by replacing it with an empty buffer), so the
+	 * indices that are counted from the start of the recording continue.
+	 */
+	void continueRemovedValues(PhyphoxBuffer previous) {
+		removedValues = previous.getRemovedValues() + previous.size();
+	}
+	
+	public int getMaxSize() {
+		return maxSize;
+	}
+	/**
+	 * Set the maximum number of values that are kept in the buffer (or UNLIMITED_SIZE to keep all values).<br>
+	 * When new data is attached to a full buffer the oldest values are overwritten (like in a ring buffer), so the buffer's memory stays constant. If
+	 * the buffer already has more values, the oldest values are removed.
+	 */
+	public void setMaxSize(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("The maximum size of a buffer must be a value greater than zero.");
+		}
+		this.maxSize = maxSize;
+		if (size() > maxSize) {
+			removeOldest(size() - maxSize);
+		}
+		if (data.length > maxSize) {
+			//the array will never need more space than the maximum size
+			data = toArray(maxSize);
+			start = 0;
+		}
+	}
+	
+	public PhyphoxSpillStorage getSpillStorage() {
+		return spillStorage;
+	}
+	/**
+	 * Use a spill storage, that moves the older values to a file (or null to keep all values on the heap).<br>
+	 * If a spill storage is already used, it's values are moved back to the heap (and it's file is deleted) before the new spill storage is used.
+	 */
+	public void setSpillStorage(PhyphoxSpillStorage spillStorage) throws IOException {
+		if (spilledData != null) {
+			//move all values back to the heap
+			double[] values = getData();
+			closeSpilledData();
+			data = values;
+			start = 0;
+			heapSize = values.length;
+		}
+		this.spillStorage = spillStorage;
+		if (spillStorage != null) {
+			spilledData = new PhyphoxMappedStorage(spillStorage.getDirectory(), name);
+			spillOldest(heapSize - spillStorage.getHeapCapacity());
+			if (data.length > spillStorage.getHeapCapacity()) {
+				data = toArray(heapSize);
+				start = 0;
+			}
+		}
+	}
+	
+	/**
+	 * Delete the file of the spill storage (if any). The spilled values can still be read, but no more values can be added to the buffer.
+	 */
+	public void closeSpillStorage() throws IOException {
+		if (spilledData != null) {
+			spilledData.close();
+		}
+	}
+	
+	private void closeSpilledData() throws IOException {
+		try {
+			spilledData.close();
+		}
+		finally {
+			spilledData = null;
+		}
+	}
+	
+	/**
+	 * The number of values that were moved to the file of the spill storage.
+	 */
+	public int getSpilledSize() {
+		return spilledData != null ? spilledData.size() : 0;
+	}
+	
+	private int getHeapCapacity() {
+		return spillStorage != null ? spillStorage.getHeapCapacity() : UNLIMITED_SIZE;
+	}
+	
+	/**
+	 * Move the oldest values from the heap to the file of the spill storage.
+	 */
+	private void spillOldest(int count) {
+		count = Math.min(count, heapSize);
+		if (count <= 0) {
+			return;
+		}
+		int firstPart = Math.min(count, data.length - start);
+		appendToSpilledData(data, start, firstPart);
+		appendToSpilledData(data, 0, count - firstPart);
+		removeOldestFromHeap(count);
+	}
+	
+	private void appendToSpilledData(double[] values, int offset, int length) {
+		if (length > 0) {
+			spilledData.append(values, offset, length);
+		}
+	}
+	
+	/**
+	 * Make sure the storage array can hold at least the given number of values (at least doubling the capacity when it grows, but not above the
+	 * maximum size or the heap capacity).
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > data.length) {
+			int limit = Math.min(maxSize, getHeapCapacity());
+			int newCapacity = Math.max(capacity, (int) Math.min((long) data.length * 2, limit));
+			data = toArray(newCapacity);
+			start = 0;
+		}
 	}
 	
 	/**
-	 * Get the size of this buffer (the number of elements in the buffers array).
+	 * Copy the values of the storage array in order into a new array (of the given length, that must not be smaller than the number of values in the
+	 * storage array).
+	 */
+	private double[] toArray(int length) {
+		double[] array = new double[length];
+		copyHeapValues(0, array, 0, heapSize);
+		return array;
+	}
+	
+	/**
+	 * Copy values of the buffer into an array (the values can be split into the spilled values and two parts of the ring buffer).
+	 */
+	void copyValues(int index, double[] dest, int destIndex, int length) {
+		if (length <= 0) {
+			return;
+		}
+		int spilledSize = getSpilledSize();
+		if (index < spilledSize) {
+			int spilledPart = Math.min(length, spilledSize - index);
+			spilledData.copyValues(index, dest, destIndex, spilledPart);
+			destIndex += spilledPart;
+			length -= spilledPart;
+			index += spilledPart;
+		}
+		copyHeapValues(index - spilledSize, dest, destIndex, length);
+	}
+	private void copyHeapValues(int index, double[] dest, int destIndex, int length) {
+		if (length <= 0) {
+			return;
+		}
+		int arrayIndex = toArrayIndex(index);
+		int firstPart = Math.min(length, data.length - arrayIndex);
+		System.arraycopy(data, arrayIndex, dest, destIndex, firstPart);
+		System.arraycopy(data, 0, dest, destIndex + firstPart, length - firstPart);
+	}
+	
+	/**
+	 * Find a range of values in the storage array, if the values are stored in one piece (without copying them).
+	 * 
+	 * @return The index of the first value in the storage array (see getStorageArray()) or -1 if the values are spilled or split by the end of the
+	 *         ring buffer
+	 */
+	int getStorageIndex(int index, int length) {
+		int heapIndex = index - getSpilledSize();
+		if (heapIndex < 0 || length <= 0 || heapIndex + length > heapSize) {
+			return -1;
+		}
+		int arrayIndex = toArrayIndex(heapIndex);
+		return arrayIndex + length <= data.length ? arrayIndex : -1;
+	}
+	/**
+	 * The array that stores the values on the heap (as ring buffer). The array is replaced when the buffer grows.
+	 */
+	double[] getStorageArray() {
+		return data;
+	}
+	
+	/**
+	 * Convert an index of the values on the heap to the index in the storage array.
+	 */
+	private int toArrayIndex(int index) {
+		int arrayIndex = start + index;
+		if (arrayIndex >= data.length) {
+			arrayIndex -= data.length;
+		}
+		return arrayIndex;
+	}
+	
+	/**
+	 * Get the size of this buffer (the number of values in the buffer).
 	 */
 	public int size() {
-		return data.length;
+		return getSpilledSize() + heapSize;
+	}
+	
+	/**
+	 * Get a read-only view of the values from fromIndex (inclusive) to toIndex (exclusive), without copying them.
+	 */
+	public PhyphoxBufferView view(int fromIndex, int toIndex) {
+		return new PhyphoxBufferView(this, fromIndex, toIndex);
+	}
+	/**
+	 * Get a read-only view of the values starting from the given start index, without copying them (like getCopyFromIndex, but without the copy).
+	 */
+	public PhyphoxBufferView viewFromIndex(int startIndex) {
+		return new PhyphoxBufferView(this, Math.min(startIndex, size()), size());
 	}
 	
 	/**
@@ -0,0 +1,62 @@
+package de.fz_juelich.phyphox_interface.data;
+
+/**
+ * A value that is calculated from the values of a buffer (e.g. PhyphoxStatistics) and updated by the experiment whenever new data is added to the
+ * buffer, so it doesn't need to read the values of the buffer again.<br>
+ * The values that are used are defined by a window like the data of a buffer that is kept (see PhyphoxRetentionPolicy).
+ */
+public abstract class PhyphoxBufferAggregate {
+	
+	private final String bufferName;
+	private final int bufferIndex;
+	private final PhyphoxRetentionPolicy window;
+	private long nextIndex;//the index of the next value of the buffer that is added, counted from the start of the recording
+	
+	PhyphoxBufferAggregate(String bufferName, int bufferIndex, PhyphoxRetentionPolicy window) {
+		this.bufferName = bufferName;
+		this.bufferIndex = bufferIndex;
+		this.window = window;
+	}
+	
+	public String getBufferName() {
+		return bufferName;
+	}
+	
+	/**
+	 * The window of the values that are used (PhyphoxRetentionPolicy.UNLIMITED for all values).
+	 */
+	public PhyphoxRetentionPolicy getWindow() {
+		return window;
+	}
+	
+	/**
+	 * Whether only the last values are used (a sample count or a time window).
+	 */
+	protected boolean isSlidingWindow() {
+		return window.isTimeWindow() || window.getMaxSamples() != PhyphoxBuffer.UNLIMITED_SIZE;
+	}
+	
+	int getBufferIndex() {
+		return bufferIndex;
+	}
+	
+	long getNextIndex() {
+		return nextIndex;
+	}
+	void setNextIndex(long nextIndex) {
+		this.nextIndex = nextIndex;
+	}
+	
+	/**
+	 * Add a value of the buffer and remove the values that left the window.
+	 * 
+	 * @param time
+	 *        The time of the value (only used for time windows)
+	 */
+	abstract void add(double time, double value);
+	
+	/**
+	 * Remove all values (e.g. when the buffer was cleared).
+	 */
+	abstract void reset();
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package de.fz_juelich.phyphox_interface.data;
+
+/**
+ * A resolved reference to a buffer of an experiment (see PhyphoxExperiment.getBufferHandle(String)).<br>
+ * The buffer is looked up by it's name once, so the methods of the experiment that take a handle access the buffer directly (without comparing
+ * names). The buffers of an experiment are never removed, so a handle stays valid as long as the experiment exists.
+ */
+public final class PhyphoxBufferHandle {
+	
+	private final PhyphoxExperiment experiment;
+	private final String name;
+	private final int index;
+	
+	PhyphoxBufferHandle(PhyphoxExperiment experiment, String name, int index) {
+		this.experiment = experiment;
+		this.name = name;
+		this.index = index;
+	}
+	
+	/**
+	 * The experiment that contains the buffer (the handle can only be used for this experiment).
+	 */
+	public PhyphoxExperiment getExperiment() {
+		return experiment;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * The index of the buffer in the experiment.
+	 */
+	int getIndex() {
+		return index;
+	}
+	
+	@Override
+	public String toString() {
+		return "PhyphoxBufferHandle [name=" + name + ", index=" + index + "]";
+	}
+}
\ No newline at end of file
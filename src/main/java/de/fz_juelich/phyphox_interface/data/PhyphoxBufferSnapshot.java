@@ -0,0 +1,122 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable state of a buffer of an experiment (part of a PhyphoxExperimentSnapshot).<br>
+ * 
+ * The values are stored in chunks (one chunk per received batch) that are never changed after they were published, so a snapshot can be read by
+ * any thread without locking, while new data is added to the experiment.
+ */
+public class PhyphoxBufferSnapshot {
+	
+	private final String name;
+	private final double[][] chunks;//the chunks of values (only the chunks from firstChunk to chunkCount belong to this snapshot)
+	private final long[] chunkStarts;//the index of the first value of each chunk, counted from the start of the recording
+	private final int firstChunk;
+	private final int chunkCount;
+	private final long start;//the index of the first value, counted from the start of the recording
+	private final long end;//the index after the last value, counted from the start of the recording
+	
+	PhyphoxBufferSnapshot(String name, double[][] chunks, long[] chunkStarts, int firstChunk, int chunkCount, long start, long end) {
+		this.name = name;
+		this.chunks = chunks;
+		this.chunkStarts = chunkStarts;
+		this.firstChunk = firstChunk;
+		this.chunkCount = chunkCount;
+		this.start = start;
+		this.end = end;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public int size() {
+		return (int) (end - start);
+	}
+	
+	/**
+	 * The number of (oldest) values that were removed from the buffer before the snapshot was taken (see PhyphoxBuffer.getRemovedValues()), including
+	 * the values that were moved to a spill storage (that are not part of the snapshot).
+	 */
+	public long getRemovedValues() {
+		return start;
+	}
+	
+	/**
+	 * Get a single value of the snapshot.
+	 */
+	public double get(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		long position = start + index;
+		int chunk = findChunk(position);
+		return chunks[chunk][(int) (position - chunkStarts[chunk])];
+	}
+	
+	/**
+	 * Get the values of the snapshot as a stream.
+	 */
+	public DoubleStream stream() {
+		return IntStream.range(0, size()).mapToDouble(this::get);
+	}
+	
+	/**
+	 * Copy all values of the snapshot into an array, starting at the given index of the array.
+	 */
+	public void copyTo(double[] dest, int destIndex) {
+		if (destIndex < 0 || destIndex + size() > dest.length) {
+			throw new IndexOutOfBoundsException("The array is too small for the values of the snapshot.");
+		}
+		if (size() == 0) {
+			return;
+		}
+		long position = start;
+		int chunk = findChunk(position);
+		while (position < end) {
+			int offset = (int) (position - chunkStarts[chunk]);
+			int length = (int) Math.min(chunks[chunk].length - offset, end - position);
+			System.arraycopy(chunks[chunk], offset, dest, destIndex, length);
+			destIndex += length;
+			position += length;
+			chunk++;
+		}
+	}
+	
+	/**
+	 * Copy the values of the snapshot into a new array.
+	 */
+	public double[] toArray() {
+		double[] values = new double[size()];
+		copyTo(values, 0);
+		return values;
+	}
+	
+	/**
+	 * Copy the values of the snapshot into a new (independent) buffer.
+	 */
+	public PhyphoxBuffer toBuffer() {
+		return new PhyphoxBuffer(name, toArray());
+	}
+	
+	/**
+	 * Find the chunk that contains the value with the given index (counted from the start of the recording), using a binary search.
+	 */
+	private int findChunk(long position) {
+		int low = firstChunk;
+		int high = chunkCount - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (chunkStarts[mid] <= position) {
+				low = mid;
+			}
+			else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+}
\ No newline at end of file
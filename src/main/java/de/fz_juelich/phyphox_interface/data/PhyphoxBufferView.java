@@ -0,0 +1,106 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+
+/**
+ * A read-only view of a range of a PhyphoxBuffer's values (e.g. the new data of a buffer), that reads the values from the buffer instead of copying
+ * them.<br>
+ * 
+ * The view stays valid when new data is attached to the buffer (the range is counted from the start of the recording, so it doesn't move when the
+ * buffer's oldest values are removed). If the values of the range were removed from the buffer (e.g. by a retention policy), reading them causes
+ * an IllegalStateException. The view is not synchronized with the buffer; when the buffer belongs to an experiment, use the view in the listener's
+ * callback or copy it's values to use them later.
+ */
+public class PhyphoxBufferView {
+	
+	private final PhyphoxBuffer buffer;
+	private final long start;//the index of the first value, counted from the start of the recording (including the removed values)
+	private final int size;
+	
+	/**
+	 * @param fromIndex
+	 *        The index of the first value in the buffer
+	 * 
+	 * @param toIndex
+	 *        The index after the last value in the buffer
+	 */
+	PhyphoxBufferView(PhyphoxBuffer buffer, int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > buffer.size() || fromIndex > toIndex) {
+			throw new IndexOutOfBoundsException("Range: [" + fromIndex + ", " + toIndex + "), Size: " + buffer.size());
+		}
+		this.buffer = buffer;
+		this.start = buffer.getRemovedValues() + fromIndex;
+		this.size = toIndex - fromIndex;
+	}
+	
+	public String getName() {
+		return buffer.getName();
+	}
+	
+	/**
+	 * The number of values in the view.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Get a single value of the view.
+	 */
+	public double get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return buffer.get(toBufferIndex(index));
+	}
+	
+	/**
+	 * Get the values of the view as a stream (the values are read from the buffer while the stream is processed).
+	 */
+	public DoubleStream stream() {
+		return IntStream.range(0, size).mapToDouble(this::get);
+	}
+	
+	/**
+	 * Copy all values of the view into an array.
+	 */
+	public void copyTo(double[] dest) {
+		copyTo(dest, 0);
+	}
+	/**
+	 * Copy all values of the view into an array, starting at the given index of the array.
+	 */
+	public void copyTo(double[] dest, int destIndex) {
+		if (destIndex < 0 || destIndex + size > dest.length) {
+			throw new IndexOutOfBoundsException("The array is too small for the values of the view.");
+		}
+		if (size > 0) {
+			buffer.copyValues(toBufferIndex(0), dest, destIndex, size);
+		}
+	}
+	
+	/**
+	 * Copy the values of the view into a new array.
+	 */
+	public double[] toArray() {
+		double[] values = new double[size];
+		copyTo(values);
+		return values;
+	}
+	
+	/**
+	 * Copy the values of the view into a new (independent) buffer.
+	 */
+	public PhyphoxBuffer toBuffer() {
+		return new PhyphoxBuffer(getName(), toArray());
+	}
+	
+	private int toBufferIndex(int index) {
+		long bufferIndex = start - buffer.getRemovedValues() + index;
+		if (bufferIndex < 0) {
+			throw new IllegalStateException("The values of the view were already removed from the buffer '" + buffer.getName() + "'.");
+		}
+		return (int) bufferIndex;
+	}
+}
\ No newline at end of file
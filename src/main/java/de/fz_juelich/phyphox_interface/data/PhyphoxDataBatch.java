@@ -0,0 +1,136 @@
+package de.fz_juelich.phyphox_interface.data;
+
+/**
+ * The new data of all buffers of an experiment, that is passed to a PhyphoxBatchListener.<br>
+ * 
+ * The batch references the arrays that store the values of the buffers (or a reused array if the values are not stored in one piece), so no new
+ * objects are created to inform the listeners. The batch is reused for every update; it's only valid while the listener is informed and the arrays
+ * must not be changed.
+ */
+public class PhyphoxDataBatch {
+	
+	private int bufferCount;
+	private String[] names = new String[0];
+	private double[][] arrays = new double[0][];//the arrays that contain the new values
+	private int[] offsets = new int[0];//the index of the first new value in the array
+	private int[] lengths = new int[0];//the number of new values
+	private double[][] copies = new double[0][];//the reused arrays for new values that are not stored in one piece
+	
+	/**
+	 * The number of buffers in the batch (all buffers of the experiment; the buffer ids are the indices from 0 to the number of buffers - 1).
+	 */
+	public int getBufferCount() {
+		return bufferCount;
+	}
+	
+	/**
+	 * The name of a buffer.
+	 */
+	public String getName(int bufferId) {
+		checkBufferId(bufferId);
+		return names[bufferId];
+	}
+	
+	/**
+	 * Find the id of a buffer by it's name (or -1 if there is no such buffer).<br>
+	 * The ids don't change, so they can be looked up once.
+	 */
+	public int getBufferId(String name) {
+		for (int i = 0; i < bufferCount; i++) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * The array that contains the new values of a buffer (from the index getOffset(bufferId), getLength(bufferId) values). The array must not be
+	 * changed.
+	 */
+	public double[] getArray(int bufferId) {
+		checkBufferId(bufferId);
+		return arrays[bufferId];
+	}
+	
+	/**
+	 * The index of the first new value of a buffer in it's array (see getArray(int)).
+	 */
+	public int getOffset(int bufferId) {
+		checkBufferId(bufferId);
+		return offsets[bufferId];
+	}
+	
+	/**
+	 * The number of new values of a buffer.
+	 */
+	public int getLength(int bufferId) {
+		checkBufferId(bufferId);
+		return lengths[bufferId];
+	}
+	
+	/**
+	 * Get a single new value of a buffer.
+	 */
+	public double get(int bufferId, int index) {
+		checkBufferId(bufferId);
+		if (index < 0 || index >= lengths[bufferId]) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + lengths[bufferId]);
+		}
+		return arrays[bufferId][offsets[bufferId] + index];
+	}
+	
+	private void checkBufferId(int bufferId) {
+		if (bufferId < 0 || bufferId >= bufferCount) {
+			throw new IndexOutOfBoundsException("Buffer id: " + bufferId + ", Number of buffers: " + bufferCount);
+		}
+	}
+	
+	/**
+	 * Prepare the batch for a number of buffers (the arrays are only replaced if the number of buffers increased).
+	 */
+	void reset(int bufferCount) {
+		if (bufferCount > names.length) {
+			names = new String[bufferCount];
+			arrays = new double[bufferCount][];
+			offsets = new int[bufferCount];
+			lengths = new int[bufferCount];
+			double[][] newCopies = new double[bufferCount][];
+			System.arraycopy(copies, 0, newCopies, 0, copies.length);
+			copies = newCopies;
+		}
+		this.bufferCount = bufferCount;
+	}
+	
+	/**
+	 * Set the new data of a buffer (the values from the index 'index' to the end of the buffer).
+	 */
+	void set(int bufferId, PhyphoxBuffer buffer, int index) {
+		int length = buffer.size() - index;
+		names[bufferId] = buffer.getName();
+		lengths[bufferId] = length;
+		int storageIndex = buffer.getStorageIndex(index, length);
+		if (storageIndex != -1) {
+			//the values are stored in one piece; use the buffer's array
+			arrays[bufferId] = buffer.getStorageArray();
+			offsets[bufferId] = storageIndex;
+		}
+		else {
+			if (copies[bufferId] == null || copies[bufferId].length < length) {
+				copies[bufferId] = new double[Math.max(length, 2 * (copies[bufferId] == null ? 0 : copies[bufferId].length))];
+			}
+			buffer.copyValues(index, copies[bufferId], 0, length);
+			arrays[bufferId] = copies[bufferId];
+			offsets[bufferId] = 0;
+		}
+	}
+	
+	/**
+	 * Remove the references to the arrays of the buffers (after the listeners were informed).
+	 */
+	void clear() {
+		for (int i = 0; i < bufferCount; i++) {
+			arrays[i] = null;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,316 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the data batches that were received from an experiment, so the data survives a crash of the JVM (see
+ * PhyphoxExperiment.recoverFromLog).<br>
+ * 
+ * The batches are added to a queue and written by an own thread, so writing (and syncing) the log doesn't block the update of the data. The thread
+ * writes all batches that are waiting at once and syncs them together (group commit), depending on the PhyphoxLogSyncPolicy. A problem while
+ * writing stops the log (the following batches are dropped) and is thrown when the log is closed.<br>
+ * 
+ * Every batch is written as a record with it's length and a checksum. A record that was not written completely (e.g. because the JVM died while
+ * writing it) is ignored when the log is read and removed when the log is opened again.
+ */
+public class PhyphoxDataLog implements Closeable {
+	
+	private Path file;
+	private FileChannel channel;
+	private PhyphoxLogSyncPolicy syncPolicy;
+	private BlockingQueue<LogEntry> queue;//the batches that are waiting to be written
+	private Thread writerThread;
+	private volatile IOException failure;//the problem that stopped the writer thread (or null)
+	private volatile boolean closed;
+	
+	/**
+	 * Open a log file to append new batches (the file is created if it doesn't exist).
+	 */
+	public PhyphoxDataLog(Path file, PhyphoxLogSyncPolicy syncPolicy) throws IOException {
+		this.file = file;
+		this.syncPolicy = Objects.requireNonNull(syncPolicy, "A null object is no valid sync policy.");
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		//remove an incomplete last record, so the new records are appended to the valid records
+		long validLength = readRecords(channel, null);
+		channel.truncate(validLength);
+		channel.position(validLength);
+		queue = new LinkedBlockingQueue<LogEntry>();
+		writerThread = new Thread(this::writeRecords, "phyphox_log_thread");
+		writerThread.setDaemon(true);//set to daemon to be terminated automatically when the application terminates
+		writerThread.start();
+	}
+	
+	/**
+	 * Add a batch of received data to the log (without waiting for the batch to be written).<br>
+	 * If the writer thread was stopped by a problem, the batch is dropped (the problem is thrown by close()), so the data updates are never stopped
+	 * by the log.
+	 */
+	public void append(List<PhyphoxBuffer> batch) {
+		if (closed) {
+			throw new IllegalStateException("The data log '" + file + "' was already closed.");
+		}
+		if (failure == null) {
+			//copy the list, because the caller can change it after the batch was added
+			queue.add(new LogEntry(new ArrayList<PhyphoxBuffer>(batch), null, false));
+		}
+	}
+	
+	/**
+	 * Force all batches that were added before to the disk (independent of the sync policy).
+	 * 
+	 * @return A future that is completed when the batches are on the disk
+	 */
+	public CompletableFuture<Void> sync() {
+		CompletableFuture<Void> synced = new CompletableFuture<Void>();
+		try {
+			checkState();
+			queue.add(new LogEntry(null, synced, false));
+		}
+		catch (IllegalStateException e) {
+			synced.completeExceptionally(e);
+		}
+		return synced;
+	}
+	
+	private void checkState() {
+		if (failure != null) {
+			throw new IllegalStateException("The data log '" + file + "' can't be written.", failure);
+		}
+		if (closed) {
+			throw new IllegalStateException("The data log '" + file + "' was already closed.");
+		}
+	}
+	
+	/**
+	 * Write and sync the waiting batches and close the log file.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		queue.add(new LogEntry(null, null, true));
+		try {
+			writerThread.join();
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			channel.close();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+	
+	/**
+	 * The loop of the writer thread: take all waiting batches, write them and sync them (depending on the sync policy).
+	 */
+	private void writeRecords() {
+		long syncInterval = TimeUnit.MILLISECONDS.toNanos(syncPolicy.getSyncInterval());
+		long lastSync = System.nanoTime();
+		boolean unsynced = false;//whether there are written records that were not synced
+		List<LogEntry> entries = new ArrayList<LogEntry>();
+		List<CompletableFuture<Void>> waiting = new ArrayList<CompletableFuture<Void>>();
+		ByteArrayOutputStream records = new ByteArrayOutputStream();
+		try {
+			boolean close = false;
+			while (!close) {
+				LogEntry first;
+				if (unsynced && syncPolicy != PhyphoxLogSyncPolicy.NEVER) {
+					//wait for new batches until the next sync is due
+					first = queue.poll(lastSync + syncInterval - System.nanoTime(), TimeUnit.NANOSECONDS);
+				}
+				else {
+					first = queue.take();
+				}
+				entries.clear();
+				if (first != null) {
+					entries.add(first);
+					queue.drainTo(entries);
+				}
+				
+				boolean syncNow = false;
+				records.reset();
+				for (LogEntry entry : entries) {
+					if (entry.batch != null) {
+						writeRecord(records, entry.batch);
+					}
+					if (entry.synced != null) {
+						waiting.add(entry.synced);
+						syncNow = true;
+					}
+					close |= entry.close;
+				}
+				if (records.size() > 0) {
+					//write all waiting batches at once
+					ByteBuffer bytes = ByteBuffer.wrap(records.toByteArray());
+					while (bytes.hasRemaining()) {
+						channel.write(bytes);
+					}
+					unsynced = true;
+				}
+				
+				long now = System.nanoTime();
+				if (unsynced && (syncNow || close || now - lastSync >= syncInterval)) {
+					channel.force(false);
+					lastSync = now;
+					unsynced = false;
+				}
+				for (CompletableFuture<Void> synced : waiting) {
+					synced.complete(null);
+				}
+				waiting.clear();
+			}
+		}
+		catch (IOException e) {
+			failure = e;
+			//nobody can wait for the log anymore (and the batches that are waiting are dropped)
+			List<LogEntry> dropped = new ArrayList<LogEntry>();
+			queue.drainTo(dropped);
+			for (LogEntry entry : dropped) {
+				if (entry.synced != null) {
+					waiting.add(entry.synced);
+				}
+			}
+			for (CompletableFuture<Void> synced : waiting) {
+				synced.completeExceptionally(e);
+			}
+			Thread thread = Thread.currentThread();
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, new RuntimeException("The data log couldn't be written.", e));
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Append a record of a batch: the length of the batch data, a CRC32 checksum of the batch data and the batch data (the names, sizes and values
+	 * of all buffers).
+	 */
+	private void writeRecord(ByteArrayOutputStream records, List<PhyphoxBuffer> batch) throws IOException {
+		ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+		DataOutputStream payload = new DataOutputStream(payloadBytes);
+		payload.writeInt(batch.size());
+		for (PhyphoxBuffer buffer : batch) {
+			payload.writeUTF(buffer.getName());
+			payload.writeInt(buffer.size());
+			for (int i = 0; i < buffer.size(); i++) {
+				payload.writeDouble(buffer.get(i));
+			}
+		}
+		payload.flush();
+		byte[] data = payloadBytes.toByteArray();
+		CRC32 checksum = new CRC32();
+		checksum.update(data);
+		
+		DataOutputStream record = new DataOutputStream(records);
+		record.writeInt(data.length);
+		record.writeInt((int) checksum.getValue());
+		record.write(data);
+		record.flush();
+	}
+	
+	/**
+	 * Read all (complete) batches of a log file.
+	 */
+	public static List<List<PhyphoxBuffer>> readBatches(Path file) throws IOException {
+		List<List<PhyphoxBuffer>> batches = new ArrayList<List<PhyphoxBuffer>>();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			readRecords(channel, batches);
+		}
+		return batches;
+	}
+	
+	/**
+	 * Read the records of a log file, until the end of the file or an incomplete (or damaged) record is reached.
+	 * 
+	 * @param batches
+	 *        The list to which the batches are added (or null to only find the valid length of the file)
+	 * 
+	 * @return The length of the valid records (in bytes)
+	 */
+	private static long readRecords(FileChannel channel, List<List<PhyphoxBuffer>> batches) throws IOException {
+		long size = channel.size();
+		long validLength = 0;
+		channel.position(0);
+		DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+		try {
+			while (validLength + 2 * Integer.BYTES <= size) {
+				int length = input.readInt();
+				int expectedChecksum = input.readInt();
+				if (length < 0 || validLength + 2 * Integer.BYTES + length > size) {
+					break;
+				}
+				byte[] data = new byte[length];
+				input.readFully(data);
+				CRC32 checksum = new CRC32();
+				checksum.update(data);
+				if ((int) checksum.getValue() != expectedChecksum) {
+					break;
+				}
+				if (batches != null) {
+					batches.add(readBatch(data));
+				}
+				validLength += 2 * Integer.BYTES + length;
+			}
+		}
+		catch (EOFException e) {
+			//an incomplete record at the end of the file
+		}
+		return validLength;
+	}
+	
+	private static List<PhyphoxBuffer> readBatch(byte[] data) throws IOException {
+		DataInputStream payload = new DataInputStream(new ByteArrayInputStream(data));
+		int bufferCount = payload.readInt();
+		List<PhyphoxBuffer> batch = new ArrayList<PhyphoxBuffer>(bufferCount);
+		for (int i = 0; i < bufferCount; i++) {
+			String name = payload.readUTF();
+			double[] values = new double[payload.readInt()];
+			for (int j = 0; j < values.length; j++) {
+				values[j] = payload.readDouble();
+			}
+			batch.add(new PhyphoxBuffer(name, values));
+		}
+		return batch;
+	}
+	
+	/**
+	 * An entry in the queue of the writer thread (a batch, a request to sync or the request to close the log).
+	 */
+	private static class LogEntry {
+		
+		private final List<PhyphoxBuffer> batch;
+		private final CompletableFuture<Void> synced;
+		private final boolean close;
+		
+		public LogEntry(List<PhyphoxBuffer> batch, CompletableFuture<Void> synced, boolean close) {
+			this.batch = batch;
+			this.synced = synced;
+			this.close = close;
+		}
+	}
+}
\ No newline at end of file
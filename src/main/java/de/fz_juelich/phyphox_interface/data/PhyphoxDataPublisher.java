@@ -0,0 +1,244 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes the new data of an experiment (as batches of buffers) to any number of subscribers, that request the batches they can handle (see
+ * PhyphoxExperiment.createDataPublisher).<br>
+ * 
+ * Every subscriber has it's own bounded queue of batches, that are delivered when the subscriber requests them. When a queue is full the
+ * PhyphoxOverflowPolicy defines what happens to the new data, so there is no unbounded buffering. The subscribers are informed by the tasks of an
+ * executor; the methods of a single subscriber are never called concurrently.
+ */
+public class PhyphoxDataPublisher implements PhyphoxFlow.Publisher<List<PhyphoxBuffer>>, PhyphoxDataListener {
+	
+	private final PhyphoxExperiment experiment;
+	private final int bufferCapacity;
+	private final PhyphoxOverflowPolicy overflowPolicy;
+	private final Executor executor;
+	private final List<BatchSubscription> subscriptions = new CopyOnWriteArrayList<BatchSubscription>();
+	private volatile boolean closed;
+	
+	PhyphoxDataPublisher(PhyphoxExperiment experiment, int bufferCapacity, PhyphoxOverflowPolicy overflowPolicy, Executor executor) {
+		this.experiment = experiment;
+		this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "A null object is no valid overflow policy.");
+		this.executor = Objects.requireNonNull(executor, "A null object is no valid executor.");
+		if (bufferCapacity <= 0) {
+			throw new IllegalArgumentException("The buffer capacity must be a value greater than zero.");
+		}
+		this.bufferCapacity = bufferCapacity;
+	}
+	
+	@Override
+	public void subscribe(PhyphoxFlow.Subscriber<? super List<PhyphoxBuffer>> subscriber) {
+		Objects.requireNonNull(subscriber, "A null object is no valid subscriber.");
+		BatchSubscription subscription = new BatchSubscription(subscriber);
+		if (closed) {
+			subscription.complete();
+		}
+		else {
+			subscriptions.add(subscription);
+		}
+		subscription.schedule();//informs the subscriber by onSubscribe
+	}
+	
+	/**
+	 * Add the new data to the queues of all subscribers (called by the experiment).
+	 */
+	@Override
+	public void updateData(List<PhyphoxBuffer> newData) {
+		for (BatchSubscription subscription : subscriptions) {
+			subscription.offer(newData);
+		}
+	}
+	
+	/**
+	 * Stop publishing the experiment's data. The subscribers get the batches in their queues (if they request them) and are completed afterwards.
+	 */
+	public void close() {
+		closed = true;
+		experiment.removeDataListener(this);
+		for (BatchSubscription subscription : subscriptions) {
+			subscription.complete();
+		}
+	}
+	
+	/**
+	 * The number of subscribers that were not cancelled or completed.
+	 */
+	public int getNumberOfSubscribers() {
+		return subscriptions.size();
+	}
+	
+	public int getBufferCapacity() {
+		return bufferCapacity;
+	}
+	
+	public PhyphoxOverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+	
+	/**
+	 * The subscription of a single subscriber with it's queue of batches.
+	 */
+	private class BatchSubscription implements PhyphoxFlow.Subscription {
+		
+		private final PhyphoxFlow.Subscriber<? super List<PhyphoxBuffer>> subscriber;
+		private final Deque<List<PhyphoxBuffer>> queue = new ArrayDeque<List<PhyphoxBuffer>>();
+		private final AtomicInteger scheduled = new AtomicInteger();//the number of times the delivery was scheduled, while it's running
+		private long demand;//the number of batches that were requested, but not delivered yet
+		private boolean subscribed;//whether onSubscribe was called
+		private boolean cancelled;
+		private boolean completed;//whether the publisher was closed
+		private boolean terminated;//whether onComplete or onError was called
+		private Throwable error;//an error that is signalled to the subscriber (or null)
+		
+		public BatchSubscription(PhyphoxFlow.Subscriber<? super List<PhyphoxBuffer>> subscriber) {
+			this.subscriber = subscriber;
+		}
+		
+		@Override
+		public void request(long n) {
+			synchronized (this) {
+				if (n <= 0) {
+					error = new IllegalArgumentException("The number of requested items must be a value greater than zero.");
+				}
+				else {
+					demand += n;
+					if (demand < 0) {
+						//overflow: unbounded demand
+						demand = Long.MAX_VALUE;
+					}
+				}
+			}
+			schedule();
+		}
+		
+		@Override
+		public void cancel() {
+			synchronized (this) {
+				cancelled = true;
+				queue.clear();
+				notifyAll();
+			}
+			subscriptions.remove(this);
+		}
+		
+		public void offer(List<PhyphoxBuffer> newData) {
+			synchronized (this) {
+				if (cancelled || completed) {
+					return;
+				}
+				if (queue.size() == bufferCapacity) {
+					switch (overflowPolicy) {
+						case BLOCK:
+							//the experiment informs the publisher without holding it's lock, so the subscriber can still use the experiment
+							try {
+								while (queue.size() == bufferCapacity && !cancelled && !completed) {
+									wait();
+								}
+							}
+							catch (InterruptedException ie) {
+								Thread.currentThread().interrupt();
+								return;
+							}
+							if (cancelled || completed) {
+								return;
+							}
+							break;
+						case DROP_OLDEST:
+							queue.pollFirst();
+							break;
+						case COALESCE:
+							newData = PhyphoxAsyncDataListener.coalesce(queue.pollLast(), newData);
+							break;
+					}
+				}
+				queue.addLast(newData);
+			}
+			schedule();
+		}
+		
+		public void complete() {
+			synchronized (this) {
+				completed = true;
+				notifyAll();//a waiting offer doesn't add it's batch anymore
+			}
+			schedule();
+		}
+		
+		/**
+		 * Start a delivery task, if no delivery task is running (a running task delivers again, after it was scheduled while it was running).
+		 */
+		public void schedule() {
+			if (scheduled.getAndIncrement() == 0) {
+				executor.execute(() -> {
+					do {
+						deliver();
+					} while (scheduled.decrementAndGet() != 0);
+				});
+			}
+		}
+		
+		/**
+		 * Inform the subscriber about everything that happened since the last delivery (only called by one task at a time).
+		 */
+		private void deliver() {
+			if (!subscribed) {
+				subscribed = true;
+				subscriber.onSubscribe(this);
+			}
+			while (true) {
+				List<PhyphoxBuffer> batch = null;
+				boolean signalComplete = false;
+				Throwable signalError = null;
+				synchronized (this) {
+					if (cancelled || terminated) {
+						return;
+					}
+					if (error != null) {
+						signalError = error;
+					}
+					else if (demand > 0 && !queue.isEmpty()) {
+						batch = queue.pollFirst();
+						if (demand != Long.MAX_VALUE) {
+							demand--;
+						}
+						notifyAll();
+					}
+					else if (completed && queue.isEmpty()) {
+						signalComplete = true;
+					}
+					else {
+						return;
+					}
+					terminated = signalError != null || signalComplete;
+				}
+				if (signalError != null) {
+					subscriptions.remove(this);
+					subscriber.onError(signalError);
+				}
+				else if (signalComplete) {
+					subscriptions.remove(this);
+					subscriber.onComplete();
+				}
+				else {
+					try {
+						subscriber.onNext(batch);
+					}
+					catch (RuntimeException e) {
+						//a failing subscriber is cancelled
+						cancel();
+						subscriber.onError(e);
+					}
+				}
+			}
+		}
+	}
+}
\ No newline at end of file
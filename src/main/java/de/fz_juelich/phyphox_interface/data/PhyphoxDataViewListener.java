@@ -0,0 +1,12 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.util.List;
+
+/**
+ * An interface to be informed about changes in the data, that gets read-only views of the new data (instead of copies).<br>
+ * The views are only guaranteed to be valid during the call (copy the values to use them later).
+ */
+public interface PhyphoxDataViewListener {
+	
+	public void updateData(List<PhyphoxBufferView> newData);
+}
\ No newline at end of file
@@ -0,0 +1,405 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reduces the points of a (x, y) series (e.g. a value buffer and it's time buffer) to a given number of points that can be displayed in a chart,
+ * without losing the peaks of the data.<br>
+ * 
+ * The decimator keeps a pyramid of min/max buckets that is updated incrementally when new points are added: the lowest level contains the
+ * minimum and the maximum point of every 'base bucket size' points and every higher level combines 'LEVEL_FACTOR' buckets of the level below. A
+ * rendering with N points is created from the level with fewer than N points, so it only costs O(N) (independent of the number of points in the
+ * series) and any number of charts can use the same decimator:
+ * <ul>
+ * <li>getMinMax(int): the minimum and maximum point of every bucket</li>
+ * <li>getLargestTriangleThreeBuckets(int): the points are selected from the min/max points using the Largest-Triangle-Three-Buckets algorithm</li>
+ * </ul>
+ * The x values are expected to be monotonically increasing.
+ */
+public class PhyphoxDecimator {
+	
+	public static final String X_BUFFER_NAME = "x";
+	public static final String Y_BUFFER_NAME = "y";
+	public static final int DEFAULT_BASE_BUCKET_SIZE = 2;
+	public static final int LEVEL_FACTOR = 4;
+	/**
+	 * The number of min/max points per point of the result, that are used by the Largest-Triangle-Three-Buckets algorithm.
+	 */
+	private static final int LTTB_PRESELECTION_RATIO = 4;
+	
+	private final int baseBucketSize;
+	private List<Level> levels = new ArrayList<Level>();
+	private Level openBucket = new Level();//the points of the lowest level, that don't fill a bucket yet (max. one bucket)
+	private int openBucketSize;
+	private long size;
+	private double firstX;
+	private double firstY;
+	private double lastX;
+	private double lastY;
+	
+	//the connected experiment and the listener that adds it's new data (or null if not connected)
+	private PhyphoxExperiment experiment;
+	private PhyphoxBatchListener listener;
+	
+	//the points of a connected experiment, that were not paired yet
+	private double[] pendingX = new double[16];
+	private double[] pendingY = new double[16];
+	private int pendingXCount;
+	private int pendingYCount;
+	
+	public PhyphoxDecimator() {
+		this(DEFAULT_BASE_BUCKET_SIZE);
+	}
+	/**
+	 * @param baseBucketSize
+	 *        The number of points per bucket of the lowest level (a size of 2 keeps all points, a greater size needs less memory)
+	 */
+	public PhyphoxDecimator(int baseBucketSize) {
+		if (baseBucketSize < 2) {
+			throw new IllegalArgumentException("The base bucket size must be at least 2.");
+		}
+		this.baseBucketSize = baseBucketSize;
+	}
+	
+	/**
+	 * Add the new values of two buffers of an experiment to the decimator, whenever new data is added to the experiment (using a
+	 * PhyphoxBatchListener). The x and y values are paired by their index, so the buffers don't need to have the same length when they are
+	 * received.<br>
+	 * A decimator can only be connected to one experiment at a time (an existing connection is disconnected).
+	 */
+	public void connect(PhyphoxExperiment experiment, String xBuffer, String yBuffer) {
+		//resolve the buffers once (the ids of the buffers in the batches are the indices of the handles)
+		int xBufferId = experiment.getBufferHandle(xBuffer).getIndex();
+		int yBufferId = experiment.getBufferHandle(yBuffer).getIndex();
+		PhyphoxBatchListener listener = batch -> addUnpairedData(batch.getArray(xBufferId), batch.getOffset(xBufferId), batch.getLength(xBufferId),
+				batch.getArray(yBufferId), batch.getOffset(yBufferId), batch.getLength(yBufferId));
+		disconnect();
+		synchronized (this) {
+			this.experiment = experiment;
+			this.listener = listener;
+		}
+		experiment.addBatchListener(listener);
+	}
+	
+	/**
+	 * Stop adding the new data of the connected experiment (if any). The points that were already added are kept.
+	 */
+	public void disconnect() {
+		PhyphoxExperiment connectedExperiment;
+		PhyphoxBatchListener connectedListener;
+		synchronized (this) {
+			connectedExperiment = experiment;
+			connectedListener = listener;
+			experiment = null;
+			listener = null;
+			pendingXCount = 0;
+			pendingYCount = 0;
+		}
+		//the listener is removed without holding the lock of the decimator, because the experiment holds it's lock while informing the listener
+		if (connectedExperiment != null) {
+			connectedExperiment.removeBatchListener(connectedListener);
+		}
+	}
+	
+	private synchronized void addUnpairedData(double[] x, int xOffset, int xLength, double[] y, int yOffset, int yLength) {
+		if (pendingXCount + xLength > pendingX.length) {
+			pendingX = Arrays.copyOf(pendingX, Math.max(pendingXCount + xLength, 2 * pendingX.length));
+		}
+		if (pendingYCount + yLength > pendingY.length) {
+			pendingY = Arrays.copyOf(pendingY, Math.max(pendingYCount + yLength, 2 * pendingY.length));
+		}
+		System.arraycopy(x, xOffset, pendingX, pendingXCount, xLength);
+		System.arraycopy(y, yOffset, pendingY, pendingYCount, yLength);
+		pendingXCount += xLength;
+		pendingYCount += yLength;
+		int pairs = Math.min(pendingXCount, pendingYCount);
+		for (int i = 0; i < pairs; i++) {
+			add(pendingX[i], pendingY[i]);
+		}
+		//keep the points that were not paired
+		System.arraycopy(pendingX, pairs, pendingX, 0, pendingXCount - pairs);
+		System.arraycopy(pendingY, pairs, pendingY, 0, pendingYCount - pairs);
+		pendingXCount -= pairs;
+		pendingYCount -= pairs;
+	}
+	
+	/**
+	 * Add new points to the series.
+	 */
+	public synchronized void addData(double[] x, double[] y) {
+		if (x.length != y.length) {
+			throw new IllegalArgumentException("The x and y values must have the same length.");
+		}
+		for (int i = 0; i < x.length; i++) {
+			add(x[i], y[i]);
+		}
+	}
+	
+	/**
+	 * Add a single point to the series (amortized O(1)).
+	 */
+	public synchronized void add(double x, double y) {
+		if (openBucketSize == 0) {
+			openBucket.addBucket(x, y, x, y);
+		}
+		else {
+			openBucket.mergeIntoLast(x, y, x, y);
+		}
+		if (size == 0) {
+			firstX = x;
+			firstY = y;
+		}
+		lastX = x;
+		lastY = y;
+		openBucketSize++;
+		size++;
+		if (openBucketSize == baseBucketSize) {
+			addBucket(0, openBucket.minX[0], openBucket.minY[0], openBucket.maxX[0], openBucket.maxY[0]);
+			openBucket.count = 0;
+			openBucketSize = 0;
+		}
+	}
+	
+	/**
+	 * Add a full bucket to a level and combine the last buckets into a bucket of the next level, if there are enough buckets.
+	 */
+	private void addBucket(int level, double minX, double minY, double maxX, double maxY) {
+		if (level == levels.size()) {
+			levels.add(new Level());
+		}
+		Level currentLevel = levels.get(level);
+		currentLevel.addBucket(minX, minY, maxX, maxY);
+		if (currentLevel.count % LEVEL_FACTOR == 0) {
+			int first = currentLevel.count - LEVEL_FACTOR;
+			Level combined = new Level();
+			combined.addBucket(currentLevel.minX[first], currentLevel.minY[first], currentLevel.maxX[first], currentLevel.maxY[first]);
+			for (int i = first + 1; i < currentLevel.count; i++) {
+				combined.mergeIntoLast(currentLevel.minX[i], currentLevel.minY[i], currentLevel.maxX[i], currentLevel.maxY[i]);
+			}
+			addBucket(level + 1, combined.minX[0], combined.minY[0], combined.maxX[0], combined.maxY[0]);
+		}
+	}
+	
+	/**
+	 * Remove all points (e.g. when the data of the experiment was cleared). A connected experiment stays connected.
+	 */
+	public synchronized void clear() {
+		levels.clear();
+		openBucket.count = 0;
+		openBucketSize = 0;
+		size = 0;
+		pendingXCount = 0;
+		pendingYCount = 0;
+	}
+	
+	/**
+	 * The number of points that were added to the series.
+	 */
+	public synchronized long size() {
+		return size;
+	}
+	
+	/**
+	 * Get the minimum and the maximum point of every bucket of the lowest level that has at most maxPoints points (or the highest level, if
+	 * maxPoints is too small), so no peak is lost. The first and the last point of the series are always included.
+	 * 
+	 * @return The x values (named X_BUFFER_NAME) and the y values (named Y_BUFFER_NAME) of the points
+	 */
+	public synchronized List<PhyphoxBuffer> getMinMax(int maxPoints) {
+		if (maxPoints < 2) {
+			throw new IllegalArgumentException("The maximum number of points must be at least 2.");
+		}
+		double[][] points = collectMinMaxPoints(maxPoints);
+		return Arrays.asList(new PhyphoxBuffer(X_BUFFER_NAME, points[0]), new PhyphoxBuffer(Y_BUFFER_NAME, points[1]));
+	}
+	
+	/**
+	 * Get at most maxPoints points that are selected using the Largest-Triangle-Three-Buckets algorithm (that keeps the visual shape of the series).
+	 * The points are selected from the min/max points of a level with a few times more points (MinMaxLTTB), so the costs don't depend on the number
+	 * of points in the series.
+	 * 
+	 * @return The x values (named X_BUFFER_NAME) and the y values (named Y_BUFFER_NAME) of the points
+	 */
+	public synchronized List<PhyphoxBuffer> getLargestTriangleThreeBuckets(int maxPoints) {
+		if (maxPoints < 3) {
+			throw new IllegalArgumentException("The maximum number of points must be at least 3.");
+		}
+		double[][] points = collectMinMaxPoints((int) Math.min((long) maxPoints * LTTB_PRESELECTION_RATIO, Integer.MAX_VALUE));
+		double[][] selected = largestTriangleThreeBuckets(points[0], points[1], maxPoints);
+		return Arrays.asList(new PhyphoxBuffer(X_BUFFER_NAME, selected[0]), new PhyphoxBuffer(Y_BUFFER_NAME, selected[1]));
+	}
+	
+	/**
+	 * Collect the min/max points of the lowest level with at most maxPoints points (including the buckets of the lower levels that were not combined
+	 * yet).
+	 */
+	private double[][] collectMinMaxPoints(int maxPoints) {
+		int level = 0;
+		while (level < levels.size() - 1 && countPoints(level) + 2 > maxPoints) {
+			level++;
+		}
+		int pointCount = countPoints(level) + 2;
+		double[] x = new double[pointCount];
+		double[] y = new double[pointCount];
+		if (size == 0) {
+			return new double[][] {new double[0], new double[0]};
+		}
+		//the first and the last point are added, if they are not the minimum or maximum of their bucket
+		x[0] = firstX;
+		y[0] = firstY;
+		int count = 1;
+		if (level < levels.size()) {
+			count = levels.get(level).copyPoints(0, x, y, count);
+		}
+		//the buckets of the lower levels, that were not combined into a bucket of this level
+		for (int lower = level - 1; lower >= 0; lower--) {
+			Level lowerLevel = levels.get(lower);
+			count = lowerLevel.copyPoints(lowerLevel.count - lowerLevel.count % LEVEL_FACTOR, x, y, count);
+		}
+		count = openBucket.copyPoints(0, x, y, count);
+		if (x[count - 1] != lastX || y[count - 1] != lastY) {
+			x[count] = lastX;
+			y[count] = lastY;
+			count++;
+		}
+		return new double[][] {Arrays.copyOf(x, count), Arrays.copyOf(y, count)};
+	}
+	
+	/**
+	 * The maximum number of min/max points of a level (including the buckets of the lower levels that were not combined yet).
+	 */
+	private int countPoints(int level) {
+		int buckets = openBucket.count;
+		if (level < levels.size()) {
+			buckets += levels.get(level).count;
+		}
+		for (int lower = level - 1; lower >= 0; lower--) {
+			buckets += levels.get(lower).count % LEVEL_FACTOR;
+		}
+		return 2 * buckets;
+	}
+	
+	/**
+	 * Select points using the Largest-Triangle-Three-Buckets algorithm: the first and the last point are kept and of every bucket of points in
+	 * between the point that forms the largest triangle with the point selected before and the average of the next bucket is selected.
+	 * 
+	 * @return The x values (index 0) and the y values (index 1) of the selected points
+	 */
+	public static double[][] largestTriangleThreeBuckets(double[] x, double[] y, int threshold) {
+		if (x.length != y.length) {
+			throw new IllegalArgumentException("The x and y values must have the same length.");
+		}
+		if (threshold >= x.length || threshold < 3) {
+			return new double[][] {x.clone(), y.clone()};
+		}
+		double[] selectedX = new double[threshold];
+		double[] selectedY = new double[threshold];
+		double bucketSize = (double) (x.length - 2) / (threshold - 2);
+		int selected = 0;//the index of the last selected point
+		selectedX[0] = x[0];
+		selectedY[0] = y[0];
+		for (int i = 0; i < threshold - 2; i++) {
+			//the average of the next bucket
+			int nextStart = (int) Math.floor((i + 1) * bucketSize) + 1;
+			int nextEnd = Math.min((int) Math.floor((i + 2) * bucketSize) + 1, x.length);
+			double averageX = 0;
+			double averageY = 0;
+			for (int j = nextStart; j < nextEnd; j++) {
+				averageX += x[j];
+				averageY += y[j];
+			}
+			averageX /= nextEnd - nextStart;
+			averageY /= nextEnd - nextStart;
+			//the point of this bucket with the largest triangle
+			int start = (int) Math.floor(i * bucketSize) + 1;
+			int end = (int) Math.floor((i + 1) * bucketSize) + 1;
+			double maxArea = -1;
+			int maxAreaPoint = start;
+			for (int j = start; j < end; j++) {
+				double area = Math.abs((x[selected] - averageX) * (y[j] - y[selected]) - (x[selected] - x[j]) * (averageY - y[selected]));
+				if (area > maxArea) {
+					maxArea = area;
+					maxAreaPoint = j;
+				}
+			}
+			selectedX[i + 1] = x[maxAreaPoint];
+			selectedY[i + 1] = y[maxAreaPoint];
+			selected = maxAreaPoint;
+		}
+		selectedX[threshold - 1] = x[x.length - 1];
+		selectedY[threshold - 1] = y[y.length - 1];
+		return new double[][] {selectedX, selectedY};
+	}
+	
+	/**
+	 * The min/max buckets of a level.
+	 */
+	private static class Level {
+		
+		private double[] minX = new double[16];
+		private double[] minY = new double[16];
+		private double[] maxX = new double[16];
+		private double[] maxY = new double[16];
+		private int count;
+		
+		public void addBucket(double minX, double minY, double maxX, double maxY) {
+			if (count == this.minX.length) {
+				int capacity = 2 * count;
+				this.minX = Arrays.copyOf(this.minX, capacity);
+				this.minY = Arrays.copyOf(this.minY, capacity);
+				this.maxX = Arrays.copyOf(this.maxX, capacity);
+				this.maxY = Arrays.copyOf(this.maxY, capacity);
+			}
+			this.minX[count] = minX;
+			this.minY[count] = minY;
+			this.maxX[count] = maxX;
+			this.maxY[count] = maxY;
+			count++;
+		}
+		
+		/**
+		 * Merge a following bucket into the last bucket (the first of equal minimums and the last of equal maximums is kept, so a bucket of two
+		 * points keeps both points).
+		 */
+		public void mergeIntoLast(double minX, double minY, double maxX, double maxY) {
+			int last = count - 1;
+			if (minY < this.minY[last]) {
+				this.minX[last] = minX;
+				this.minY[last] = minY;
+			}
+			if (maxY >= this.maxY[last]) {
+				this.maxX[last] = maxX;
+				this.maxY[last] = maxY;
+			}
+		}
+		
+		/**
+		 * Copy the min/max points of the buckets from the given index into arrays (in the order of the x values; a point is only copied once if it's
+		 * the minimum and the maximum of a bucket or the first point of the series).
+		 * 
+		 * @return The number of points in the arrays
+		 */
+		public int copyPoints(int fromBucket, double[] x, double[] y, int count) {
+			for (int i = fromBucket; i < this.count; i++) {
+				boolean minFirst = minX[i] <= maxX[i];
+				count = copyPoint(minFirst ? minX[i] : maxX[i], minFirst ? minY[i] : maxY[i], x, y, count);
+				count = copyPoint(minFirst ? maxX[i] : minX[i], minFirst ? maxY[i] : minY[i], x, y, count);
+			}
+			return count;
+		}
+		
+		/**
+		 * Copy a point, if it's not equal to the last point in the arrays.
+		 */
+		private static int copyPoint(double pointX, double pointY, double[] x, double[] y, int count) {
+			if (count > 0 && x[count - 1] == pointX && y[count - 1] == pointY) {
+				return count;
+			}
+			x[count] = pointX;
+			y[count] = pointY;
+			return count + 1;
+		}
+	}
+}
\ No newline at end of file
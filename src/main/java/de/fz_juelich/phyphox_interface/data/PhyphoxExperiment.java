@@ -1,9 +1,22 @@
 package de.fz_juelich.phyphox_interface.data;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.google.common.annotations.VisibleForTesting;
 
@@ -20,12 +33,40 @@ import de.fz_juelich.phyphox_interface.connection.PhyphoxDataRequestBuilder;
  */
 public class PhyphoxExperiment {
 	
+	private static final List<PhyphoxBuffer> END_OF_PIPELINE = new ArrayList<PhyphoxBuffer>(0);//marks the end of the pipelined updates
+	private static final long PIPELINE_WAIT_MILLIS = 10;//the time between two checks whether the other thread of the pipeline is still running
+	
 	private PhyphoxConnection connection;//the connection to the phone (parses JSON, ...)
 	private List<PhyphoxBuffer> data;//all the data from the phone buffers
+	private Map<String, Integer> bufferIndices = new HashMap<String, Integer>();//the indices of the buffers in the data list by their names
 	private int updateRate;//the update rate to request new data from the phone (in milliseconds)
 	private int[] lastRead;//the last indices of data that were read from the user
 	private Thread dataUpdateThread;//a thread that updates the data by sending request to the phones experiment
-	private List<PhyphoxDataListener> dataListeners;//listeners that react on new data
+	private Thread dataDispatchThread;//the thread that adds the received data to the buffers if the updates are pipelined (or null)
+	private List<PhyphoxDataListener> dataListeners;//listeners that react on new data (informed without holding the lock of the experiment)
+	private final Object dataListenerLock = new Object();//makes sure the data listeners get the updates in the order in which they were added
+	private List<PhyphoxDataViewListener> dataViewListeners = new CopyOnWriteArrayList<PhyphoxDataViewListener>();//listeners that get data views
+	private List<PhyphoxBatchListener> batchListeners = new ArrayList<PhyphoxBatchListener>();//listeners that get a reused batch of the new data
+	private PhyphoxDataBatch batch = new PhyphoxDataBatch();//the batch that is reused to inform the batch listeners
+	private PhyphoxReadCursor batchCursor;//the data that was passed to the batch listeners (or null if there never was a batch listener)
+	private int continuesBufferIndex = -1;//the index of the continues buffer (e.g. time) that is used for incremental updates (or -1 if there is none)
+	private double lastContinuesValue = Double.NaN;//the last value of the continues buffer that was received from the phone
+	private int lastFullUpdateSamples;//the number of samples of the last full update (used to count the new samples if there is no continues buffer)
+	private PhyphoxTimeIndex timeIndex;//a block index of the continues buffer to find time ranges (or null if there is no continues buffer)
+	private List<PhyphoxBufferAggregate> aggregates = new ArrayList<PhyphoxBufferAggregate>();//the running statistics (and quantiles) of the buffers
+	private volatile PhyphoxUpdateMode updateMode = PhyphoxUpdateMode.FIXED_DELAY;//the way the time between two updates is measured
+	private volatile PhyphoxMissedUpdatePolicy missedUpdatePolicy = PhyphoxMissedUpdatePolicy.COALESCE;//what happens to missed updates (FIXED_RATE)
+	private volatile PhyphoxAdaptiveUpdateRate adaptiveUpdateRate;//the settings of an adaptive update rate (or null if the update rate is fixed)
+	private volatile int pipelineCapacity;//the number of received updates that can wait to be added to the buffers (or 0 if not pipelined)
+	private volatile PhyphoxUpdateTimer updateTimer;//calculates the time between the updates of the update thread
+	private volatile PhyphoxExperimentFleet fleet;//the fleet that polls the data instead of the update thread (or null if the thread is used)
+	private PhyphoxRetentionPolicy retentionPolicy = PhyphoxRetentionPolicy.UNLIMITED;//defines which data of the buffers is kept
+	private Map<String, PhyphoxRetentionPolicy> bufferRetentionPolicies = new HashMap<String, PhyphoxRetentionPolicy>();//the policies of single buffers
+	private Map<String, PhyphoxSpillStorage> spillStorages = new HashMap<String, PhyphoxSpillStorage>();//the buffers that spill values to files
+	private PhyphoxRecordingWriter recording;//writes the received data to the disk (or null if the data is not recorded)
+	private PhyphoxDataLog dataLog;//a log of the received data to recover it after a crash (or null if no log is used)
+	private PhyphoxSnapshotPublisher snapshotPublisher;//creates the snapshots of the data (or null if no snapshot was requested yet)
+	private volatile PhyphoxExperimentSnapshot snapshot;//the last published snapshot of the data (or null)
 	
 	/**
 	 * Create a new PhyphoxData object to model the buffered data from the experiment in java.
@@ -38,10 +79,6 @@ public class PhyphoxExperiment {
 	 * @param bufferNames
 	 *        The name of the buffers you want to get from the phone (that have to be the same names that the experiment knows)
 	 * 
-	 * @param continuesBufferName
-	 *        A name of an (optional) continues buffer (e.g. time) so that the data doesn't need to be fully updated<br>
-	 *        The buffer can be one of the names in the parameter bufferNames but doesn't need to.
-	 * 
 	 * @param updateRate
 	 *        The rate with that the data is updated locally (in milliseconds)
 	 */
@@ -63,9 +100,35 @@ public class PhyphoxExperiment {
 			lastRead[i] = -1;
 			//create buffers
 			data.add(new PhyphoxBuffer(bufferNames.get(i), new double[0]));
+			bufferIndices.put(bufferNames.get(i), i);
 		}
 		//create a list for the listeners
-		dataListeners = new ArrayList<PhyphoxDataListener>();
+		dataListeners = new CopyOnWriteArrayList<PhyphoxDataListener>();
+	}
+	/**
+	 * Create a new PhyphoxData object to model the buffered data from the experiment in java, that only requests the new data from the phone
+	 * (incremental updates).
+	 * 
+	 * The experiment is not started when this object is created. Use the startExperiment() method to start it.
+	 * 
+	 * @param connectionSettings
+	 *        The connection parameters (ip and port of the phone)
+	 * 
+	 * @param bufferNames
+	 *        The name of the buffers you want to get from the phone (that have to be the same names that the experiment knows)
+	 * 
+	 * @param continuesBufferName
+	 *        A name of an (optional) continues buffer (e.g. time) so that the data doesn't need to be fully updated<br>
+	 *        The buffer can be one of the names in the parameter bufferNames but doesn't need to.
+	 * 
+	 * @param updateRate
+	 *        The rate with that the data is updated locally (in milliseconds)
+	 */
+	public PhyphoxExperiment(PhyphoxConnectionSettings connectionSettings, List<String> bufferNames, String continuesBufferName, int updateRate) {
+		this(connectionSettings, bufferNames, updateRate);
+		if (continuesBufferName != null) {
+			setContinuesBuffer(continuesBufferName);
+		}
 	}
 	/**
 	 * A PhyphoxDataObject that doesn't update any data (just for testing).
@@ -73,7 +136,6 @@ public class PhyphoxExperiment {
 	@VisibleForTesting
 	protected PhyphoxExperiment(String... names) {
 		List<String> bufferNames = new ArrayList<String>(Arrays.asList(names));
-		boolean continuesBufferNameAdded = false;
 		data = new ArrayList<PhyphoxBuffer>(bufferNames.size());
 		lastRead = new int[bufferNames.size()];
 		for (int i = 0; i < bufferNames.size(); i++) {
@@ -81,29 +143,31 @@ public class PhyphoxExperiment {
 			lastRead[i] = -1;
 			//create buffers
 			data.add(new PhyphoxBuffer(names[i], new double[0]));
-		}
-		if (continuesBufferNameAdded) {
-			bufferNames.remove(bufferNames.size() - 1);//remove continues buffer that was added before to prevent side effects
+			bufferIndices.put(names[i], i);
 		}
 		//create a list for the listeners
-		dataListeners = new ArrayList<PhyphoxDataListener>();
+		dataListeners = new CopyOnWriteArrayList<PhyphoxDataListener>();
 	}
 	
 	private void startUpdateThread() {
+		if (pipelineCapacity > 0) {
+			startPipelinedUpdateThreads(pipelineCapacity);
+			return;
+		}
+		PhyphoxUpdateTimer timer = createUpdateTimer(updateRate);
 		dataUpdateThread = new Thread(new Runnable() {
 			
 			@Override
 			public void run() {
+				timer.start(System.nanoTime());
 				while (!Thread.currentThread().isInterrupted()) {
 					try {
-						//create a request to get the new data from the experiment
-						PhyphoxDataRequest request = createRequestForNewData();
-						//send the request and get the new data from the experiment
-						List<PhyphoxBuffer> newData = connection.getData(request);
-						//add the new data to the buffers
-						addNewDataToBuffers(newData);
-						//wait some time before the next update
-						Thread.sleep(updateRate);
+						long updateStart = System.nanoTime();
+						int newSamples = pollData();
+						long updateEnd = System.nanoTime();
+						//adjust the (adaptive) update rate and wait some time before the next update
+						timer.reportUpdate(updateStart, updateEnd, newSamples);
+						TimeUnit.NANOSECONDS.sleep(timer.getDelayToNextUpdate(updateEnd));
 					}
 					catch (InterruptedException ie) {
 						//interrupt the thread again because the flag was removed when the exception was caught
@@ -120,13 +184,239 @@ public class PhyphoxExperiment {
 	}
 	
 	/**
-	 * Restart the data update thread (e.g. after it crashed). When the PhyphoxData object is created the thread is started automatically.
+	 * Start the pipelined updates: the update thread only sends the requests and receives (decodes) the data, while a second thread adds the data to
+	 * the buffers and informs the listeners. The received data is passed on using a bounded queue, so the next request can be sent while the last
+	 * data is still processed. If the queue is full the update thread waits for the data to be processed.
+	 */
+	private void startPipelinedUpdateThreads(int capacity) {
+		PhyphoxUpdateTimer timer = createUpdateTimer(updateRate);
+		BlockingQueue<List<PhyphoxBuffer>> receivedData = new ArrayBlockingQueue<List<PhyphoxBuffer>>(capacity);
+		AtomicBoolean dispatching = new AtomicBoolean(true);//whether the dispatch thread still takes data from the queue
+		Thread updateThread = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				timer.start(System.nanoTime());
+				List<PhyphoxBuffer> newData = null;//the received data that was not yet passed on
+				try {
+					while (!Thread.currentThread().isInterrupted()) {
+						long updateStart = System.nanoTime();
+						newData = fetchData();
+						long updateEnd = System.nanoTime();
+						//pass the data on to be added to the buffers (waits if the buffers are not updated fast enough)
+						receivedData.put(newData);
+						List<PhyphoxBuffer> passedData = newData;
+						newData = null;
+						//adjust the (adaptive) update rate and wait some time before the next update
+						timer.reportUpdate(updateStart, updateEnd, countSamples(passedData));
+						TimeUnit.NANOSECONDS.sleep(timer.getDelayToNextUpdate(updateEnd));
+					}
+				}
+				catch (InterruptedException ie) {
+					//interrupt the thread again because the flag was removed when the exception was caught
+					Thread.currentThread().interrupt();
+				}
+				catch (PhyphoxConnectionException e) {
+					throw new RuntimeException("A problem occured while trying to read the data from the experiment.", e);
+				}
+				finally {
+					endPipeline(receivedData, newData, dispatching);
+				}
+			}
+		});
+		Thread dispatchThread = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					List<PhyphoxBuffer> newData = receivedData.poll(PIPELINE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+					while (newData != END_OF_PIPELINE) {
+						if (newData != null) {
+							addNewDataToBuffers(newData);
+						}
+						else if (!updateThread.isAlive() && receivedData.isEmpty()) {
+							//the update thread ended without marking the end of the pipeline
+							break;
+						}
+						newData = receivedData.poll(PIPELINE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+					}
+				}
+				catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+				finally {
+					//if the data can't be processed anymore (e.g. because a listener failed) the update thread has to be stopped too
+					dispatching.set(false);
+					updateThread.interrupt();
+				}
+			}
+		}, "experiment_dispatch_thread");
+		updateThread.setDaemon(true);//set to daemon to be terminated automatically when the application terminates
+		dispatchThread.setDaemon(true);
+		dataUpdateThread = updateThread;
+		dataDispatchThread = dispatchThread;
+		dispatchThread.start();
+		updateThread.start();
+	}
+	
+	/**
+	 * Tell the dispatch thread that no more data will be received (after the data that is still in the queue was processed).<br>
+	 * If the dispatch thread already ended (e.g. because a listener failed), the data that it didn't process is added to the buffers by the calling
+	 * thread, because the continues value was already updated when the data was received (so the data would not be requested again).
+	 * 
+	 * @param pendingData
+	 *        Data that was received, but not yet passed on because the update thread was interrupted (or null)
+	 * 
+	 * @param dispatching
+	 *        Whether the dispatch thread still takes data from the queue (if it ended, nothing is passed on)
+	 */
+	private void endPipeline(BlockingQueue<List<PhyphoxBuffer>> receivedData, List<PhyphoxBuffer> pendingData, AtomicBoolean dispatching) {
+		boolean interrupted = Thread.interrupted();//clear the flag to be able to wait for space in the queue
+		boolean passedOn = false;
+		try {
+			passedOn = (pendingData == null || passOn(receivedData, pendingData, dispatching))
+					&& passOn(receivedData, END_OF_PIPELINE, dispatching);
+		}
+		catch (InterruptedException ie) {
+			interrupted = true;
+		}
+		finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (!passedOn && !dispatching.get()) {
+			addUndispatchedData(receivedData, pendingData);
+		}
+	}
+	
+	/**
+	 * Add the data that the (ended) dispatch thread didn't take from the queue to the buffers, followed by the pending data.
+	 */
+	private void addUndispatchedData(BlockingQueue<List<PhyphoxBuffer>> receivedData, List<PhyphoxBuffer> pendingData) {
+		List<List<PhyphoxBuffer>> undispatchedData = new ArrayList<List<PhyphoxBuffer>>();
+		receivedData.drainTo(undispatchedData);
+		undispatchedData.removeIf(newData -> newData == END_OF_PIPELINE);
+		if (pendingData != null) {
+			undispatchedData.add(pendingData);
+		}
+		RuntimeException failure = null;
+		for (List<PhyphoxBuffer> newData : undispatchedData) {
+			try {
+				addNewDataToBuffers(newData);
+			}
+			catch (RuntimeException e) {
+				//the data is added to the buffers before the listeners are informed, so a failing listener doesn't prevent adding the next data
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+	
+	/**
+	 * Add data to the queue of the dispatch thread, waiting for space in the queue as long as the dispatch thread is running (a full queue without a
+	 * dispatch thread would block forever).
+	 * 
+	 * @return Whether the data was added to the queue (false if the dispatch thread ended before)
+	 */
+	private static boolean passOn(BlockingQueue<List<PhyphoxBuffer>> receivedData, List<PhyphoxBuffer> newData, AtomicBoolean dispatching)
+			throws InterruptedException {
+		while (dispatching.get()) {
+			if (receivedData.offer(newData, PIPELINE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Create a timer that calculates the time between the updates (using the current update settings). The timer replaces the timer of the last
+	 * start of the data connection.
+	 */
+	PhyphoxUpdateTimer createUpdateTimer(int updateRate) {
+		PhyphoxUpdateTimer timer = new PhyphoxUpdateTimer(updateMode, missedUpdatePolicy, updateRate, adaptiveUpdateRate);
+		updateTimer = timer;
+		return timer;
+	}
+	
+	/**
+	 * Request the new data from the experiment once and add it to the buffers (one update of the data connection).
+	 * 
+	 * @return The number of new samples that were received (the size of the largest received buffer; without a continues buffer only the samples
+	 *         that were added on the phone since the last update are counted)
+	 */
+	protected int pollData() throws PhyphoxConnectionException {
+		List<PhyphoxBuffer> newData = fetchData();
+		//add the new data to the buffers
+		addNewDataToBuffers(newData);
+		return countSamples(newData);
+	}
+	
+	/**
+	 * Request the new data from the experiment once (without adding it to the buffers).<br>
+	 * The last value of the continues buffer is updated immediately, so the next request only asks for newer data (even if this data was not yet
+	 * added to the buffers).
+	 */
+	protected List<PhyphoxBuffer> fetchData() throws PhyphoxConnectionException {
+		//create a request to get the new data from the experiment
+		PhyphoxDataRequest request = createRequestForNewData();
+		//send the request and get the new data from the experiment
+		List<PhyphoxBuffer> newData = connection.getData(request);
+		updateContinuesValue(newData);
+		return newData;
+	}
+	
+	/**
+	 * The number of new samples that were received (the size of the largest received buffer).<br>
+	 * Without a continues buffer the phone sends all it's data on every update, so only the samples that were received in addition to the last
+	 * update are new (otherwise the adaptive update rate would see an ever growing number of samples).
+	 */
+	private synchronized int countSamples(List<PhyphoxBuffer> newData) {
+		int receivedSamples = 0;
+		for (PhyphoxBuffer buffer : newData) {
+			receivedSamples = Math.max(receivedSamples, buffer.size());
+		}
+		if (continuesBufferIndex != -1) {
+			//incremental updates: only the new data is received
+			return receivedSamples;
+		}
+		//if less samples were received than the last time, the data of the phone was cleared (so all samples are new)
+		int newSamples = receivedSamples >= lastFullUpdateSamples ? receivedSamples - lastFullUpdateSamples : receivedSamples;
+		lastFullUpdateSamples = receivedSamples;
+		return newSamples;
+	}
+	
+	/**
+	 * Restart the data update thread (e.g. after it crashed). When the PhyphoxData object is created the thread is started automatically.<br>
+	 * If the experiment is registered in a PhyphoxExperimentFleet the fleet continues polling the data instead.<br>
+	 * If the updates are pipelined, the old dispatch thread first adds the data that it already received to the buffers (so the data is added in
+	 * order). If the calling thread is interrupted while waiting for it, the data connection is not restarted.
 	 */
 	public void restartDataConnection() {
 		if (dataUpdateThread != null) {
 			dataUpdateThread.interrupt();//interrupt the old thread if it's still running			
 		}
-		startUpdateThread();//start a new one
+		Thread oldDispatchThread = dataDispatchThread;
+		if (oldDispatchThread != null && oldDispatchThread != Thread.currentThread()) {
+			try {
+				oldDispatchThread.join();
+			}
+			catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		PhyphoxExperimentFleet fleet = this.fleet;
+		if (fleet != null) {
+			fleet.resume(this);
+		}
+		else {
+			startUpdateThread();//start a new one
+		}
 	}
 	
 	/**
@@ -134,8 +424,138 @@ public class PhyphoxExperiment {
 	 */
 	public void stopDataConnection() {
 		if (dataUpdateThread != null) {
+			//the dispatch thread (if any) ends after the received data was added to the buffers
 			dataUpdateThread.interrupt();
 		}
+		PhyphoxExperimentFleet fleet = this.fleet;
+		if (fleet != null) {
+			fleet.pause(this);
+		}
+	}
+	
+	/**
+	 * Check whether the data is currently updated (by the update thread or by a fleet).
+	 */
+	public boolean isDataConnectionRunning() {
+		PhyphoxExperimentFleet fleet = this.fleet;
+		if (fleet != null) {
+			return fleet.isPolling(this);
+		}
+		return dataUpdateThread != null && dataUpdateThread.isAlive() && !dataUpdateThread.isInterrupted();
+	}
+	
+	/**
+	 * Set the fleet that polls the data of this experiment (or null to use an own update thread).
+	 */
+	/**
+	 * Wait until the update thread (and the dispatch thread if the updates are pipelined) ended, after the data connection was stopped.
+	 */
+	void awaitDataConnectionStopped() throws InterruptedException {
+		for (Thread thread : new Thread[] {dataUpdateThread, dataDispatchThread}) {
+			if (thread != null && thread != Thread.currentThread()) {
+				thread.join();
+			}
+		}
+	}
+	
+	void setFleet(PhyphoxExperimentFleet fleet) {
+		this.fleet = fleet;
+	}
+	PhyphoxExperimentFleet getFleet() {
+		return fleet;
+	}
+	
+	/**
+	 * The rate with that the data is updated (in milliseconds).
+	 */
+	public int getUpdateRate() {
+		return updateRate;
+	}
+	
+	/**
+	 * Set the way the time between two data updates is measured (used from the next (re-)start of the data connection).
+	 * 
+	 * @param updateMode
+	 *        FIXED_DELAY (default) waits the update rate after every update; FIXED_RATE starts an update every update rate
+	 * 
+	 * @param missedUpdatePolicy
+	 *        Defines what happens to the updates that were missed in the FIXED_RATE mode, because an update took longer than the update rate
+	 */
+	public void setUpdateMode(PhyphoxUpdateMode updateMode, PhyphoxMissedUpdatePolicy missedUpdatePolicy) {
+		this.updateMode = Objects.requireNonNull(updateMode, "A null object is no valid update mode.");
+		this.missedUpdatePolicy = Objects.requireNonNull(missedUpdatePolicy, "A null object is no valid missed update policy.");
+	}
+	public void setUpdateMode(PhyphoxUpdateMode updateMode) {
+		setUpdateMode(updateMode, missedUpdatePolicy);
+	}
+	
+	/**
+	 * Use pipelined updates (used from the next (re-)start of the data connection): the next request is sent to the phone while the last received
+	 * data is still added to the buffers and the listeners are informed (in a second thread).<br>
+	 * Pipelined updates are not used when the data is polled by a PhyphoxExperimentFleet.
+	 * 
+	 * @param queueCapacity
+	 *        The number of received updates that can wait to be added to the buffers (or 0 to not use pipelined updates)
+	 */
+	public void setPipelinedUpdates(int queueCapacity) {
+		if (queueCapacity < 0) {
+			throw new IllegalArgumentException("The capacity of the queue must not be negative.");
+		}
+		this.pipelineCapacity = queueCapacity;
+	}
+	
+	public boolean isPipelinedUpdates() {
+		return pipelineCapacity > 0;
+	}
+	
+	/**
+	 * Use an adaptive update rate, that is adjusted to the number of new samples per update and the duration of the updates (used from the next
+	 * (re-)start of the data connection). The update rate of the experiment is used as initial update rate.
+	 * 
+	 * @param adaptiveUpdateRate
+	 *        The settings of the adaptive update rate (or null to use the fixed update rate)
+	 */
+	public void setAdaptiveUpdateRate(PhyphoxAdaptiveUpdateRate adaptiveUpdateRate) {
+		this.adaptiveUpdateRate = adaptiveUpdateRate;
+	}
+	
+	public PhyphoxAdaptiveUpdateRate getAdaptiveUpdateRate() {
+		return adaptiveUpdateRate;
+	}
+	
+	/**
+	 * The current time between two updates (in milliseconds). Differs from the update rate if an adaptive update rate is used.
+	 */
+	public int getCurrentUpdateRate() {
+		PhyphoxUpdateTimer timer = updateTimer;
+		return timer != null ? timer.getUpdateRate() : updateRate;
+	}
+	
+	public PhyphoxUpdateMode getUpdateMode() {
+		return updateMode;
+	}
+	
+	public PhyphoxMissedUpdatePolicy getMissedUpdatePolicy() {
+		return missedUpdatePolicy;
+	}
+	
+	/**
+	 * The number of updates that were skipped or coalesced (in the FIXED_RATE mode), since the data connection was started.
+	 */
+	public long getMissedUpdates() {
+		PhyphoxUpdateTimer timer = updateTimer;
+		return timer != null ? timer.getMissedUpdates() : 0;
+	}
+	
+	/**
+	 * Stop the data updates and close the (pooled) connections to the phone. The experiment can't send any requests to the phone afterwards (the old
+	 * data will be still available).
+	 */
+	public void closeConnection() {
+		stopDataConnection();
+		if (connection != null) {
+			connection.close();
+		}
 	}
 	
 	/**
@@ -158,24 +578,17 @@ public class PhyphoxExperiment {
 			restartDataConnection();
 		}
 		else {
-			//execute in a separate thread to not wait for the server response
-			Thread starterThread = new Thread(new Runnable() {
-				
-				@Override
-				public void run() {
-					try {
-						connection.startExperiment();
-					}
-					catch (PhyphoxConnectionException e) {
-						throw new RuntimeException(e);
-					}
-					restartDataConnection();
-				}
-			}, "experiment_starter_thread");
-			starterThread.setDaemon(true);
-			starterThread.start();
+			//execute asynchronously to not wait for the server response
+			startExperimentAsync().whenComplete(this::reportAsyncFailure);
 		}
 	}
+	/**
+	 * Remote start the experiment on the phone without blocking the calling thread. The connection to the phone is started when the experiment was
+	 * started.
+	 */
+	public CompletableFuture<Void> startExperimentAsync() {
+		return connection.startExperimentAsync().thenRun(this::restartDataConnection);
+	}
 	
 	/**
 	 * Remote stop the experiment on the phone. Also stops the connection to the phone and stops receiving data (the old data will be still
@@ -204,27 +617,20 @@ public class PhyphoxExperiment {
 			}
 		}
 		else {
-			//execute in a separate thread to not wait for the server response
-			Thread stopperThread = new Thread(new Runnable() {
-				
-				@Override
-				public void run() {
-					try {
-						connection.stopExperiment();
-					}
-					catch (PhyphoxConnectionException e) {
-						throw new RuntimeException(e);
-					}
-					finally {
-						//if the stopping of the experiment doesn't work, at least try to stop the data connection
-						stopDataConnection();
-					}
-				}
-			}, "experiment_stopper_thread");
-			stopperThread.setDaemon(true);
-			stopperThread.start();
+			//execute asynchronously to not wait for the server response
+			stopExperimentAsync().whenComplete(this::reportAsyncFailure);
 		}
 	}
+	/**
+	 * Remote stop the experiment on the phone without blocking the calling thread. The connection to the phone is stopped when the phone answered
+	 * (even if the stopping of the experiment failed).
+	 */
+	public CompletableFuture<Void> stopExperimentAsync() {
+		return connection.stopExperimentAsync().whenComplete((result, failure) -> {
+			//if the stopping of the experiment doesn't work, at least try to stop the data connection
+			stopDataConnection();
+		});
+	}
 	
 	/**
 	 * Delete all the data of this experiment on the phone.
@@ -243,6 +649,7 @@ public class PhyphoxExperiment {
 		if (wait) {
 			try {
 				connection.clearExperimentData();
+				resetContinuesValue();
 			}
 			finally {
 				//clearing the data will also stop the experiment
@@ -251,26 +658,28 @@ public class PhyphoxExperiment {
 			}
 		}
 		else {
-			//execute in a separate thread to not wait for the server response
-			Thread clearThread = new Thread(new Runnable() {
-				
-				@Override
-				public void run() {
-					try {
-						connection.clearExperimentData();
-					}
-					catch (PhyphoxConnectionException e) {
-						throw new RuntimeException(e);
-					}
-					finally {
-						//clearing the data will also stop the experiment
-						//if the clearing of the experiment's data doesn't work, at least try to stop the data connection
-						stopDataConnection();
-					}
-				}
-			}, "experiment_clear_data_thread");
-			clearThread.setDaemon(true);
-			clearThread.start();
+			//execute asynchronously to not wait for the server response
+			clearExperimentDataAsync().whenComplete(this::reportAsyncFailure);
+		}
+	}
+	/**
+	 * Delete all the data of this experiment on the phone without blocking the calling thread.
+	 */
+	public CompletableFuture<Void> clearExperimentDataAsync() {
+		return connection.clearExperimentDataAsync().thenRun(this::resetContinuesValue).whenComplete((result, failure) -> {
+			//clearing the data will also stop the experiment
+			//if the clearing of the experiment's data doesn't work, at least try to stop the data connection
+			stopDataConnection();
+		});
+	}
+	
+	/**
+	 * Report the failure of an asynchronous request that nobody waits for (like an uncaught exception in the thread that executed the request).
+	 */
+	private void reportAsyncFailure(Void result, Throwable failure) {
+		if (failure != null) {
+			Thread thread = Thread.currentThread();
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, failure);
 		}
 	}
 	/**
@@ -289,6 +698,12 @@ public class PhyphoxExperiment {
 	public void setExperimentBuffer(String bufferName, String value) throws PhyphoxConnectionException {
 		connection.setExperimentBuffer(bufferName, value);
 	}
+	/**
+	 * Send an user given value from an input element to a buffer on the phone without blocking the calling thread.
+	 */
+	public CompletableFuture<Void> setExperimentBufferAsync(String bufferName, String value) {
+		return connection.setExperimentBufferAsync(bufferName, value);
+	}
 	/**
 	 * Trigger an element of the experiment on the phone.<br>
 	 * 
@@ -301,65 +716,537 @@ public class PhyphoxExperiment {
 	public void triggerExperimentElement(String elementId) throws PhyphoxConnectionException {
 		connection.triggerExperimentElement(elementId);
 	}
+	/**
+	 * Trigger an element of the experiment on the phone without blocking the calling thread.
+	 */
+	public CompletableFuture<Void> triggerExperimentElementAsync(String elementId) {
+		return connection.triggerExperimentElementAsync(elementId);
+	}
+	
+	/**
+	 * Use a continues buffer (e.g. time) to only request the new data from the phone (incremental updates).<br>
+	 * All buffers are requested with the last received value of the continues buffer as threshold, so the phone only sends the data that was
+	 * recorded afterwards. If the continues buffer is not one of the experiment's buffers it's added to the buffers.
+	 * 
+	 * @param continuesBufferName
+	 *        The name of a continues (monotonically increasing) buffer of the experiment
+	 */
+	public synchronized void setContinuesBuffer(String continuesBufferName) {
+		Objects.requireNonNull(continuesBufferName, "A null object is no valid buffer name.");
+		int index = findBufferIndex(continuesBufferName);
+		if (index == -1) {
+			//add the continues buffer to the buffers, because it's values are needed to create the requests
+			data.add(new PhyphoxBuffer(continuesBufferName, new double[0]));
+			lastRead = Arrays.copyOf(lastRead, data.size());
+			index = data.size() - 1;
+			bufferIndices.put(continuesBufferName, index);
+			lastRead[index] = -1;
+			applyMaxSize(index);
+			publishSnapshot();
+		}
+		continuesBufferIndex = index;
+		timeIndex = new PhyphoxTimeIndex();
+		timeIndex.update(data.get(index));
+		resetContinuesValue();
+	}
+	
+	/**
+	 * Reset the last known value of the continues buffer, so the next request is a full update (e.g. after the phone's data was cleared).
+	 */
+	private synchronized void resetContinuesValue() {
+		lastContinuesValue = Double.NaN;
+	}
 	
 	@VisibleForTesting
-	protected PhyphoxDataRequest createRequestForNewData() {
+	protected synchronized PhyphoxDataRequest createRequestForNewData() {
 		PhyphoxDataRequest request = null;
 		PhyphoxDataRequestBuilder builder = new PhyphoxDataRequestBuilder();
+		boolean incrementalUpdate = continuesBufferIndex != -1 && !Double.isNaN(lastContinuesValue);
 		for (int i = 0; i < data.size(); i++) {
 			builder.setBuffer(i, data.get(i).getName());
-			//only full updates (added automatically)
+			if (incrementalUpdate) {
+				if (i == continuesBufferIndex) {
+					//only the values of the continues buffer that are greater than the last received value
+					builder.setOffset(i, lastContinuesValue);
+				}
+				else {
+					//only the values that were recorded after the last received value of the continues buffer
+					builder.setOffsetToBuffer(i, continuesBufferIndex, lastContinuesValue);
+				}
+			}
+			//else: only full updates (added automatically)
 		}
 		request = builder.build();
 		return request;
 	}
 	
 	@VisibleForTesting
-	protected synchronized void addNewDataToBuffers(List<PhyphoxBuffer> newData) {
-		//just append the new data
+	protected void addNewDataToBuffers(List<PhyphoxBuffer> newData) {
+		synchronized (dataListenerLock) {
+			List<PhyphoxBuffer> listenerData = attachNewData(newData);
+			//the data listeners are informed after the lock of the experiment was released, so a listener that blocks (e.g. an asynchronous listener
+			//with the overflow policy BLOCK) doesn't block the other threads that use the experiment and can use the experiment itself
+			if (listenerData != null) {
+				//full updates are only used when there is no continues buffer
+				for (PhyphoxDataListener listener : dataListeners) {
+					listener.updateData(listenerData);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Add the new data to the buffers and inform the listeners that need the lock of the experiment (the view and batch listeners).
+	 * 
+	 * @return The copies of the new data for the data listeners (or null if there are no data listeners)
+	 */
+	private synchronized List<PhyphoxBuffer> attachNewData(List<PhyphoxBuffer> newData) {
+		long[] removedValues = new long[data.size()];
+		for (int i = 0; i < data.size(); i++) {
+			removedValues[i] = data.get(i).getRemovedValues();
+		}
+		//just append the new data (buffers with a maximum size overwrite their oldest values)
 		for (PhyphoxBuffer buffer : newData) {
 			String name = buffer.getName();
-			PhyphoxBuffer existingBuffer = getBufferData(name);
-			existingBuffer.attachData(buffer.getData());
+			int index = getBufferIndex(name);
+			PhyphoxBuffer existingBuffer = getBufferData(index);
+			existingBuffer.attachData(buffer);
+		}
+		//the batch is written by the log's own thread (after it was added to the buffers, so a problem of the log can't lose the received data)
+		if (dataLog != null) {
+			dataLog.append(newData);
+		}
+		//remember the last value to only request newer data the next time
+		updateContinuesValue(newData);
+		if (timeIndex != null) {
+			timeIndex.update(data.get(continuesBufferIndex));
+		}
+		//before the values outside of the time windows are removed
+		for (PhyphoxBufferAggregate aggregate : aggregates) {
+			updateAggregate(aggregate);
+		}
+		if (recording != null) {
+			//the data is written by the writer thread of the recording, so the update of the data isn't blocked by the disk
+			recording.append(newData);
 		}
-		informListeners();
+		removeValuesOutsideTimeWindow();
+		for (int i = 0; i < data.size(); i++) {
+			updateLastRead(i, removedValues[i]);
+		}
+		publishSnapshot();
+		List<PhyphoxBuffer> listenerData = informViewListeners();
+		informBatchListeners();
+		return listenerData;
 	}
 	
 	/**
-	 * Inform all listeners about the new data
+	 * Remove the values that are older than the time window of the buffer's retention policy (if any).<br>
+	 * The values of all buffers are expected to belong to the values of the continues buffer with the same index (counted since the start of the
+	 * recording), so the values are removed up to the first value of the continues buffer that is inside the time window.
 	 */
-	private void informListeners() {
-		if (!dataListeners.isEmpty()) {
-			//get the new data (sets the last read indices)
-			List<PhyphoxBuffer> newData = getNewData();
-			//full updates are only used when there is no continues buffer
-			for (PhyphoxDataListener listener : dataListeners) {
-				listener.updateData(newData);
+	private synchronized void removeValuesOutsideTimeWindow() {
+		if (continuesBufferIndex == -1) {
+			return;
+		}
+		PhyphoxBuffer timeBuffer = data.get(continuesBufferIndex);
+		if (timeBuffer.size() == 0) {
+			return;
+		}
+		double lastTime = timeBuffer.get(timeBuffer.size() - 1);
+		for (PhyphoxBuffer buffer : data) {
+			PhyphoxRetentionPolicy policy = getRetentionPolicy(buffer.getName());
+			if (policy.isTimeWindow()) {
+				//the first index (since the start of the recording) that is inside the time window
+				long firstIndex = timeBuffer.getRemovedValues() + timeIndex.findFirstIndex(timeBuffer, lastTime - policy.getTimeWindow(), false);
+				long outdatedValues = firstIndex - buffer.getRemovedValues();
+				if (outdatedValues > 0) {
+					buffer.removeOldest((int) Math.min(outdatedValues, buffer.size()));
+				}
 			}
 		}
-		//else: if there is no listener don't set the last read indices
 	}
 	
 	/**
-	 * Get all buffers from the experiment.<br>
-	 * The buffers are not cloned, so be careful when changing them.
+	 * Move the last read index of a buffer, after it's oldest values were removed (so the new data is still found).
+	 * 
+	 * @param removedValues
+	 *        The number of removed values of the buffer before the values were removed
 	 */
-	public synchronized List<PhyphoxBuffer> getAllData() {
-		List<PhyphoxBuffer> allData = new ArrayList<PhyphoxBuffer>(data.size());
-		for (int i = 0; i < data.size(); i++) {
-			allData.add(getBufferData(i));
+	private void updateLastRead(int buffer, long removedValues) {
+		long removed = data.get(buffer).getRemovedValues() - removedValues;
+		if (removed > 0 && lastRead[buffer] > 0) {
+			lastRead[buffer] = (int) Math.max(0, lastRead[buffer] - removed);
 		}
-		return allData;
 	}
+	
 	/**
-	 * Get a single buffer from the experiment by it's name.<br>
-	 * The buffers are not cloned, so be careful when changing them.
+	 * Set the retention policy of all buffers (that have no own retention policy), that defines which data of the buffers is kept.<br>
+	 * Values that are removed before they were read (using getNewData()) are lost.
+	 * 
+	 * @param retentionPolicy
+	 *        The policy that is used for all buffers (PhyphoxRetentionPolicy.UNLIMITED to keep all data)
 	 */
-	public synchronized PhyphoxBuffer getBufferData(String buffer) {
-		return getBufferData(getBufferIndex(buffer));
+	public synchronized void setRetentionPolicy(PhyphoxRetentionPolicy retentionPolicy) {
+		Objects.requireNonNull(retentionPolicy, "A null object is no valid retention policy.");
+		checkTimeWindow(retentionPolicy);
+		this.retentionPolicy = retentionPolicy;
+		for (int i = 0; i < data.size(); i++) {
+			applyMaxSize(i);
+		}
 	}
 	/**
-	 * Get a single buffer from the experiment by it's index.<br>
+	 * Set the retention policy of a single buffer, that defines which data of the buffer is kept (or null to use the retention policy of the
+	 * experiment).<br>
+	 * Values that are removed before they were read (using getNewData()) are lost.
+	 */
+	public synchronized void setRetentionPolicy(String buffer, PhyphoxRetentionPolicy retentionPolicy) {
+		int index = getBufferIndex(buffer);
+		if (retentionPolicy == null) {
+			bufferRetentionPolicies.remove(buffer);
+		}
+		else {
+			checkTimeWindow(retentionPolicy);
+			bufferRetentionPolicies.put(buffer, retentionPolicy);
+		}
+		applyMaxSize(index);
+	}
+	
+	/**
+	 * Get the retention policy of the experiment (that is used for all buffers without an own retention policy).
+	 */
+	public synchronized PhyphoxRetentionPolicy getRetentionPolicy() {
+		return retentionPolicy;
+	}
+	/**
+	 * Get the retention policy that is used for a buffer.
+	 */
+	public synchronized PhyphoxRetentionPolicy getRetentionPolicy(String buffer) {
+		return bufferRetentionPolicies.getOrDefault(buffer, retentionPolicy);
+	}
+	
+	/**
+	 * Create running statistics of a buffer's values, that are updated whenever new data is added to the buffer (see PhyphoxStatistics). The
+	 * statistics start with the values that are currently in the buffer.
+	 * 
+	 * @param window
+	 *        Defines the values that are used for the statistics (PhyphoxRetentionPolicy.UNLIMITED to use all values; a time window needs a
+	 *        continues buffer)
+	 */
+	public synchronized PhyphoxStatistics createStatistics(String buffer, PhyphoxRetentionPolicy window) {
+		return createStatistics(getBufferIndex(buffer), window);
+	}
+	/**
+	 * Create running statistics of a buffer's values, identified by it's handle (see createStatistics(String, PhyphoxRetentionPolicy)).
+	 */
+	public synchronized PhyphoxStatistics createStatistics(PhyphoxBufferHandle buffer, PhyphoxRetentionPolicy window) {
+		return createStatistics(getBufferIndex(buffer), window);
+	}
+	private PhyphoxStatistics createStatistics(int buffer, PhyphoxRetentionPolicy window) {
+		Objects.requireNonNull(window, "A null object is no valid window.");
+		checkTimeWindow(window);
+		return addAggregate(new PhyphoxStatistics(data.get(buffer).getName(), buffer, window));
+	}
+	/**
+	 * Stop updating the statistics.
+	 */
+	public synchronized void removeStatistics(PhyphoxStatistics bufferStatistics) {
+		aggregates.remove(bufferStatistics);
+	}
+	
+	/**
+	 * Create estimated quantiles (e.g. the median or the 95th percentile) of a buffer's values, that are updated whenever new data is added to the
+	 * buffer, using quantile sketches with a bounded size (see PhyphoxQuantiles). The quantiles start with the values that are currently in the
+	 * buffer.
+	 * 
+	 * @param window
+	 *        Defines the values that are used for the quantiles (PhyphoxRetentionPolicy.UNLIMITED to use all values; a time window needs a continues
+	 *        buffer)
+	 */
+	public synchronized PhyphoxQuantiles createQuantiles(String buffer, PhyphoxRetentionPolicy window) {
+		return createQuantiles(getBufferIndex(buffer), window, PhyphoxQuantileSketch.DEFAULT_K);
+	}
+	/**
+	 * Create estimated quantiles of a buffer's values (see createQuantiles(String, PhyphoxRetentionPolicy)).
+	 * 
+	 * @param k
+	 *        The accuracy and the size of the sketches (see PhyphoxQuantileSketch)
+	 */
+	public synchronized PhyphoxQuantiles createQuantiles(String buffer, PhyphoxRetentionPolicy window, int k) {
+		return createQuantiles(getBufferIndex(buffer), window, k);
+	}
+	/**
+	 * Create estimated quantiles of a buffer's values, identified by it's handle (see createQuantiles(String, PhyphoxRetentionPolicy)).
+	 */
+	public synchronized PhyphoxQuantiles createQuantiles(PhyphoxBufferHandle buffer, PhyphoxRetentionPolicy window) {
+		return createQuantiles(getBufferIndex(buffer), window, PhyphoxQuantileSketch.DEFAULT_K);
+	}
+	private PhyphoxQuantiles createQuantiles(int buffer, PhyphoxRetentionPolicy window, int k) {
+		Objects.requireNonNull(window, "A null object is no valid window.");
+		checkTimeWindow(window);
+		return addAggregate(new PhyphoxQuantiles(data.get(buffer).getName(), buffer, window, k));
+	}
+	/**
+	 * Stop updating the quantiles.
+	 */
+	public synchronized void removeQuantiles(PhyphoxQuantiles quantiles) {
+		aggregates.remove(quantiles);
+	}
+	
+	/**
+	 * Add the values that are currently in the buffer to an aggregate and update it whenever new data is added.
+	 */
+	private <T extends PhyphoxBufferAggregate> T addAggregate(T aggregate) {
+		aggregate.setNextIndex(data.get(aggregate.getBufferIndex()).getRemovedValues());
+		updateAggregate(aggregate);
+		aggregates.add(aggregate);
+		return aggregate;
+	}
+	
+	/**
+	 * Add the values of the buffer, that were added since the last update, to an aggregate (the values of a time window are added when their time
+	 * was received).
+	 */
+	private void updateAggregate(PhyphoxBufferAggregate aggregate) {
+		PhyphoxBuffer buffer = data.get(aggregate.getBufferIndex());
+		long removed = buffer.getRemovedValues();
+		long endIndex = removed + buffer.size();
+		//values that were overwritten before they were added (e.g. by a ring buffer) are skipped
+		long index = Math.max(aggregate.getNextIndex(), removed);
+		if (aggregate.getWindow().isTimeWindow()) {
+			PhyphoxBuffer timeBuffer = data.get(continuesBufferIndex);
+			long removedTimes = timeBuffer.getRemovedValues();
+			endIndex = Math.min(endIndex, removedTimes + timeBuffer.size());
+			for (index = Math.max(index, removedTimes); index < endIndex; index++) {
+				aggregate.add(timeBuffer.get((int) (index - removedTimes)), buffer.get((int) (index - removed)));
+			}
+		}
+		else {
+			for (; index < endIndex; index++) {
+				aggregate.add(Double.NaN, buffer.get((int) (index - removed)));
+			}
+		}
+		aggregate.setNextIndex(Math.max(index, aggregate.getNextIndex()));
+	}
+	
+	private void checkTimeWindow(PhyphoxRetentionPolicy retentionPolicy) {
+		if (retentionPolicy.isTimeWindow() && continuesBufferIndex == -1) {
+			throw new IllegalStateException("A time window can only be used with a continues buffer (that is used as time).");
+		}
+	}
+	
+	/**
+	 * Let a buffer spill it's older values to a file that is mapped into memory, so the length of the recording is not limited by the heap size (or
+	 * null to keep all values of the buffer on the heap).<br>
+	 * The spill storage is kept when the buffer is cleared (the file of the old values is deleted).
+	 */
+	public synchronized void setSpillStorage(String buffer, PhyphoxSpillStorage spillStorage) throws IOException {
+		PhyphoxBuffer bufferData = data.get(getBufferIndex(buffer));
+		bufferData.setSpillStorage(spillStorage);
+		if (spillStorage == null) {
+			spillStorages.remove(buffer);
+		}
+		else {
+			spillStorages.put(buffer, spillStorage);
+		}
+	}
+	
+	public synchronized PhyphoxSpillStorage getSpillStorage(String buffer) {
+		return spillStorages.get(buffer);
+	}
+	
+	/**
+	 * Start recording the received data to the disk (in a columnar format, that can be opened using a PhyphoxRecordingReader).<br>
+	 * All data that is received afterwards is appended to the recording (also data that is later removed from the buffers, e.g. by a retention
+	 * policy). The continues buffer (if any) is used as time of the recording.
+	 * 
+	 * @param directory
+	 *        The directory of the new recording
+	 */
+	public synchronized void startRecording(Path directory) throws IOException {
+		if (recording != null) {
+			throw new IllegalStateException("The experiment is already recorded. Stop the recording first.");
+		}
+		List<String> bufferNames = new ArrayList<String>(data.size());
+		for (PhyphoxBuffer buffer : data) {
+			bufferNames.add(buffer.getName());
+		}
+		String timeBufferName = continuesBufferIndex != -1 ? bufferNames.get(continuesBufferIndex) : null;
+		recording = new PhyphoxRecordingWriter(directory, bufferNames, timeBufferName);
+	}
+	
+	/**
+	 * Stop recording the received data and close the files of the recording (after the received data was written).<br>
+	 * A problem that occurred while the data was written to the recording is thrown here (the recording was stopped by the problem).
+	 */
+	public synchronized void stopRecording() throws IOException {
+		if (recording != null) {
+			try {
+				recording.close();
+			}
+			finally {
+				recording = null;
+			}
+		}
+	}
+	
+	public synchronized boolean isRecording() {
+		return recording != null;
+	}
+	
+	/**
+	 * Start writing all received data to a crash-safe log, that can be used to recover the data after the JVM died (see recoverFromLog).<br>
+	 * If the log file already exists, the new data is appended to it. The log is written by an own thread, so the data updates are not blocked.
+	 * 
+	 * @param logFile
+	 *        The file of the log
+	 * 
+	 * @param syncPolicy
+	 *        Defines when the log is forced to the disk
+	 */
+	public synchronized void startLog(Path logFile, PhyphoxLogSyncPolicy syncPolicy) throws IOException {
+		if (dataLog != null) {
+			throw new IllegalStateException("The data is already logged. Stop the log first.");
+		}
+		dataLog = new PhyphoxDataLog(logFile, syncPolicy);
+	}
+	
+	/**
+	 * Stop logging the received data (the data that was received before is still written and synced).<br>
+	 * A problem that occurred while the log was written is thrown here (the log was stopped by the problem, but the data updates continued).
+	 */
+	public synchronized void stopLog() throws IOException {
+		if (dataLog != null) {
+			try {
+				dataLog.close();
+			}
+			finally {
+				dataLog = null;
+			}
+		}
+	}
+	
+	/**
+	 * Rebuild the data of the experiment from a log (e.g. after the JVM died), by adding all logged batches to the buffers again.<br>
+	 * Call this method before the log is started (to append the new data to the same log) and before the data connection is started, so the next
+	 * update only requests the data that was not logged (if a continues buffer is used). An incomplete last batch of the log is ignored.
+	 * 
+	 * @return The number of batches that were recovered
+	 */
+	public int recoverFromLog(Path logFile) throws IOException {
+		synchronized (this) {
+			if (dataLog != null) {
+				throw new IllegalStateException("The data can't be recovered while it's logged.");
+			}
+		}
+		List<List<PhyphoxBuffer>> batches = PhyphoxDataLog.readBatches(logFile);
+		for (List<PhyphoxBuffer> batch : batches) {
+			addNewDataToBuffers(batch);
+		}
+		return batches.size();
+	}
+	
+	/**
+	 * Set the maximum size of a buffer, depending on it's retention policy.
+	 */
+	private synchronized void applyMaxSize(int index) {
+		PhyphoxBuffer buffer = data.get(index);
+		long removedValues = buffer.getRemovedValues();
+		buffer.setMaxSize(getRetentionPolicy(buffer.getName()).getMaxSamples());
+		updateLastRead(index, removedValues);
+	}
+	
+	/**
+	 * Remember the last received value of the continues buffer (if it's part of the received data).<br>
+	 * The value is only increased, because the data of pipelined updates can be added to the buffers after newer data was received.
+	 */
+	private synchronized void updateContinuesValue(List<PhyphoxBuffer> newData) {
+		if (continuesBufferIndex == -1) {
+			return;
+		}
+		String continuesBufferName = data.get(continuesBufferIndex).getName();
+		for (PhyphoxBuffer buffer : newData) {
+			if (buffer.getName().equals(continuesBufferName) && buffer.size() > 0) {
+				double lastValue = buffer.get(buffer.size() - 1);
+				if (Double.isNaN(lastContinuesValue) || lastValue > lastContinuesValue) {
+					lastContinuesValue = lastValue;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Inform the view listeners about the new data and create the copies of the new data for the data listeners (that are informed after the lock
+	 * of the experiment was released).
+	 * 
+	 * @return The copies of the new data (or null if there are no data listeners)
+	 */
+	private List<PhyphoxBuffer> informViewListeners() {
+		List<PhyphoxBuffer> newData = null;
+		if (!dataListeners.isEmpty() || !dataViewListeners.isEmpty()) {
+			//get the new data (sets the last read indices)
+			List<PhyphoxBufferView> newDataViews = getNewDataViews();
+			for (PhyphoxDataViewListener listener : dataViewListeners) {
+				listener.updateData(newDataViews);
+			}
+			if (!dataListeners.isEmpty()) {
+				//the listeners get copies of the new data
+				newData = new ArrayList<PhyphoxBuffer>(newDataViews.size());
+				for (PhyphoxBufferView view : newDataViews) {
+					newData.add(view.toBuffer());
+				}
+			}
+		}
+		//else: if there is no listener don't set the last read indices
+		return newData;
+	}
+	
+	/**
+	 * Inform the batch listeners about the new data, using the reused batch (so no objects are created).
+	 */
+	private synchronized void informBatchListeners() {
+		if (batchListeners.isEmpty()) {
+			return;
+		}
+		batch.reset(data.size());
+		for (int i = 0; i < data.size(); i++) {
+			PhyphoxBuffer buffer = data.get(i);
+			batch.set(i, buffer, batchCursor.getUnreadIndex(i, buffer));
+			batchCursor.moveToEnd(i, buffer);
+		}
+		//use indices instead of an iterator to not create objects
+		for (int i = 0; i < batchListeners.size(); i++) {
+			batchListeners.get(i).updateData(batch);
+		}
+		batch.clear();
+	}
+	
+	/**
+	 * Get all buffers from the experiment.<br>
+	 * The buffers are not cloned, so be careful when changing them.
+	 */
+	public synchronized List<PhyphoxBuffer> getAllData() {
+		List<PhyphoxBuffer> allData = new ArrayList<PhyphoxBuffer>(data.size());
+		for (int i = 0; i < data.size(); i++) {
+			allData.add(getBufferData(i));
+		}
+		return allData;
+	}
+	/**
+	 * Get a single buffer from the experiment by it's name.<br>
+	 * The buffers are not cloned, so be careful when changing them.
+	 */
+	public synchronized PhyphoxBuffer getBufferData(String buffer) {
+		return getBufferData(getBufferIndex(buffer));
+	}
+	/**
+	 * Get a single buffer from the experiment by it's handle.<br>
+	 * The buffers are not cloned, so be careful when changing them.
+	 */
+	public synchronized PhyphoxBuffer getBufferData(PhyphoxBufferHandle buffer) {
+		return getBufferData(getBufferIndex(buffer));
+	}
+	/**
+	 * Get a single buffer from the experiment by it's index.<br>
 	 * The buffers are not cloned, so be careful when changing them.
 	 */
 	protected synchronized PhyphoxBuffer getBufferData(int buffer) {
@@ -386,16 +1273,209 @@ public class PhyphoxExperiment {
 	public synchronized PhyphoxBuffer getNewBufferData(String buffer) {
 		return getNewBufferData(getBufferIndex(buffer));
 	}
+	/**
+	 * Get a single buffers new data (in form of a new buffer) by it's handle. The new data includes everything on from the last time the buffer was
+	 * read.
+	 */
+	public synchronized PhyphoxBuffer getNewBufferData(PhyphoxBufferHandle buffer) {
+		return getNewBufferData(getBufferIndex(buffer));
+	}
 	/**
 	 * Get a single buffers new data (in form of a new buffer) by it's index. The new data includes everything on from the last time the buffer was
 	 * read.<br>
 	 * The buffers are not cloned, so be careful when changing them.
 	 */
 	protected synchronized PhyphoxBuffer getNewBufferData(int buffer) {
+		return getNewBufferView(buffer).toBuffer();//create a buffer with only the new data
+	}
+	
+	/**
+	 * Get read-only views of every buffers new data, without copying the data (the views read the values from the experiment's buffers). The new data
+	 * includes everything on from the last time the buffer was read.
+	 */
+	public synchronized List<PhyphoxBufferView> getNewDataViews() {
+		List<PhyphoxBufferView> newDataViews = new ArrayList<PhyphoxBufferView>(data.size());
+		for (int i = 0; i < data.size(); i++) {
+			newDataViews.add(getNewBufferView(i));
+		}
+		return newDataViews;
+	}
+	/**
+	 * Get a read-only view of a single buffers new data by it's name, without copying the data. The new data includes everything on from the last
+	 * time the buffer was read.
+	 */
+	public synchronized PhyphoxBufferView getNewBufferView(String buffer) {
+		return getNewBufferView(getBufferIndex(buffer));
+	}
+	/**
+	 * Get a read-only view of a single buffers new data by it's handle, without copying the data.
+	 */
+	public synchronized PhyphoxBufferView getNewBufferView(PhyphoxBufferHandle buffer) {
+		return getNewBufferView(getBufferIndex(buffer));
+	}
+	protected synchronized PhyphoxBufferView getNewBufferView(int buffer) {
 		int startIndex = Math.max(0, lastRead[buffer]);
-		PhyphoxBuffer newDataBuffer = data.get(buffer).getCopyFromIndex(startIndex);//create a buffer with only the new data
-		lastRead[buffer] = data.get(buffer).getData().length - 1;//update the index
-		return newDataBuffer;
+		PhyphoxBufferView newDataView = data.get(buffer).viewFromIndex(startIndex);
+		lastRead[buffer] = data.get(buffer).size() - 1;//update the index
+		return newDataView;
+	}
+	
+	/**
+	 * Get the last published snapshot of all buffers.<br>
+	 * The snapshot is immutable and consistent (all buffers contain the data of the same updates). Getting and reading a snapshot doesn't lock the
+	 * experiment, so any number of threads can read the data without blocking the thread that updates the data (and without being blocked by it).
+	 * The snapshots are created after the first snapshot was requested; the new values of every update are copied once to be shared by all
+	 * following snapshots. The snapshots keep the values on the heap, so they should be used with a retention policy (see setRetentionPolicy). The
+	 * values of a buffer that were moved to a spill storage are not part of the snapshots.
+	 */
+	public PhyphoxExperimentSnapshot getSnapshot() {
+		PhyphoxExperimentSnapshot currentSnapshot = snapshot;
+		if (currentSnapshot == null) {
+			synchronized (this) {
+				if (snapshotPublisher == null) {
+					snapshotPublisher = new PhyphoxSnapshotPublisher();
+					publishSnapshot();
+				}
+				currentSnapshot = snapshot;
+			}
+		}
+		return currentSnapshot;
+	}
+	
+	private synchronized void publishSnapshot() {
+		if (snapshotPublisher != null) {
+			snapshot = snapshotPublisher.publish(data);
+		}
+	}
+	
+	/**
+	 * Get read-only views of the values of all buffers, that were recorded in a time range (from fromTime to toTime, both inclusive), without
+	 * copying the values.<br>
+	 * The continues buffer is used as time. The values of the other buffers are expected to belong to the values of the continues buffer with the
+	 * same index (counted since the start of the recording). The range is found using a block index of the continues buffer and a binary search, so
+	 * a query only costs O(log n) (plus the values that are read from the views).
+	 */
+	public synchronized List<PhyphoxBufferView> getViewsInTimeRange(double fromTime, double toTime) {
+		long[] range = findTimeRange(fromTime, toTime);
+		List<PhyphoxBufferView> views = new ArrayList<PhyphoxBufferView>(data.size());
+		for (int i = 0; i < data.size(); i++) {
+			views.add(getView(i, range[0], range[1]));
+		}
+		return views;
+	}
+	/**
+	 * Get a read-only view of the values of a single buffer by it's name, that were recorded in a time range (from fromTime to toTime, both
+	 * inclusive), without copying the values (see getViewsInTimeRange(double, double)).
+	 */
+	public synchronized PhyphoxBufferView getViewInTimeRange(String buffer, double fromTime, double toTime) {
+		int index = getBufferIndex(buffer);
+		long[] range = findTimeRange(fromTime, toTime);
+		return getView(index, range[0], range[1]);
+	}
+	/**
+	 * Get a read-only view of the values of a single buffer by it's handle, that were recorded in a time range (from fromTime to toTime, both
+	 * inclusive), without copying the values (see getViewsInTimeRange(double, double)).
+	 */
+	public synchronized PhyphoxBufferView getViewInTimeRange(PhyphoxBufferHandle buffer, double fromTime, double toTime) {
+		int index = getBufferIndex(buffer);
+		long[] range = findTimeRange(fromTime, toTime);
+		return getView(index, range[0], range[1]);
+	}
+	
+	/**
+	 * Find the range of values in a time range.
+	 * 
+	 * @return The first index and the index after the last value of the range, counted from the start of the recording
+	 */
+	private long[] findTimeRange(double fromTime, double toTime) {
+		if (continuesBufferIndex == -1) {
+			throw new IllegalStateException("A time range can only be used with a continues buffer (that is used as time).");
+		}
+		PhyphoxBuffer timeBuffer = data.get(continuesBufferIndex);
+		timeIndex.update(timeBuffer);
+		long removed = timeBuffer.getRemovedValues();
+		long firstIndex = removed + timeIndex.findFirstIndex(timeBuffer, fromTime, false);
+		long endIndex = removed + timeIndex.findFirstIndex(timeBuffer, toTime, true);
+		return new long[] {firstIndex, Math.max(firstIndex, endIndex)};
+	}
+	
+	/**
+	 * Get a view of a buffer's values between two indices that are counted from the start of the recording.
+	 */
+	private PhyphoxBufferView getView(int buffer, long firstIndex, long endIndex) {
+		PhyphoxBuffer bufferData = data.get(buffer);
+		long removed = bufferData.getRemovedValues();
+		int fromIndex = (int) Math.min(Math.max(firstIndex - removed, 0), bufferData.size());
+		int toIndex = (int) Math.min(Math.max(endIndex - removed, 0), bufferData.size());
+		return bufferData.view(fromIndex, toIndex);
+	}
+	
+	/**
+	 * Create a read cursor for a consumer of the data, that starts at the oldest values of the buffers.<br>
+	 * A consumer that uses it's own cursor to get the new data (see getNewData(PhyphoxReadCursor)) doesn't change the data that the other consumers
+	 * (or the listeners) get as new data.
+	 */
+	public synchronized PhyphoxReadCursor createReadCursor() {
+		return new PhyphoxReadCursor(this, data.size());
+	}
+	
+	/**
+	 * Get every buffers new data (in form of a new buffer), that was not read using the given cursor. The cursor is moved to the end of the buffers.
+	 */
+	public synchronized List<PhyphoxBuffer> getNewData(PhyphoxReadCursor cursor) {
+		List<PhyphoxBuffer> newDataBuffers = new ArrayList<PhyphoxBuffer>(data.size());
+		for (int i = 0; i < data.size(); i++) {
+			newDataBuffers.add(getNewBufferView(cursor, i).toBuffer());
+		}
+		return newDataBuffers;
+	}
+	/**
+	 * Get a single buffers new data (in form of a new buffer) by it's name, that was not read using the given cursor. The cursor is moved to the end
+	 * of the buffer.
+	 */
+	public synchronized PhyphoxBuffer getNewBufferData(PhyphoxReadCursor cursor, String buffer) {
+		return getNewBufferView(cursor, getBufferIndex(buffer)).toBuffer();
+	}
+	/**
+	 * Get a single buffers new data (in form of a new buffer) by it's handle, that was not read using the given cursor.
+	 */
+	public synchronized PhyphoxBuffer getNewBufferData(PhyphoxReadCursor cursor, PhyphoxBufferHandle buffer) {
+		return getNewBufferView(cursor, getBufferIndex(buffer)).toBuffer();
+	}
+	
+	/**
+	 * Get read-only views of every buffers new data, that was not read using the given cursor, without copying the data. The cursor is moved to the
+	 * end of the buffers.
+	 */
+	public synchronized List<PhyphoxBufferView> getNewDataViews(PhyphoxReadCursor cursor) {
+		List<PhyphoxBufferView> newDataViews = new ArrayList<PhyphoxBufferView>(data.size());
+		for (int i = 0; i < data.size(); i++) {
+			newDataViews.add(getNewBufferView(cursor, i));
+		}
+		return newDataViews;
+	}
+	/**
+	 * Get a read-only view of a single buffers new data by it's name, that was not read using the given cursor, without copying the data. The cursor
+	 * is moved to the end of the buffer.
+	 */
+	public synchronized PhyphoxBufferView getNewBufferView(PhyphoxReadCursor cursor, String buffer) {
+		return getNewBufferView(cursor, getBufferIndex(buffer));
+	}
+	/**
+	 * Get a read-only view of a single buffers new data by it's handle, that was not read using the given cursor, without copying the data.
+	 */
+	public synchronized PhyphoxBufferView getNewBufferView(PhyphoxReadCursor cursor, PhyphoxBufferHandle buffer) {
+		return getNewBufferView(cursor, getBufferIndex(buffer));
+	}
+	protected synchronized PhyphoxBufferView getNewBufferView(PhyphoxReadCursor cursor, int buffer) {
+		Objects.requireNonNull(cursor, "A null object is no valid read cursor.");
+		if (cursor.getExperiment() != this) {
+			throw new IllegalArgumentException("The read cursor belongs to another experiment.");
+		}
+		PhyphoxBuffer existingBuffer = data.get(buffer);
+		PhyphoxBufferView newDataView = existingBuffer.viewFromIndex(cursor.getUnreadIndex(buffer, existingBuffer));
+		cursor.moveToEnd(buffer, existingBuffer);
+		return newDataView;
 	}
 	
 	/**
@@ -403,8 +1483,10 @@ public class PhyphoxExperiment {
 	 */
 	public synchronized void clearAllBuffers() {
 		for (int i = 0; i < data.size(); i++) {
-			clearBuffer(i);
+			clearBufferData(i);
 		}
+		//publish a single snapshot, so readers don't see some buffers cleared and others not
+		publishSnapshot();
 	}
 	/**
 	 * Delete all the data from a single buffer, identified by it's name (except of the last value in the buffer to know what data is needed next from
@@ -413,24 +1495,52 @@ public class PhyphoxExperiment {
 	public synchronized void clearBuffer(String buffer) {
 		clearBuffer(getBufferIndex(buffer));
 	}
+	/**
+	 * Delete all the data from a single buffer, identified by it's handle.
+	 */
+	public synchronized void clearBuffer(PhyphoxBufferHandle buffer) {
+		clearBuffer(getBufferIndex(buffer));
+	}
 	/**
 	 * Delete all the data from a single buffer, identified by it's index (except of the last value in the buffer to know what data is needed next
 	 * from the experiment).
 	 */
 	protected synchronized void clearBuffer(int buffer) {
+		clearBufferData(buffer);
+		publishSnapshot();
+	}
+	
+	/**
+	 * Replace a buffer by an empty buffer (without publishing a new snapshot).
+	 */
+	private void clearBufferData(int buffer) {
 		PhyphoxBuffer fullBuffer = data.get(buffer);
 		PhyphoxBuffer clearBuffer = new PhyphoxBuffer(fullBuffer.getName(), new double[0]);
+		//the indices since the start of the recording continue (e.g. for the read cursors)
+		clearBuffer.continueRemovedValues(fullBuffer);
+		PhyphoxSpillStorage spillStorage = spillStorages.get(fullBuffer.getName());
+		if (spillStorage != null) {
+			try {
+				//the old values can still be read from the old buffer (while it's file is mapped into memory)
+				fullBuffer.closeSpillStorage();
+				clearBuffer.setSpillStorage(spillStorage);
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException("The spill storage of the buffer '" + fullBuffer.getName() + "' couldn't be created.", e);
+			}
+		}
 		data.set(buffer, clearBuffer);
 		lastRead[buffer] = -1;//reset the last read index
+		for (PhyphoxBufferAggregate aggregate : aggregates) {
+			if (aggregate.getBufferIndex() == buffer) {
+				aggregate.reset();
+			}
+		}
+		applyMaxSize(buffer);
 	}
 	
 	private int getBufferIndex(String name) {
-		int index = -1;
-		for (int i = 0; i < data.size(); i++) {
-			if (data.get(i).getName().equals(name)) {
-				index = i;
-			}
-		}
+		int index = findBufferIndex(name);
 		if (index == -1) {
 			throw new IllegalStateException("A buffer with the name '" + name + "' doesn't exist.");
 		}
@@ -439,10 +1549,118 @@ public class PhyphoxExperiment {
 		}
 	}
 	
+	/**
+	 * Find the index of a buffer by it's name (or -1 if there is no such buffer).
+	 */
+	private int findBufferIndex(String name) {
+		Integer index = bufferIndices.get(name);
+		return index != null ? index : -1;
+	}
+	
+	/**
+	 * Get a handle of a buffer, that can be used to access the buffer without looking up it's name again.
+	 */
+	public synchronized PhyphoxBufferHandle getBufferHandle(String buffer) {
+		return new PhyphoxBufferHandle(this, buffer, getBufferIndex(buffer));
+	}
+	
+	private int getBufferIndex(PhyphoxBufferHandle handle) {
+		Objects.requireNonNull(handle, "A null object is no valid buffer handle.");
+		if (handle.getExperiment() != this) {
+			throw new IllegalArgumentException("The buffer handle belongs to another experiment.");
+		}
+		return handle.getIndex();
+	}
+	
 	public void addDataListener(PhyphoxDataListener listener) {
 		dataListeners.add(listener);
 	}
 	public void removeDataListener(PhyphoxDataListener listener) {
-		dataListeners.remove(listener);
+		//remove the listener and the asynchronous listeners that inform it (the asynchronous listeners are stopped, no matter which one was passed)
+		dataListeners.removeIf(dataListener -> {
+			boolean async = dataListener instanceof PhyphoxAsyncDataListener;
+			if (dataListener == listener || (async && ((PhyphoxAsyncDataListener) dataListener).getListener() == listener)) {
+				if (async) {
+					((PhyphoxAsyncDataListener) dataListener).close();
+				}
+				return true;
+			}
+			return false;
+		});
+	}
+	/**
+	 * Add a listener that is informed asynchronously by it's own thread, so a slow listener doesn't slow down the data updates (or the other
+	 * listeners). The new data is added to a bounded queue of the listener.
+	 * 
+	 * @param listener
+	 *        The listener that is informed about the new data
+	 * 
+	 * @param queueCapacity
+	 *        The maximum number of batches that wait to be dispatched to the listener
+	 * 
+	 * @param overflowPolicy
+	 *        Defines what happens to new data when the queue is full
+	 * 
+	 * @return The asynchronous listener (e.g. to get the queue size); the listener is removed using removeDataListener(listener)
+	 */
+	public PhyphoxAsyncDataListener addAsyncDataListener(PhyphoxDataListener listener, int queueCapacity, PhyphoxOverflowPolicy overflowPolicy) {
+		PhyphoxAsyncDataListener asyncListener = new PhyphoxAsyncDataListener(listener, queueCapacity, overflowPolicy);
+		dataListeners.add(asyncListener);
+		return asyncListener;
+	}
+	
+	/**
+	 * Create a publisher of the new data, that informs it's subscribers by the tasks of the common fork join pool (see
+	 * createDataPublisher(int, PhyphoxOverflowPolicy, Executor)).
+	 */
+	public PhyphoxDataPublisher createDataPublisher(int bufferCapacity, PhyphoxOverflowPolicy overflowPolicy) {
+		return createDataPublisher(bufferCapacity, overflowPolicy, ForkJoinPool.commonPool());
+	}
+	/**
+	 * Create a publisher of the new data, that delivers the batches of new data to every subscriber when the subscriber requests them. The publisher
+	 * is informed like a data listener until it's closed.
+	 * 
+	 * @param bufferCapacity
+	 *        The maximum number of batches that wait to be requested by a subscriber
+	 * 
+	 * @param overflowPolicy
+	 *        Defines what happens to new data when the queue of a subscriber is full
+	 * 
+	 * @param executor
+	 *        The executor that runs the tasks that inform the subscribers
+	 */
+	public PhyphoxDataPublisher createDataPublisher(int bufferCapacity, PhyphoxOverflowPolicy overflowPolicy, Executor executor) {
+		PhyphoxDataPublisher publisher = new PhyphoxDataPublisher(this, bufferCapacity, overflowPolicy, executor);
+		dataListeners.add(publisher);
+		return publisher;
+	}
+	
+	/**
+	 * Add a listener that gets the new data as a reused batch that references the arrays of the buffers, so informing the listener doesn't create new
+	 * objects (see PhyphoxDataBatch). The listener gets the data that is added after the listener was added.
+	 */
+	public synchronized void addBatchListener(PhyphoxBatchListener listener) {
+		Objects.requireNonNull(listener, "A null object is no valid listener.");
+		if (batchListeners.isEmpty()) {
+			//the data that was added before is not passed to the listeners
+			batchCursor = createReadCursor();
+			for (int i = 0; i < data.size(); i++) {
+				batchCursor.moveToEnd(i, data.get(i));
+			}
+		}
+		batchListeners.add(listener);
+	}
+	public synchronized void removeBatchListener(PhyphoxBatchListener listener) {
+		batchListeners.remove(listener);
+	}
+	
+	/**
+	 * Add a listener that gets read-only views of the new data (instead of copies).
+	 */
+	public void addDataViewListener(PhyphoxDataViewListener listener) {
+		dataViewListeners.add(listener);
+	}
+	public void removeDataViewListener(PhyphoxDataViewListener listener) {
+		dataViewListeners.remove(listener);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,307 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls the data of many experiments (e.g. all phones in a classroom) using a small shared thread pool, instead of an update thread per
+ * experiment.<br>
+ * 
+ * Every registered experiment is polled with it's own update rate (and it's own update mode or adaptive update rate). When an experiment is due it's
+ * added to a queue of waiting experiments (at most once), that is processed in order (so every experiment gets it's turn). The number of requests
+ * that are sent at the same time is limited by the maximum number of concurrent requests.<br>
+ * 
+ * The experiments are controlled as usual: startExperiment() or restartDataConnection() starts polling the data, stopExperiment() or
+ * stopDataConnection() stops it. If a request fails the experiment is no longer polled (like the update thread of the experiment would terminate).
+ */
+public class PhyphoxExperimentFleet {
+	
+	public static final int DEFAULT_THREADS = 4;
+	
+	private ScheduledExecutorService scheduler;//schedules and executes the polls of all experiments
+	private int maxConcurrentRequests;//the maximum number of requests that are sent at the same time
+	private AtomicInteger runningRequests;//the number of requests that are currently sent
+	private Map<PhyphoxExperiment, PolledExperiment> experiments;//all registered experiments
+	private Queue<PolledExperiment> waitingExperiments;//the experiments that are due to be polled (in order)
+	
+	/**
+	 * Create a fleet that uses the default number of threads (and the same number of concurrent requests).
+	 */
+	public PhyphoxExperimentFleet() {
+		this(DEFAULT_THREADS, DEFAULT_THREADS);
+	}
+	/**
+	 * @param threads
+	 *        The number of threads that are used to poll all experiments
+	 * 
+	 * @param maxConcurrentRequests
+	 *        The maximum number of requests that are sent at the same time (usually not more than the number of threads)
+	 */
+	public PhyphoxExperimentFleet(int threads, int maxConcurrentRequests) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("The number of threads must be a value greater than zero.");
+		}
+		if (maxConcurrentRequests <= 0) {
+			throw new IllegalArgumentException("The maximum number of concurrent requests must be a value greater than zero.");
+		}
+		this.maxConcurrentRequests = maxConcurrentRequests;
+		AtomicInteger threadNumber = new AtomicInteger();
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, runnable -> {
+			Thread thread = new Thread(runnable, "phyphox_fleet_thread_" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);//set to daemon to be terminated automatically when the application terminates
+			return thread;
+		});
+		//don't keep the cancelled polls of stopped experiments in the queue
+		executor.setRemoveOnCancelPolicy(true);
+		scheduler = executor;
+		runningRequests = new AtomicInteger();
+		experiments = new ConcurrentHashMap<PhyphoxExperiment, PolledExperiment>();
+		waitingExperiments = new ConcurrentLinkedQueue<PolledExperiment>();
+	}
+	
+	/**
+	 * Register an experiment that is polled with it's own update rate.<br>
+	 * If the experiment's data connection is already running, the fleet continues polling the data (instead of the experiment's update thread).
+	 */
+	public void register(PhyphoxExperiment experiment) {
+		register(experiment, experiment.getUpdateRate());
+	}
+	/**
+	 * Register an experiment that is polled with the given update rate (in milliseconds).<br>
+	 * If the experiment's data connection is already running, the fleet continues polling the data (instead of the experiment's update thread). The
+	 * fleet waits for the update thread to end first, so the data is not updated by both. If the calling thread is interrupted while waiting for it,
+	 * the experiment is registered, but not polled until the data connection is restarted.
+	 */
+	public void register(PhyphoxExperiment experiment, int updateRate) {
+		Objects.requireNonNull(experiment, "A null object is no valid experiment.");
+		if (updateRate <= 0) {
+			throw new IllegalArgumentException("The update rate must be a value greater than zero.");
+		}
+		if (scheduler.isShutdown()) {
+			throw new IllegalStateException("The fleet was already shut down.");
+		}
+		if (experiments.putIfAbsent(experiment, new PolledExperiment(experiment, updateRate)) != null) {
+			throw new IllegalStateException("The experiment is already registered in this fleet.");
+		}
+		boolean running = experiment.isDataConnectionRunning();
+		PhyphoxExperimentFleet previousFleet = experiment.getFleet();
+		if (previousFleet != null) {
+			//an experiment can only be polled by one fleet
+			previousFleet.unregister(experiment);
+		}
+		//stop the experiment's own update thread
+		experiment.stopDataConnection();
+		experiment.setFleet(this);
+		if (running) {
+			try {
+				experiment.awaitDataConnectionStopped();
+			}
+			catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			resume(experiment);
+		}
+	}
+	
+	/**
+	 * Remove an experiment from the fleet. The experiment's data is no longer updated (until the data connection is restarted, using an own update
+	 * thread).
+	 */
+	public void unregister(PhyphoxExperiment experiment) {
+		pause(experiment);
+		if (experiments.remove(experiment) != null) {
+			experiment.setFleet(null);
+		}
+	}
+	
+	/**
+	 * Stop polling all experiments and terminate the threads of the fleet.
+	 */
+	public void shutdown() {
+		for (PhyphoxExperiment experiment : experiments.keySet()) {
+			unregister(experiment);
+		}
+		scheduler.shutdownNow();
+	}
+	
+	/**
+	 * The number of registered experiments.
+	 */
+	public int size() {
+		return experiments.size();
+	}
+	
+	/**
+	 * The number of requests that are currently sent.
+	 */
+	public int getRunningRequests() {
+		return runningRequests.get();
+	}
+	
+	/**
+	 * Start polling a registered experiment.
+	 */
+	void resume(PhyphoxExperiment experiment) {
+		PolledExperiment polled = experiments.get(experiment);
+		if (polled != null) {
+			polled.resume();
+		}
+	}
+	
+	/**
+	 * Stop polling a registered experiment (a request that is already sent is still completed).
+	 */
+	void pause(PhyphoxExperiment experiment) {
+		PolledExperiment polled = experiments.get(experiment);
+		if (polled != null) {
+			polled.pause();
+		}
+	}
+	
+	boolean isPolling(PhyphoxExperiment experiment) {
+		PolledExperiment polled = experiments.get(experiment);
+		return polled != null && polled.active;
+	}
+	
+	/**
+	 * Send the requests of the waiting experiments, as long as the maximum number of concurrent requests is not reached.
+	 */
+	private void dispatch() {
+		while (!waitingExperiments.isEmpty()) {
+			int running = runningRequests.get();
+			if (running >= maxConcurrentRequests) {
+				//the next finished request will continue dispatching
+				return;
+			}
+			if (runningRequests.compareAndSet(running, running + 1)) {
+				PolledExperiment next = waitingExperiments.poll();
+				if (next == null) {
+					//another thread took the last waiting experiment
+					runningRequests.decrementAndGet();
+				}
+				else {
+					try {
+						scheduler.execute(next::poll);
+					}
+					catch (RuntimeException e) {
+						//the fleet was shut down
+						next.waiting.set(false);
+						runningRequests.decrementAndGet();
+						return;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * An experiment that is polled by the fleet.
+	 */
+	private class PolledExperiment {
+		
+		private final PhyphoxExperiment experiment;
+		private final int updateRate;
+		private final AtomicBoolean waiting;//whether the experiment is waiting in the queue or polled at the moment
+		private volatile boolean active;//whether the experiment is polled
+		private ScheduledFuture<?> schedule;//adds the experiment to the queue when it's due
+		private PhyphoxUpdateTimer timer;//calculates the time between the polls
+		
+		public PolledExperiment(PhyphoxExperiment experiment, int updateRate) {
+			this.experiment = experiment;
+			this.updateRate = updateRate;
+			waiting = new AtomicBoolean();
+		}
+		
+		public synchronized void resume() {
+			if (!active) {
+				active = true;
+				timer = experiment.createUpdateTimer(updateRate);
+				timer.start(System.nanoTime());
+				scheduleNext(0);
+			}
+		}
+		
+		public synchronized void pause() {
+			active = false;
+			if (schedule != null) {
+				schedule.cancel(false);
+				schedule = null;
+			}
+		}
+		
+		/**
+		 * Schedule the next time the experiment is due (replacing the last schedule, so there is only one due time at a time).
+		 */
+		private synchronized void scheduleNext(long delayNanos) {
+			if (schedule != null) {
+				schedule.cancel(false);
+			}
+			try {
+				schedule = scheduler.schedule(this::due, delayNanos, TimeUnit.NANOSECONDS);
+			}
+			catch (RejectedExecutionException e) {
+				//the fleet was shut down
+				active = false;
+				schedule = null;
+			}
+		}
+		
+		/**
+		 * The experiment is due to be polled; add it to the queue if it's not already waiting or polled (so a slow phone doesn't pile up requests).
+		 */
+		private void due() {
+			if (active && waiting.compareAndSet(false, true)) {
+				waitingExperiments.add(this);
+				dispatch();
+			}
+		}
+		
+		private void poll() {
+			long updateStart = System.nanoTime();
+			int newSamples = -1;
+			try {
+				if (active) {
+					newSamples = experiment.pollData();
+				}
+			}
+			catch (Exception e) {
+				//stop polling the experiment (like the experiment's update thread would terminate) and report the problem
+				pause();
+				Thread thread = Thread.currentThread();
+				thread.getUncaughtExceptionHandler().uncaughtException(thread,
+						new RuntimeException("A problem occured while trying to read the data from the experiment.", e));
+			}
+			finally {
+				waiting.set(false);
+				runningRequests.decrementAndGet();
+				synchronized (this) {
+					if (active) {
+						if (newSamples != -1) {
+							//the next due time depends on the update mode (and the adaptive update rate)
+							long updateEnd = System.nanoTime();
+							timer.reportUpdate(updateStart, updateEnd, newSamples);
+							scheduleNext(timer.getDelayToNextUpdate(updateEnd));
+						}
+						else {
+							//the experiment was paused before the poll and resumed in the meantime (the due time of the resume was dropped, because
+							//the experiment was still waiting)
+							scheduleNext(0);
+						}
+					}
+				}
+				dispatch();
+			}
+		}
+	}
+}
\ No newline at end of file
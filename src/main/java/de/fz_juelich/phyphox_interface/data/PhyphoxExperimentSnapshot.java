@@ -0,0 +1,46 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable, consistent state of all buffers of an experiment (see PhyphoxExperiment.getSnapshot()).<br>
+ * 
+ * A snapshot is published after every update of the experiment's data, so all buffers of a snapshot contain the data of the same updates (e.g. a
+ * snapshot never contains time values of an update without the other values of this update). The snapshots can be read by any number of threads
+ * without locking the experiment.
+ */
+public class PhyphoxExperimentSnapshot {
+	
+	private final long version;
+	private final List<PhyphoxBufferSnapshot> buffers;
+	
+	PhyphoxExperimentSnapshot(long version, List<PhyphoxBufferSnapshot> buffers) {
+		this.version = version;
+		this.buffers = Collections.unmodifiableList(new ArrayList<PhyphoxBufferSnapshot>(buffers));
+	}
+	
+	/**
+	 * The number of the snapshot (that increases with every published snapshot), to find out whether the data has changed.
+	 */
+	public long getVersion() {
+		return version;
+	}
+	
+	public List<PhyphoxBufferSnapshot> getBuffers() {
+		return buffers;
+	}
+	
+	/**
+	 * Get the snapshot of a single buffer by it's name.
+	 */
+	public PhyphoxBufferSnapshot getBuffer(String buffer) {
+		for (PhyphoxBufferSnapshot snapshot : buffers) {
+			if (snapshot.getName().equals(buffer)) {
+				return snapshot;
+			}
+		}
+		throw new IllegalStateException("A buffer with the name '" + buffer + "' doesn't exist.");
+	}
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package de.fz_juelich.phyphox_interface.data;
+
+/**
+ * The interfaces of a reactive stream with demand signalling (see PhyphoxDataPublisher).<br>
+ * The interfaces have the same methods as the interfaces of java.util.concurrent.Flow (and the Reactive Streams specification), that can't be used
+ * because the library is compatible to Java 8. They can be adapted to these interfaces with one line per method.
+ */
+public final class PhyphoxFlow {
+	
+	private PhyphoxFlow() {
+		//only a container of the interfaces
+	}
+	
+	/**
+	 * A producer of items that are received by subscribers.
+	 */
+	public static interface Publisher<T> {
+		
+		/**
+		 * Add a subscriber, that is informed by a call of onSubscribe(Subscription) first.
+		 */
+		public void subscribe(Subscriber<? super T> subscriber);
+	}
+	
+	/**
+	 * A receiver of items. The methods of a subscriber are never called concurrently.
+	 */
+	public static interface Subscriber<T> {
+		
+		public void onSubscribe(Subscription subscription);
+		
+		public void onNext(T item);
+		
+		public void onError(Throwable throwable);
+		
+		public void onComplete();
+	}
+	
+	/**
+	 * The connection of a publisher and a subscriber, that is used by the subscriber to request items.
+	 */
+	public static interface Subscription {
+		
+		/**
+		 * Request n more items (the subscriber doesn't get more items than it requested).
+		 */
+		public void request(long n);
+		
+		/**
+		 * Stop receiving items.
+		 */
+		public void cancel();
+	}
+}
\ No newline at end of file
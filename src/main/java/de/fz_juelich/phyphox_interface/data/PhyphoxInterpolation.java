@@ -0,0 +1,16 @@
+package de.fz_juelich.phyphox_interface.data;
+
+/**
+ * Defines how the value of a buffer is calculated at a time between two samples (see PhyphoxAligner).
+ */
+public enum PhyphoxInterpolation {
+	
+	/**
+	 * Interpolate linearly between the samples before and after the time.
+	 */
+	LINEAR,
+	/**
+	 * Use the value of the last sample before the time (or at the time).
+	 */
+	ZERO_ORDER_HOLD;
+}
\ No newline at end of file
@@ -0,0 +1,45 @@
+package de.fz_juelich.phyphox_interface.data;
+
+/**
+ * Defines when the data of a PhyphoxDataLog is forced to the disk (using fsync).<br>
+ * The log is written by it's own thread, that writes all batches that are waiting at once and syncs them together (group commit), so the sync
+ * doesn't slow down the update of the data.
+ */
+public class PhyphoxLogSyncPolicy {
+	
+	/**
+	 * Sync after every group of written batches (the safest, but slowest policy).
+	 */
+	public static final PhyphoxLogSyncPolicy ALWAYS = new PhyphoxLogSyncPolicy(0);
+	/**
+	 * Never sync explicitly (the operating system decides when the data is written to the disk; the data survives a crash of the JVM, but not of
+	 * the operating system).
+	 */
+	public static final PhyphoxLogSyncPolicy NEVER = new PhyphoxLogSyncPolicy(Long.MAX_VALUE);
+	
+	private long syncInterval;
+	
+	private PhyphoxLogSyncPolicy(long syncInterval) {
+		this.syncInterval = syncInterval;
+	}
+	
+	/**
+	 * Sync at most once in the given interval (the data of the last interval can be lost, if the operating system crashes).
+	 * 
+	 * @param syncInterval
+	 *        The time between two syncs (in milliseconds)
+	 */
+	public static PhyphoxLogSyncPolicy everyMillis(long syncInterval) {
+		if (syncInterval <= 0) {
+			throw new IllegalArgumentException("The sync interval must be a value greater than zero.");
+		}
+		return new PhyphoxLogSyncPolicy(syncInterval);
+	}
+	
+	/**
+	 * The time between two syncs (in milliseconds; 0 to sync after every write and Long.MAX_VALUE to never sync).
+	 */
+	public long getSyncInterval() {
+		return syncInterval;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,112 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Deletes the files of closed storages (see PhyphoxMappedStorage), that can't be deleted while they are still mapped into memory (e.g. on
+ * Windows).<br>
+ * The mappings of a file are tracked using phantom references, so the file is deleted after all of it's mappings were garbage collected (and
+ * released). Files that are still mapped when the application terminates are deleted by a shutdown hook (if possible).
+ */
+final class PhyphoxMappedFileCleaner {
+	
+	private static final long RETRY_MILLIS = 1000;
+	
+	private static final ReferenceQueue<MappedByteBuffer> queue = new ReferenceQueue<MappedByteBuffer>();
+	private static final Set<MappingReference> references = new HashSet<MappingReference>();//keeps the references reachable until they are enqueued
+	private static final List<PendingFile> pendingFiles = new ArrayList<PendingFile>();
+	private static Thread cleanupThread;
+	
+	private PhyphoxMappedFileCleaner() {}
+	
+	/**
+	 * Delete the file after the mappings were released (the mappings must not be used anymore after the storage was closed).
+	 */
+	static synchronized void deleteWhenUnmapped(Path file, List<MappedByteBuffer> mappings) {
+		PendingFile pendingFile = new PendingFile(file);
+		for (MappedByteBuffer mapping : mappings) {
+			references.add(new MappingReference(mapping, pendingFile, queue));
+			pendingFile.mappings++;
+		}
+		pendingFiles.add(pendingFile);
+		if (cleanupThread == null) {
+			cleanupThread = new Thread(PhyphoxMappedFileCleaner::deletePendingFiles, "phyphox_storage_cleanup_thread");
+			cleanupThread.setDaemon(true);//set to daemon to be terminated automatically when the application terminates
+			cleanupThread.start();
+			Runtime.getRuntime().addShutdownHook(new Thread(PhyphoxMappedFileCleaner::deleteFiles, "phyphox_storage_shutdown_thread"));
+		}
+	}
+	
+	private static void deletePendingFiles() {
+		while (true) {
+			try {
+				Reference<? extends MappedByteBuffer> reference = queue.remove(RETRY_MILLIS);
+				synchronized (PhyphoxMappedFileCleaner.class) {
+					while (reference != null) {
+						references.remove(reference);
+						((MappingReference) reference).file.mappings--;
+						reference = queue.poll();
+					}
+					//a file may still be locked for a short time after the last mapping was collected, so the deletion is retried
+					for (Iterator<PendingFile> iterator = pendingFiles.iterator(); iterator.hasNext();) {
+						PendingFile pendingFile = iterator.next();
+						if (pendingFile.mappings == 0 && delete(pendingFile.file)) {
+							iterator.remove();
+						}
+					}
+				}
+			}
+			catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+	
+	private static synchronized void deleteFiles() {
+		for (PendingFile pendingFile : pendingFiles) {
+			delete(pendingFile.file);
+		}
+		pendingFiles.clear();
+	}
+	
+	private static boolean delete(Path file) {
+		try {
+			Files.deleteIfExists(file);
+			return true;
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+	
+	private static class PendingFile {
+		
+		private final Path file;
+		private int mappings;//the number of mappings that were not released yet
+		
+		public PendingFile(Path file) {
+			this.file = file;
+		}
+	}
+	
+	private static class MappingReference extends PhantomReference<MappedByteBuffer> {
+		
+		private final PendingFile file;
+		
+		public MappingReference(MappedByteBuffer mapping, PendingFile file, ReferenceQueue<MappedByteBuffer> queue) {
+			super(mapping, queue);
+			this.file = file;
+		}
+	}
+}
\ No newline at end of file
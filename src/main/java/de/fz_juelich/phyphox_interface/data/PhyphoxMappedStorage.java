@@ -0,0 +1,223 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores double values off the heap, in a file that is mapped into memory (using NIO's MappedByteBuffer).<br>
+ * The file is mapped in segments of a fixed size, that are added when the values don't fit into the mapped segments anymore. The operating system
+ * decides which parts of the file are kept in memory, so the values don't use heap space and don't need to be handled by the garbage collector.
+ * Segments that only contain removed values are reused for new values, so the file doesn't grow if the oldest values are removed continuously.<br>
+ * 
+ * An existing file (e.g. a column of a recording) can also be opened read-only, so it's values can be read without parsing or copying them.
+ */
+class PhyphoxMappedStorage implements Closeable {
+	
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 20;//the number of values in a segment (8 MB)
+	
+	private Path file;
+	private FileChannel channel;//the channel of the file (or null if this is a view of another storage)
+	private List<DoubleBuffer> segments;//the mapped segments of the file, that contain values
+	private List<DoubleBuffer> spareSegments = new ArrayList<DoubleBuffer>();//mapped segments that only contained removed values (to be reused)
+	private List<MappedByteBuffer> mappings = new ArrayList<MappedByteBuffer>();//all regions of the file that were mapped by this storage
+	private int segmentSize;//the number of values per segment
+	private long firstSegment;//the number of the segment (counted from the first value that was added) that is the first in the segments list
+	private long start;//the index of the first value (values before were removed)
+	private long end;//the index after the last value
+	private boolean temporary;//whether the file was created by this storage (and is deleted when it's closed)
+	private boolean readOnly;
+	
+	/**
+	 * Create a storage that uses a new (temporary) file in the given directory.
+	 */
+	public PhyphoxMappedStorage(Path directory, String name) throws IOException {
+		this(directory, name, DEFAULT_SEGMENT_SIZE);
+	}
+	public PhyphoxMappedStorage(Path directory, String name, int segmentSize) throws IOException {
+		if (segmentSize <= 0) {
+			throw new IllegalArgumentException("The segment size must be a value greater than zero.");
+		}
+		this.segmentSize = segmentSize;
+		file = Files.createTempFile(directory, "phyphox_" + name.replaceAll("[^a-zA-Z0-9_\\-]", "_") + "_", ".buffer");
+		channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		segments = new ArrayList<DoubleBuffer>();
+		temporary = true;
+	}
+	/**
+	 * Open an existing file read-only (the whole file is mapped into memory, but nothing is read until the values are used).
+	 * 
+	 * @param order
+	 *        The byte order of the values in the file
+	 */
+	public PhyphoxMappedStorage(Path file, ByteOrder order) throws IOException {
+		this.file = file;
+		this.segmentSize = DEFAULT_SEGMENT_SIZE;
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		segments = new ArrayList<DoubleBuffer>();
+		readOnly = true;
+		end = channel.size() / Double.BYTES;
+		long bytes = (long) segmentSize * Double.BYTES;
+		for (long position = 0; position < end * Double.BYTES; position += bytes) {
+			long length = Math.min(bytes, end * Double.BYTES - position);
+			MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			mappings.add(mapping);
+			segments.add(mapping.order(order).asDoubleBuffer());
+		}
+	}
+	private PhyphoxMappedStorage(PhyphoxMappedStorage storage, long start, long end) {
+		this.file = storage.file;
+		this.segments = new ArrayList<DoubleBuffer>(storage.segments);
+		this.segmentSize = storage.segmentSize;
+		this.firstSegment = storage.firstSegment;
+		this.start = start;
+		this.end = end;
+		readOnly = true;
+	}
+	
+	/**
+	 * Get a read-only view of a range of the values (that shares the mapped memory with this storage).<br>
+	 * The view is only valid while it's values are not removed from this storage (the memory of removed values is reused for new values).
+	 * 
+	 * @param fromIndex
+	 *        The index of the first value of the view
+	 * 
+	 * @param toIndex
+	 *        The index after the last value of the view
+	 */
+	public PhyphoxMappedStorage view(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+			throw new IndexOutOfBoundsException("Range: [" + fromIndex + ", " + toIndex + "), Size: " + size());
+		}
+		return new PhyphoxMappedStorage(this, start + fromIndex, start + toIndex);
+	}
+	
+	/**
+	 * The number of values in the storage.
+	 */
+	public int size() {
+		return (int) (end - start);
+	}
+	
+	public double get(int index) {
+		long position = start + index;
+		return segments.get((int) (position / segmentSize - firstSegment)).get((int) (position % segmentSize));
+	}
+	
+	/**
+	 * Add values to the end of the storage (mapping new segments of the file if needed).
+	 */
+	public void append(double[] values, int offset, int length) {
+		if (readOnly) {
+			throw new IllegalStateException("The storage is read-only.");
+		}
+		while (length > 0) {
+			int segment = (int) (end / segmentSize - firstSegment);
+			int position = (int) (end % segmentSize);
+			if (segment == segments.size()) {
+				mapSegment();
+			}
+			int part = Math.min(length, segmentSize - position);
+			DoubleBuffer buffer = segments.get(segment).duplicate();
+			buffer.position(position);
+			buffer.put(values, offset, part);
+			offset += part;
+			length -= part;
+			end += part;
+		}
+	}
+	
+	/**
+	 * Copy values of the storage into an array.
+	 */
+	public void copyValues(int index, double[] dest, int destIndex, int length) {
+		long position = start + index;
+		while (length > 0) {
+			int segmentPosition = (int) (position % segmentSize);
+			int part = Math.min(length, segmentSize - segmentPosition);
+			DoubleBuffer buffer = segments.get((int) (position / segmentSize - firstSegment)).duplicate();
+			buffer.position(segmentPosition);
+			buffer.get(dest, destIndex, part);
+			destIndex += part;
+			length -= part;
+			position += part;
+		}
+	}
+	
+	/**
+	 * Remove the oldest values. The segments that only contain removed values are reused for new values.
+	 */
+	public void removeOldest(int count) {
+		start += Math.min(count, size());
+		if (readOnly) {
+			return;
+		}
+		if (start == end) {
+			//all values were removed, so all segments can be reused (starting with the first one)
+			spareSegments.addAll(segments);
+			segments.clear();
+			firstSegment = 0;
+			start = 0;
+			end = 0;
+		}
+		while (!segments.isEmpty() && start >= (firstSegment + 1) * segmentSize) {
+			spareSegments.add(segments.remove(0));
+			firstSegment++;
+		}
+	}
+	
+	private void mapSegment() {
+		if (channel == null || !channel.isOpen()) {
+			throw new IllegalStateException("The storage was already closed.");
+		}
+		if (!spareSegments.isEmpty()) {
+			segments.add(spareSegments.remove(spareSegments.size() - 1));
+			return;
+		}
+		long bytes = (long) segmentSize * Double.BYTES;
+		try {
+			//mapping a region behind the end of the file increases the file's size
+			MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, mappings.size() * bytes, bytes);
+			mappings.add(mapping);
+			segments.add(mapping.order(ByteOrder.nativeOrder()).asDoubleBuffer());
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("The file '" + file + "' couldn't be mapped into memory.", e);
+		}
+	}
+	
+	/**
+	 * Close the file (and delete it if it was created by this storage). The mapped values can still be read (the mapping stays valid until it's
+	 * garbage collected), but no more values can be added.<br>
+	 * If the file can't be deleted while it's mapped into memory (e.g. on Windows), it's deleted after the mappings were released (see
+	 * PhyphoxMappedFileCleaner).
+	 */
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+		spareSegments.clear();
+		if (temporary) {
+			try {
+				Files.deleteIfExists(file);
+			}
+			catch (IOException e) {
+				PhyphoxMappedFileCleaner.deleteWhenUnmapped(file, mappings);
+			}
+		}
+	}
+	
+	public Path getFile() {
+		return file;
+	}
+}
\ No newline at end of file
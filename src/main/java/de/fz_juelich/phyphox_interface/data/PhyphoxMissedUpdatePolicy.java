@@ -0,0 +1,16 @@
+package de.fz_juelich.phyphox_interface.data;
+
+/**
+ * Defines what happens to the updates that were missed in the FIXED_RATE update mode, because the last update took longer than the update rate.
+ */
+public enum PhyphoxMissedUpdatePolicy {
+	
+	/**
+	 * Skip the missed updates and wait for the next regular update time.
+	 */
+	SKIP,
+	/**
+	 * Coalesce all missed updates into one update that is started immediately (the regular update times are kept afterwards).
+	 */
+	COALESCE;
+}
@@ -0,0 +1,22 @@
+package de.fz_juelich.phyphox_interface.data;
+
+/**
+ * Defines what happens to new data, when the queue of an asynchronous listener (see PhyphoxAsyncDataListener) is full, because the listener is
+ * slower than the data updates.
+ */
+public enum PhyphoxOverflowPolicy {
+	
+	/**
+	 * Wait until the listener has taken a batch from the queue (this slows down the data updates to the speed of the listener). The experiment
+	 * informs it's data listeners after it's lock was released, so the waiting thread doesn't block the listener if it uses the experiment.
+	 */
+	BLOCK,
+	/**
+	 * Drop the oldest batch of the queue (the listener doesn't get the data of the dropped batch).
+	 */
+	DROP_OLDEST,
+	/**
+	 * Coalesce the new data with the newest batch of the queue (the listener gets all data, but in fewer and larger batches).
+	 */
+	COALESCE;
+}
\ No newline at end of file
@@ -0,0 +1,309 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * A streaming sketch of the distribution of values, that estimates quantiles (e.g. the median or the 95th percentile) using bounded memory (a KLL
+ * sketch).<br>
+ * 
+ * The values are kept in compactors (levels): a value in level h represents 2^h values. When a level is full, it's values are sorted and every
+ * second value (starting at a random offset) is moved to the next level, while the other values are dropped. The capacity of the levels decreases
+ * from the highest level (k values) to the lower levels (by a factor of 2/3), so the sketch keeps about 3k values (plus a few values per level) and
+ * the rank error of a quantile is about 1.7 / k.<br>
+ * 
+ * Sketches can be merged (e.g. the sketches of the experiments of a PhyphoxExperimentFleet), to get the quantiles of all values.
+ */
+public class PhyphoxQuantileSketch {
+	
+	public static final int DEFAULT_K = 200;
+	private static final double CAPACITY_FACTOR = 2.0 / 3;
+	private static final int MIN_CAPACITY = 2;
+	
+	private final int k;
+	private double[][] levels = new double[1][];
+	private int[] sizes = new int[1];
+	private long count;
+	private double min = Double.NaN;
+	private double max = Double.NaN;
+	private final Random random;//selects the values that are kept by a compaction
+	
+	//the values of all levels sorted by value, with the sum of the weights up to every value (or null if the values changed)
+	private double[] sortedValues;
+	private long[] cumulativeWeights;
+	
+	public PhyphoxQuantileSketch() {
+		this(DEFAULT_K);
+	}
+	/**
+	 * @param k
+	 *        Defines the accuracy and the size of the sketch (the rank error is about 1.7 / k and the sketch keeps about 3k values)
+	 */
+	public PhyphoxQuantileSketch(int k) {
+		this(k, new Random());
+	}
+	/**
+	 * Create a sketch with a seeded random generator, so the compactions can be reproduced (e.g. in tests).
+	 */
+	PhyphoxQuantileSketch(int k, long seed) {
+		this(k, new Random(seed));
+	}
+	private PhyphoxQuantileSketch(int k, Random random) {
+		checkK(k);
+		this.k = k;
+		this.random = random;
+		levels[0] = new double[k];
+	}
+	
+	static void checkK(int k) {
+		if (k < 8) {
+			throw new IllegalArgumentException("The parameter k must be at least 8.");
+		}
+	}
+	
+	public int getK() {
+		return k;
+	}
+	
+	/**
+	 * Add a value to the sketch (NaN values are ignored).
+	 */
+	public synchronized void add(double value) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+		append(0, value);
+		min = count == 0 ? value : Math.min(min, value);
+		max = count == 0 ? value : Math.max(max, value);
+		count++;
+		sortedValues = null;
+		compress();
+	}
+	
+	/**
+	 * Add the values of another sketch to this sketch (the other sketch is not changed).
+	 */
+	public void merge(PhyphoxQuantileSketch other) {
+		Objects.requireNonNull(other, "A null object is no valid sketch.");
+		//copy the other sketch first, so the locks of both sketches are never held at the same time
+		PhyphoxQuantileSketch otherCopy = other.copy();
+		synchronized (this) {
+			if (otherCopy.count == 0) {
+				return;
+			}
+			for (int level = 0; level < otherCopy.levels.length; level++) {
+				for (int i = 0; i < otherCopy.sizes[level]; i++) {
+					append(level, otherCopy.levels[level][i]);
+				}
+			}
+			min = count == 0 ? otherCopy.min : Math.min(min, otherCopy.min);
+			max = count == 0 ? otherCopy.max : Math.max(max, otherCopy.max);
+			count += otherCopy.count;
+			sortedValues = null;
+			compress();
+		}
+	}
+	
+	/**
+	 * Create a copy of the sketch (e.g. to merge the sketches of several experiments without changing them).
+	 */
+	public synchronized PhyphoxQuantileSketch copy() {
+		PhyphoxQuantileSketch copy = new PhyphoxQuantileSketch(k, random.nextLong());
+		copy.levels = new double[levels.length][];
+		for (int level = 0; level < levels.length; level++) {
+			copy.levels[level] = levels[level].clone();
+		}
+		copy.sizes = sizes.clone();
+		copy.count = count;
+		copy.min = min;
+		copy.max = max;
+		return copy;
+	}
+	
+	private void append(int level, double value) {
+		if (level >= levels.length) {
+			int oldLevels = levels.length;
+			levels = Arrays.copyOf(levels, level + 1);
+			sizes = Arrays.copyOf(sizes, level + 1);
+			for (int i = oldLevels; i <= level; i++) {
+				levels[i] = new double[MIN_CAPACITY];
+			}
+		}
+		if (sizes[level] == levels[level].length) {
+			levels[level] = Arrays.copyOf(levels[level], 2 * sizes[level]);
+		}
+		levels[level][sizes[level]] = value;
+		sizes[level]++;
+	}
+	
+	/**
+	 * The capacity of a level (the highest level has the capacity k).
+	 */
+	private int getCapacity(int level) {
+		int depth = levels.length - 1 - level;
+		return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_FACTOR, depth)));
+	}
+	
+	/**
+	 * Compact the lowest full levels, until the sketch doesn't keep more values than the capacity of all levels.
+	 */
+	private void compress() {
+		while (true) {
+			int retained = 0;
+			int capacity = 0;
+			for (int level = 0; level < levels.length; level++) {
+				retained += sizes[level];
+				capacity += getCapacity(level);
+			}
+			if (retained <= capacity) {
+				return;
+			}
+			for (int level = 0; level < levels.length; level++) {
+				if (sizes[level] >= getCapacity(level)) {
+					compact(level);
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Move every second value of a level (sorted by value) to the next level and drop the other values (one value stays in the level if the number
+	 * of values is odd).
+	 */
+	private void compact(int level) {
+		double[] values = levels[level];
+		int size = sizes[level];
+		Arrays.sort(values, 0, size);
+		int start = size % 2;//the first value stays in the level if the number of values is odd
+		int offset = random.nextBoolean() ? 1 : 0;
+		for (int i = start + offset; i < size; i += 2) {
+			append(level + 1, values[i]);
+		}
+		sizes[level] = start;
+	}
+	
+	/**
+	 * The number of values that were added to the sketch.
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+	
+	/**
+	 * The number of values that are kept by the sketch.
+	 */
+	public synchronized int getRetainedValues() {
+		int retained = 0;
+		for (int size : sizes) {
+			retained += size;
+		}
+		return retained;
+	}
+	
+	public synchronized double getMin() {
+		return min;
+	}
+	
+	public synchronized double getMax() {
+		return max;
+	}
+	
+	/**
+	 * Estimate the quantile of the values (e.g. 0.5 for the median or 0.95 for the 95th percentile).
+	 * 
+	 * @return The estimated value (or NaN if the sketch is empty)
+	 */
+	public synchronized double getQuantile(double quantile) {
+		if (!(quantile >= 0 && quantile <= 1)) {
+			throw new IllegalArgumentException("The quantile must be a value between 0 and 1.");
+		}
+		if (count == 0) {
+			return Double.NaN;
+		}
+		if (quantile == 0) {
+			return min;
+		}
+		if (quantile == 1) {
+			return max;
+		}
+		updateSortedValues();
+		long totalWeight = cumulativeWeights[cumulativeWeights.length - 1];
+		long rank = (long) Math.ceil(quantile * totalWeight);
+		//the first value with a cumulative weight that is not lower than the rank
+		int low = 0;
+		int high = cumulativeWeights.length - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (cumulativeWeights[mid] < rank) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return sortedValues[low];
+	}
+	
+	/**
+	 * Estimate the fraction of the values that are lower than or equal to the given value.
+	 * 
+	 * @return The estimated fraction (or NaN if the sketch is empty)
+	 */
+	public synchronized double getRank(double value) {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		updateSortedValues();
+		//the number of values that are not greater than the value
+		int low = 0;
+		int high = sortedValues.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sortedValues[mid] <= value) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low == 0 ? 0 : (double) cumulativeWeights[low - 1] / cumulativeWeights[cumulativeWeights.length - 1];
+	}
+	
+	/**
+	 * Sort the values of every level and merge the sorted levels (the order of the values in a level doesn't matter for the compactions).
+	 */
+	private void updateSortedValues() {
+		if (sortedValues != null) {
+			return;
+		}
+		for (int level = 0; level < levels.length; level++) {
+			Arrays.sort(levels[level], 0, sizes[level]);
+		}
+		int retained = getRetainedValues();
+		sortedValues = new double[retained];
+		cumulativeWeights = new long[retained];
+		int[] positions = new int[levels.length];//the next value of every level
+		long weight = 0;
+		for (int i = 0; i < retained; i++) {
+			//the level with the lowest next value (there are only a few levels)
+			int next = -1;
+			for (int level = 0; level < levels.length; level++) {
+				if (positions[level] < sizes[level] && (next == -1 || levels[level][positions[level]] < levels[next][positions[next]])) {
+					next = level;
+				}
+			}
+			sortedValues[i] = levels[next][positions[next]];
+			positions[next]++;
+			weight += 1L << next;//the weight of a value is 2^level
+			cumulativeWeights[i] = weight;
+		}
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "PhyphoxQuantileSketch [k=" + k + ", count=" + count + ", retainedValues=" + getRetainedValues() + ", min=" + min + ", max=" + max
+				+ "]";
+	}
+}
\ No newline at end of file
@@ -0,0 +1,153 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Estimated quantiles (e.g. the median or the 95th percentile) of the values of a buffer, that are updated by the experiment whenever new data is
+ * added to the buffer (see PhyphoxExperiment.createQuantiles), using quantile sketches with bounded memory (see PhyphoxQuantileSketch).<br>
+ * 
+ * The quantiles are estimated over a window that is defined like the data of a buffer that is kept:
+ * <ul>
+ * <li>PhyphoxRetentionPolicy.UNLIMITED: all values since the quantiles were created (or the buffer was cleared)</li>
+ * <li>A sample count: the last values</li>
+ * <li>A time window: the values that were recorded in the last seconds (using the continues buffer of the experiment as time)</li>
+ * </ul>
+ * Values can't be removed from a sketch, so a sliding window is split into PANES panes with an own sketch each. The sketch of the oldest pane is
+ * dropped when the pane left the window, so the values of up to one pane before the window are included. A query merges the sketches of the
+ * panes.
+ */
+public class PhyphoxQuantiles extends PhyphoxBufferAggregate {
+	
+	/**
+	 * The number of panes of a sliding window.
+	 */
+	public static final int PANES = 8;
+	
+	private final int k;
+	private final Random random;//seeds the sketches of the panes
+	private Deque<Pane> panes = new ArrayDeque<Pane>();
+	private long count;//the number of values in the panes
+	private PhyphoxQuantileSketch sketch;//the merged sketch of the panes (or null if the panes changed)
+	
+	PhyphoxQuantiles(String bufferName, int bufferIndex, PhyphoxRetentionPolicy window, int k) {
+		this(bufferName, bufferIndex, window, k, new Random());
+	}
+	/**
+	 * Create quantiles with seeded sketches, so the estimations can be reproduced (e.g. in tests).
+	 */
+	PhyphoxQuantiles(String bufferName, int bufferIndex, PhyphoxRetentionPolicy window, int k, long seed) {
+		this(bufferName, bufferIndex, window, k, new Random(seed));
+	}
+	private PhyphoxQuantiles(String bufferName, int bufferIndex, PhyphoxRetentionPolicy window, int k, Random random) {
+		super(bufferName, bufferIndex, window);
+		PhyphoxQuantileSketch.checkK(k);
+		this.k = k;
+		this.random = random;
+	}
+	
+	@Override
+	synchronized void add(double time, double value) {
+		if (Double.isNaN(value) || (getWindow().isTimeWindow() && Double.isNaN(time))) {
+			return;
+		}
+		Pane pane = panes.peekLast();
+		if (pane == null || isPaneFull(pane, time)) {
+			pane = new Pane(time, new PhyphoxQuantileSketch(k, random.nextLong()));
+			panes.addLast(pane);
+		}
+		pane.sketch.add(value);
+		count++;
+		sketch = null;
+		//remove the oldest pane when the other panes cover the window
+		while (panes.size() > 1 && isOutsideWindow(panes.peekFirst(), time)) {
+			count -= panes.removeFirst().sketch.getCount();
+		}
+	}
+	
+	private boolean isPaneFull(Pane pane, double time) {
+		if (getWindow().isTimeWindow()) {
+			return time >= pane.startTime + getWindow().getTimeWindow() / PANES;
+		}
+		else if (isSlidingWindow()) {
+			return pane.sketch.getCount() >= (getWindow().getMaxSamples() + PANES - 1) / PANES;
+		}
+		else {
+			return false;//a single sketch for all values
+		}
+	}
+	
+	private boolean isOutsideWindow(Pane oldestPane, double time) {
+		if (getWindow().isTimeWindow()) {
+			//the next pane starts before the window
+			Iterator<Pane> iterator = panes.iterator();
+			iterator.next();
+			Pane nextPane = iterator.next();
+			return nextPane.startTime <= time - getWindow().getTimeWindow();
+		}
+		else {
+			return count - oldestPane.sketch.getCount() >= getWindow().getMaxSamples();
+		}
+	}
+	
+	@Override
+	synchronized void reset() {
+		panes.clear();
+		count = 0;
+		sketch = null;
+	}
+	
+	/**
+	 * Get a sketch of the values in the window (e.g. to merge the sketches of the experiments of a fleet). The sketch is a copy, that can be changed.
+	 */
+	public PhyphoxQuantileSketch getSketch() {
+		return getMergedSketch().copy();
+	}
+	
+	private synchronized PhyphoxQuantileSketch getMergedSketch() {
+		if (sketch == null) {
+			sketch = new PhyphoxQuantileSketch(k, random.nextLong());
+			for (Pane pane : panes) {
+				sketch.merge(pane.sketch);
+			}
+		}
+		return sketch;
+	}
+	
+	/**
+	 * The number of values in the window.
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+	
+	/**
+	 * Estimate the quantile of the values in the window (e.g. 0.5 for the median or 0.95 for the 95th percentile).
+	 * 
+	 * @return The estimated value (or NaN if there are no values)
+	 */
+	public synchronized double getQuantile(double quantile) {
+		return getMergedSketch().getQuantile(quantile);
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "PhyphoxQuantiles [bufferName=" + getBufferName() + ", count=" + count + ", panes=" + panes.size() + "]";
+	}
+	
+	/**
+	 * The sketch of the values in a part of a sliding window.
+	 */
+	private static class Pane {
+		
+		private final double startTime;
+		private final PhyphoxQuantileSketch sketch;
+		
+		public Pane(double startTime, PhyphoxQuantileSketch sketch) {
+			this.startTime = startTime;
+			this.sketch = sketch;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.util.Arrays;
+
+/**
+ * A read position of a single consumer in the buffers of an experiment (see PhyphoxExperiment.createReadCursor()).<br>
+ * 
+ * Every consumer can use it's own cursor to get the new data (using PhyphoxExperiment.getNewData(PhyphoxReadCursor)), so the consumers don't change
+ * what the other consumers (or the listeners) get as new data. The positions are counted from the start of the recording (including the removed
+ * values), so a cursor stays valid when the oldest values of the buffers are removed. A cursor is not thread safe; it should only be used by one
+ * consumer.
+ */
+public class PhyphoxReadCursor {
+	
+	private final PhyphoxExperiment experiment;
+	private long[] positions;//the number of values of each buffer that were read, counted from the start of the recording
+	
+	PhyphoxReadCursor(PhyphoxExperiment experiment, int buffers) {
+		this.experiment = experiment;
+		this.positions = new long[buffers];
+	}
+	
+	/**
+	 * The experiment that created the cursor (the cursor can only be used to read the data of this experiment).
+	 */
+	public PhyphoxExperiment getExperiment() {
+		return experiment;
+	}
+	
+	/**
+	 * The index (in the buffer) of the first value that was not read using this cursor.
+	 */
+	int getUnreadIndex(int index, PhyphoxBuffer buffer) {
+		if (index >= positions.length) {
+			return 0;
+		}
+		//values that were removed before they were read are lost
+		return (int) Math.min(Math.max(positions[index] - buffer.getRemovedValues(), 0), buffer.size());
+	}
+	
+	/**
+	 * Mark all values of the buffer as read.
+	 */
+	void moveToEnd(int index, PhyphoxBuffer buffer) {
+		if (index >= positions.length) {
+			//a buffer was added to the experiment (e.g. the continues buffer)
+			positions = Arrays.copyOf(positions, index + 1);
+		}
+		positions[index] = buffer.getRemovedValues() + buffer.size();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,175 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Opens a recording that was written by a PhyphoxRecordingWriter.<br>
+ * The columns of the recording are mapped into memory, so opening a recording doesn't read (or parse) the values. The buffers that are returned
+ * read their values directly from the mapped files (until new values are added to them), so even very large recordings can be used without
+ * loading them into the heap.
+ */
+public class PhyphoxRecordingReader implements Closeable {
+	
+	private List<String> bufferNames;
+	private int timeBufferIndex;//the index of the time buffer (or -1 if the recording has no time buffer)
+	private PhyphoxMappedStorage[] columns;
+	private double[] blockTimes;//the first time of every block of the index
+	private long[][] blockStarts;//the start positions of all columns for every block of the index
+	
+	public PhyphoxRecordingReader(Path directory) throws IOException {
+		try (DataInputStream header = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(directory.resolve(PhyphoxRecordingWriter.HEADER_FILE))))) {
+			if (header.readInt() != PhyphoxRecordingWriter.MAGIC) {
+				throw new IOException("The directory '" + directory + "' doesn't contain a phyphox recording.");
+			}
+			int version = header.readInt();
+			if (version != PhyphoxRecordingWriter.VERSION) {
+				throw new IOException("The version " + version + " of the recording is not supported.");
+			}
+			header.readInt();//the block size
+			int bufferCount = header.readInt();
+			bufferNames = new ArrayList<String>(bufferCount);
+			for (int i = 0; i < bufferCount; i++) {
+				bufferNames.add(header.readUTF());
+			}
+			timeBufferIndex = header.readInt();
+		}
+		columns = new PhyphoxMappedStorage[bufferNames.size()];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = new PhyphoxMappedStorage(directory.resolve(i + PhyphoxRecordingWriter.COLUMN_FILE_SUFFIX),
+					PhyphoxRecordingWriter.COLUMN_BYTE_ORDER);
+		}
+		readIndex(directory.resolve(PhyphoxRecordingWriter.INDEX_FILE));
+	}
+	
+	private void readIndex(Path indexFile) throws IOException {
+		int entrySize = Double.BYTES + columns.length * Long.BYTES;
+		int entries = (int) (Files.size(indexFile) / entrySize);//an incomplete last entry (e.g. after a crash) is ignored
+		blockTimes = new double[entries];
+		blockStarts = new long[entries][columns.length];
+		try (DataInputStream index = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+			for (int i = 0; i < entries; i++) {
+				blockTimes[i] = index.readDouble();
+				for (int j = 0; j < columns.length; j++) {
+					blockStarts[i][j] = index.readLong();
+				}
+			}
+		}
+		catch (EOFException e) {
+			throw new IOException("The index of the recording is damaged.", e);
+		}
+	}
+	
+	public List<String> getBufferNames() {
+		return new ArrayList<String>(bufferNames);
+	}
+	
+	/**
+	 * The name of the buffer that is used as time (or null if the recording has no time buffer).
+	 */
+	public String getTimeBufferName() {
+		return timeBufferIndex != -1 ? bufferNames.get(timeBufferIndex) : null;
+	}
+	
+	/**
+	 * The number of values of a buffer in the recording.
+	 */
+	public int size(String buffer) {
+		return columns[getColumn(buffer)].size();
+	}
+	
+	/**
+	 * Get all values of a recorded buffer.<br>
+	 * The values are not copied; the buffer reads them from the mapped file.
+	 */
+	public PhyphoxBuffer getBuffer(String buffer) {
+		PhyphoxMappedStorage column = columns[getColumn(buffer)];
+		return new PhyphoxBuffer(buffer, column.view(0, column.size()));
+	}
+	/**
+	 * Get the values of a recorded buffer with the indices (of the recording) from fromIndex (inclusive) to toIndex (exclusive).<br>
+	 * The values are not copied; the buffer reads them from the mapped file.
+	 */
+	public PhyphoxBuffer getBuffer(String buffer, int fromIndex, int toIndex) {
+		PhyphoxMappedStorage column = columns[getColumn(buffer)];
+		return new PhyphoxBuffer(buffer, column.view(fromIndex, toIndex));
+	}
+	/**
+	 * Get the values of a recorded buffer that were recorded in a time range (from fromTime to toTime, both inclusive).<br>
+	 * The range is found using the block index and a binary search in the time buffer. The values are not copied; the buffer reads them from the
+	 * mapped file.
+	 */
+	public PhyphoxBuffer getBufferInTimeRange(String buffer, double fromTime, double toTime) {
+		if (timeBufferIndex == -1) {
+			throw new IllegalStateException("The recording has no time buffer.");
+		}
+		int fromIndex = findFirstIndex(fromTime, false);
+		int toIndex = Math.max(fromIndex, findFirstIndex(toTime, true));
+		PhyphoxMappedStorage column = columns[getColumn(buffer)];
+		return new PhyphoxBuffer(buffer, column.view(Math.min(fromIndex, column.size()), Math.min(toIndex, column.size())));
+	}
+	
+	/**
+	 * Find the index of the first time value that is not lower than the given time (or greater than the given time, if 'after' is true).
+	 */
+	private int findFirstIndex(double time, boolean after) {
+		PhyphoxMappedStorage timeColumn = columns[timeBufferIndex];
+		//narrow the search using the block index
+		int block = Arrays.binarySearch(blockTimes, time);
+		if (block < 0) {
+			block = -block - 2;//the last block that starts before the time
+		}
+		else {
+			//there can be several blocks with the same first time
+			while (block > 0 && blockTimes[block - 1] == time) {
+				block--;
+			}
+			block--;//the values of the previous block can be equal to the time too
+		}
+		int nextBlock = Math.max(block + 1, 0);
+		while (nextBlock < blockTimes.length && blockTimes[nextBlock] <= time) {
+			nextBlock++;
+		}
+		int low = block >= 0 ? (int) blockStarts[block][timeBufferIndex] : 0;
+		//the values of the next block are greater than the time
+		int high = nextBlock < blockTimes.length ? (int) blockStarts[nextBlock][timeBufferIndex] : timeColumn.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			double value = timeColumn.get(mid);
+			if (value < time || (after && value == time)) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+	
+	private int getColumn(String buffer) {
+		int column = bufferNames.indexOf(buffer);
+		if (column == -1) {
+			throw new IllegalStateException("A buffer with the name '" + buffer + "' doesn't exist in the recording.");
+		}
+		return column;
+	}
+	
+	/**
+	 * Close the files of the recording (the buffers that were already returned can still be read).
+	 */
+	@Override
+	public void close() throws IOException {
+		for (PhyphoxMappedStorage column : columns) {
+			column.close();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,300 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes the data of an experiment to a recording on the disk, while the data is received (see PhyphoxRecordingReader to read the recording).<br>
+ * 
+ * A recording is a directory with these files:
+ * <ul>
+ * <li>header: the magic number, the version, the block size, the names of the buffers and the index of the time buffer (or -1)</li>
+ * <li>0.column, 1.column, ...: one column per buffer, that contains the raw values (little endian doubles) without any separators</li>
+ * <li>index: a block index by time; an entry (the first time of the block and the start positions of all columns) is added every 'block size'
+ * values of the time buffer</li>
+ * </ul>
+ * The columns can be mapped into memory directly, so a recording can be opened without parsing the values.<br>
+ * 
+ * The data of an experiment is added to a bounded queue (see append) and written by an own thread, so writing the recording doesn't block the
+ * update of the data. If the queue is full (because the disk is slower than the data updates), the recording is stopped, because dropping a batch
+ * would leave a gap in the recording. A problem while writing stops the recording too and is thrown when the recording is closed.<br>
+ * Buffers that are not part of the recording (e.g. buffers that were added to the experiment after the recording was started) are ignored.
+ */
+public class PhyphoxRecordingWriter implements Closeable {
+	
+	public static final int MAGIC = 0x50485852;//"PHXR"
+	public static final int VERSION = 1;
+	public static final int DEFAULT_BLOCK_SIZE = 4096;
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+	
+	static final String HEADER_FILE = "header";
+	static final String INDEX_FILE = "index";
+	static final String COLUMN_FILE_SUFFIX = ".column";
+	static final ByteOrder COLUMN_BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+	
+	private static final int WRITE_BUFFER_SIZE = 8192;
+	private static final List<PhyphoxBuffer> END_OF_RECORDING = new ArrayList<PhyphoxBuffer>();//marks the end of the queue (compared by identity)
+	
+	private List<String> bufferNames;
+	private int timeBufferIndex;//the index of the time buffer (or -1 if there is no time buffer)
+	private int blockSize;//the number of time values per block of the index
+	private FileChannel[] columns;
+	private long[] columnSizes;//the number of values in the columns
+	private long nextBlockStart;//the number of time values at which the next block of the index starts
+	private DataOutputStream index;
+	private ByteBuffer writeBuffer;
+	private BlockingQueue<List<PhyphoxBuffer>> queue;//the data that is waiting to be written
+	private int queueCapacity;
+	private Thread writerThread;
+	private volatile Exception failure;//the problem that stopped the writer thread (or null)
+	private volatile boolean closed;
+	
+	public PhyphoxRecordingWriter(Path directory, List<String> bufferNames, String timeBufferName) throws IOException {
+		this(directory, bufferNames, timeBufferName, DEFAULT_BLOCK_SIZE);
+	}
+	public PhyphoxRecordingWriter(Path directory, List<String> bufferNames, String timeBufferName, int blockSize) throws IOException {
+		this(directory, bufferNames, timeBufferName, blockSize, DEFAULT_QUEUE_CAPACITY);
+	}
+	/**
+	 * Create a new recording.
+	 * 
+	 * @param directory
+	 *        The directory of the recording (that is created if it doesn't exist, but must not contain a recording)
+	 * 
+	 * @param bufferNames
+	 *        The names of the buffers that are recorded
+	 * 
+	 * @param timeBufferName
+	 *        The name of the buffer that is used for the block index (one of the buffer names; or null if the recording has no time buffer)
+	 * 
+	 * @param blockSize
+	 *        The number of values of the time buffer per entry of the block index
+	 * 
+	 * @param queueCapacity
+	 *        The maximum number of batches that wait to be written (the recording is stopped if more batches are appended)
+	 */
+	public PhyphoxRecordingWriter(Path directory, List<String> bufferNames, String timeBufferName, int blockSize, int queueCapacity)
+			throws IOException {
+		Objects.requireNonNull(directory, "A null object is no valid directory.");
+		if (bufferNames == null || bufferNames.isEmpty()) {
+			throw new IllegalArgumentException("Buffer names are empty. The names of the buffers are needed to create a recording.");
+		}
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("The block size must be a value greater than zero.");
+		}
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException("The queue capacity must be a value greater than zero.");
+		}
+		this.bufferNames = new ArrayList<String>(bufferNames);
+		this.timeBufferIndex = timeBufferName != null ? this.bufferNames.indexOf(timeBufferName) : -1;
+		if (timeBufferName != null && timeBufferIndex == -1) {
+			throw new IllegalArgumentException("The time buffer '" + timeBufferName + "' is not one of the recorded buffers.");
+		}
+		this.blockSize = blockSize;
+		
+		Files.createDirectories(directory);
+		try (DataOutputStream header = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(directory.resolve(HEADER_FILE), StandardOpenOption.CREATE_NEW)))) {
+			header.writeInt(MAGIC);
+			header.writeInt(VERSION);
+			header.writeInt(blockSize);
+			header.writeInt(this.bufferNames.size());
+			for (String name : this.bufferNames) {
+				header.writeUTF(name);
+			}
+			header.writeInt(timeBufferIndex);
+		}
+		columns = new FileChannel[this.bufferNames.size()];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = FileChannel.open(directory.resolve(i + COLUMN_FILE_SUFFIX), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		}
+		columnSizes = new long[columns.length];
+		index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE_NEW)));
+		writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(COLUMN_BYTE_ORDER);
+		this.queueCapacity = queueCapacity;
+		//one more place for the end of the recording, that is added by close()
+		queue = new ArrayBlockingQueue<List<PhyphoxBuffer>>(queueCapacity + 1);
+		writerThread = new Thread(this::writeQueuedData, "phyphox_recording_thread");
+		writerThread.setDaemon(true);//set to daemon to be terminated automatically when the application terminates
+		writerThread.start();
+	}
+	
+	/**
+	 * Add new data (as received from the experiment) to the queue of the writer thread (without waiting for the data to be written).<br>
+	 * If the queue is full, the recording is stopped: the queued data is still written, but this and all following data is dropped. If the writer
+	 * thread was stopped by a problem, the data is dropped too (the problem is thrown by close()).
+	 */
+	public void append(List<PhyphoxBuffer> newData) {
+		if (closed) {
+			throw new IllegalStateException("The recording was already closed.");
+		}
+		if (failure == null && queue.size() >= queueCapacity) {
+			IllegalStateException overflow = new IllegalStateException("The recording was stopped, because the data couldn't be written as fast as "
+					+ "it was received (" + queueCapacity + " batches were queued).");
+			failure = overflow;
+			writerThread.getUncaughtExceptionHandler().uncaughtException(writerThread, overflow);
+		}
+		if (failure == null) {
+			//copy the list, because the caller can change it after the data was added
+			queue.add(new ArrayList<PhyphoxBuffer>(newData));
+		}
+	}
+	
+	/**
+	 * The loop of the writer thread: write the queued data until the recording is closed.
+	 */
+	private void writeQueuedData() {
+		List<List<PhyphoxBuffer>> waiting = new ArrayList<List<PhyphoxBuffer>>();
+		try {
+			while (true) {
+				waiting.add(queue.take());
+				queue.drainTo(waiting);
+				for (List<PhyphoxBuffer> newData : waiting) {
+					if (newData == END_OF_RECORDING) {
+						return;
+					}
+					write(newData);
+				}
+				waiting.clear();
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			failure = e;
+			queue.clear();
+			Thread thread = Thread.currentThread();
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, new RuntimeException("The recording couldn't be written.", e));
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Append new data (as received from the experiment) to the columns of the recording (in the calling thread). Buffers that are not part of the
+	 * recording are ignored.
+	 */
+	public synchronized void write(List<PhyphoxBuffer> newData) throws IOException {
+		if (timeBufferIndex != -1 && columnSizes[timeBufferIndex] >= nextBlockStart) {
+			PhyphoxBuffer time = PhyphoxBuffer.getByName(newData, bufferNames.get(timeBufferIndex)).orElse(null);
+			if (time != null && time.size() > 0) {
+				//start a new block of the index
+				index.writeDouble(time.get(0));
+				for (long columnSize : columnSizes) {
+					index.writeLong(columnSize);
+				}
+				nextBlockStart = columnSizes[timeBufferIndex] + blockSize;
+			}
+		}
+		for (PhyphoxBuffer buffer : newData) {
+			int column = bufferNames.indexOf(buffer.getName());
+			//buffers that are not part of the recording are ignored (the columns of a recording can't be changed)
+			if (column != -1) {
+				writeColumn(column, buffer);
+			}
+		}
+	}
+	
+	private void writeColumn(int column, PhyphoxBuffer buffer) throws IOException {
+		for (int i = 0; i < buffer.size(); i++) {
+			if (!writeBuffer.hasRemaining()) {
+				flushWriteBuffer(columns[column]);
+			}
+			writeBuffer.putDouble(buffer.get(i));
+		}
+		flushWriteBuffer(columns[column]);
+		columnSizes[column] += buffer.size();
+	}
+	
+	private void flushWriteBuffer(FileChannel channel) throws IOException {
+		writeBuffer.flip();
+		while (writeBuffer.hasRemaining()) {
+			channel.write(writeBuffer);
+		}
+		writeBuffer.clear();
+	}
+	
+	/**
+	 * Write the index to the disk (the columns are written directly).
+	 */
+	public synchronized void flush() throws IOException {
+		index.flush();
+	}
+	
+	/**
+	 * Write the queued data and close the files of the recording. A problem that stopped the writer thread is thrown here.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		queue.add(END_OF_RECORDING);
+		//the files are only closed after the writer thread ended (also if this thread is interrupted), because it could still be writing
+		boolean interrupted = false;
+		while (writerThread.isAlive()) {
+			try {
+				//the writer thread needs the lock of this object to write the data
+				writerThread.join();
+			}
+			catch (InterruptedException ie) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		closeFiles();
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		}
+		else if (failure != null) {
+			throw new IOException("The recording couldn't be written.", failure);
+		}
+	}
+	
+	private synchronized void closeFiles() throws IOException {
+		try {
+			index.close();
+		}
+		finally {
+			for (FileChannel column : columns) {
+				column.close();
+			}
+		}
+	}
+	
+	/**
+	 * The number of batches that wait to be written.
+	 */
+	public int getQueueSize() {
+		int size = 0;
+		for (List<PhyphoxBuffer> newData : queue) {
+			if (newData != END_OF_RECORDING) {
+				size++;
+			}
+		}
+		return size;
+	}
+	
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+	
+	public List<String> getBufferNames() {
+		return new ArrayList<String>(bufferNames);
+	}
+}
\ No newline at end of file
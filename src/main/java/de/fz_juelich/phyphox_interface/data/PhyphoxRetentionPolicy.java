@@ -0,0 +1,64 @@
+package de.fz_juelich.phyphox_interface.data;
+
+/**
+ * Defines which data of a buffer is kept, when an experiment runs for a long time (e.g. an unattended station that records for days).<br>
+ * The oldest values are removed from the buffer, so the memory that is used stays (about) constant:
+ * <ul>
+ * <li>A sample count keeps the last values of the buffer (using the buffer as ring buffer with a fixed size)</li>
+ * <li>A time window keeps the values that were recorded in the last seconds (using the continues buffer of the experiment as time)</li>
+ * </ul>
+ * Values that are removed before they were read (using getNewData()) are lost.
+ */
+public class PhyphoxRetentionPolicy {
+	
+	/**
+	 * Keep all values (the default).
+	 */
+	public static final PhyphoxRetentionPolicy UNLIMITED = new PhyphoxRetentionPolicy(PhyphoxBuffer.UNLIMITED_SIZE, Double.POSITIVE_INFINITY);
+	
+	private int maxSamples;
+	private double timeWindow;
+	
+	private PhyphoxRetentionPolicy(int maxSamples, double timeWindow) {
+		this.maxSamples = maxSamples;
+		this.timeWindow = timeWindow;
+	}
+	
+	/**
+	 * Keep only the last values of a buffer.
+	 * 
+	 * @param maxSamples
+	 *        The maximum number of values in the buffer
+	 */
+	public static PhyphoxRetentionPolicy bySampleCount(int maxSamples) {
+		if (maxSamples <= 0) {
+			throw new IllegalArgumentException("The maximum number of samples must be a value greater than zero.");
+		}
+		return new PhyphoxRetentionPolicy(maxSamples, Double.POSITIVE_INFINITY);
+	}
+	
+	/**
+	 * Keep only the values that were recorded in the last time window (measured by the values of the experiment's continues buffer).
+	 * 
+	 * @param timeWindow
+	 *        The time window (in the unit of the continues buffer; usually seconds)
+	 */
+	public static PhyphoxRetentionPolicy byTimeWindow(double timeWindow) {
+		if (!(timeWindow > 0)) {
+			throw new IllegalArgumentException("The time window must be a value greater than zero.");
+		}
+		return new PhyphoxRetentionPolicy(PhyphoxBuffer.UNLIMITED_SIZE, timeWindow);
+	}
+	
+	public int getMaxSamples() {
+		return maxSamples;
+	}
+	
+	public double getTimeWindow() {
+		return timeWindow;
+	}
+	
+	public boolean isTimeWindow() {
+		return timeWindow != Double.POSITIVE_INFINITY;
+	}
+}
\ No newline at end of file
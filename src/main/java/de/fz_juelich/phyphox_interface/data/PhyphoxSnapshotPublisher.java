@@ -0,0 +1,104 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the snapshots of an experiment's buffers (see PhyphoxExperimentSnapshot), that are published by the thread that updates the data.<br>
+ * 
+ * The new values of every update are copied into a new chunk once. The chunks are stored in arrays that are shared by the snapshots; the writing
+ * thread only writes to the positions after the chunks of the published snapshots, so the published chunks are never changed and the snapshots
+ * can be read without locking. The arrays are replaced by compacted copies when they are full, so the chunks of removed values are released.<br>
+ * 
+ * The values that were moved to the file of a spill storage (see PhyphoxSpillStorage) are not part of the snapshots, because copying them back
+ * to the heap would defeat the spill storage. The snapshot of such a buffer only contains the values that are kept on the heap, so the memory
+ * that is used by the snapshots is limited by the heap capacity of the spill storage (or by the retention policy of the buffer).
+ */
+class PhyphoxSnapshotPublisher {
+	
+	private static final int INITIAL_CHUNKS = 16;
+	
+	private List<ChunkList> chunkLists = new ArrayList<ChunkList>();
+	private long version;
+	
+	/**
+	 * Add the new values of the buffers to the chunks and create a new snapshot (must only be called by one thread at a time).
+	 */
+	public PhyphoxExperimentSnapshot publish(List<PhyphoxBuffer> data) {
+		List<PhyphoxBufferSnapshot> buffers = new ArrayList<PhyphoxBufferSnapshot>(data.size());
+		for (int i = 0; i < data.size(); i++) {
+			if (i == chunkLists.size()) {
+				//a buffer was added to the experiment (e.g. the continues buffer)
+				chunkLists.add(new ChunkList());
+			}
+			ChunkList chunkList = chunkLists.get(i);
+			chunkList.update(data.get(i));
+			buffers.add(chunkList.snapshot(data.get(i).getName()));
+		}
+		version++;
+		return new PhyphoxExperimentSnapshot(version, buffers);
+	}
+	
+	/**
+	 * The chunks of a single buffer.
+	 */
+	private static class ChunkList {
+		
+		private double[][] chunks = new double[INITIAL_CHUNKS][];
+		private long[] chunkStarts = new long[INITIAL_CHUNKS];
+		private int firstChunk;
+		private int chunkCount;
+		private long start;
+		private long end;
+		
+		/**
+		 * Copy the values that were attached to the buffer since the last update into a new chunk and forget the values that were removed from the
+		 * buffer (or that were moved to the file of a spill storage).
+		 */
+		public void update(PhyphoxBuffer buffer) {
+			long bufferStart = buffer.getRemovedValues();
+			long bufferEnd = bufferStart + buffer.size();
+			long removed = bufferStart + buffer.getSpilledSize();//the spilled values are handled like removed values
+			if (bufferEnd < end) {
+				//the buffer was replaced by another buffer; start again
+				firstChunk = chunkCount;
+				start = removed;
+				end = removed;
+			}
+			long from = Math.max(end, removed);
+			if (from < bufferEnd) {
+				double[] values = new double[(int) (bufferEnd - from)];
+				buffer.copyValues((int) (from - bufferStart), values, 0, values.length);
+				addChunk(from, values);
+			}
+			end = bufferEnd;
+			start = Math.max(start, removed);
+			while (firstChunk < chunkCount && chunkStarts[firstChunk] + chunks[firstChunk].length <= start) {
+				firstChunk++;
+			}
+		}
+		
+		private void addChunk(long chunkStart, double[] values) {
+			if (chunkCount == chunks.length) {
+				//don't change the arrays of the published snapshots; use compacted copies instead
+				int liveChunks = chunkCount - firstChunk;
+				int capacity = Math.max(INITIAL_CHUNKS, 2 * liveChunks);
+				double[][] newChunks = new double[capacity][];
+				long[] newChunkStarts = new long[capacity];
+				System.arraycopy(chunks, firstChunk, newChunks, 0, liveChunks);
+				System.arraycopy(chunkStarts, firstChunk, newChunkStarts, 0, liveChunks);
+				chunks = newChunks;
+				chunkStarts = newChunkStarts;
+				firstChunk = 0;
+				chunkCount = liveChunks;
+			}
+			chunks[chunkCount] = values;
+			chunkStarts[chunkCount] = chunkStart;
+			chunkCount++;
+		}
+		
+		public PhyphoxBufferSnapshot snapshot(String name) {
+			return new PhyphoxBufferSnapshot(name, chunks, chunkStarts, firstChunk, chunkCount, start, end);
+		}
+	}
+}
\ No newline at end of file
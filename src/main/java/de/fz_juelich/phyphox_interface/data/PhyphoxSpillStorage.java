@@ -0,0 +1,39 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * The settings for buffers that spill their older values to a file, so long recordings are not limited by the heap size.<br>
+ * The last values of the buffer are kept on the heap (in an array), the older values are moved to a file that is mapped into memory. The values
+ * can be read and added as usual, only getData() has to copy the values into a new array.
+ */
+public class PhyphoxSpillStorage {
+	
+	private Path directory;
+	private int heapCapacity;
+	
+	/**
+	 * @param directory
+	 *        The directory in which the files are created (the files are deleted when the buffers are cleared or the application terminates)
+	 * 
+	 * @param heapCapacity
+	 *        The number of (the last) values that are kept on the heap
+	 */
+	public PhyphoxSpillStorage(Path directory, int heapCapacity) {
+		Objects.requireNonNull(directory, "A null object is no valid directory.");
+		if (heapCapacity <= 0) {
+			throw new IllegalArgumentException("The heap capacity must be a value greater than zero.");
+		}
+		this.directory = directory;
+		this.heapCapacity = heapCapacity;
+	}
+	
+	public Path getDirectory() {
+		return directory;
+	}
+	
+	public int getHeapCapacity() {
+		return heapCapacity;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,263 @@
+package de.fz_juelich.phyphox_interface.data;
+
+/**
+ * Running statistics of the values of a buffer (count, mean, variance, minimum, maximum and RMS), that are updated by the experiment whenever new
+ * data is added to the buffer (see PhyphoxExperiment.createStatistics), so they can be queried in O(1) without reading the values of the buffer.
+ * <br>
+ * The statistics are calculated over a window that is defined like the data of a buffer that is kept:
+ * <ul>
+ * <li>PhyphoxRetentionPolicy.UNLIMITED: all values since the statistics were created (or the buffer was cleared)</li>
+ * <li>A sample count: the last values</li>
+ * <li>A time window: the values that were recorded in the last seconds (using the continues buffer of the experiment as time)</li>
+ * </ul>
+ * The mean and the variance are calculated using Welford's algorithm. The values of a sliding window are kept by the statistics, to remove them
+ * from the statistics when they leave the window (the minimum and the maximum are found using monotonic queues). NaN values are ignored.
+ */
+public class PhyphoxStatistics extends PhyphoxBufferAggregate {
+	
+	private long count;
+	private double mean;
+	private double m2;//the sum of the squared differences to the mean
+	private double min = Double.NaN;
+	private double max = Double.NaN;
+	
+	//the values in a sliding window (as ring buffer)
+	private double[] values;
+	private double[] times;
+	private int first;
+	private long addedValues;//the number of values that were added to the window (used as sequence number of the values)
+	private int removedSinceRecalculation;//the mean and the variance are recalculated sometimes, so rounding errors of the removals don't add up
+	private MonotonicQueue minQueue;
+	private MonotonicQueue maxQueue;
+	
+	PhyphoxStatistics(String bufferName, int bufferIndex, PhyphoxRetentionPolicy window) {
+		super(bufferName, bufferIndex, window);
+		if (isSlidingWindow()) {
+			values = new double[16];
+			times = new double[16];
+			minQueue = new MonotonicQueue(true);
+			maxQueue = new MonotonicQueue(false);
+		}
+	}
+	
+	@Override
+	synchronized void add(double time, double value) {
+		if (Double.isNaN(value) || (getWindow().isTimeWindow() && Double.isNaN(time))) {
+			return;
+		}
+		addToMoments(value);
+		if (!isSlidingWindow()) {
+			min = count == 1 ? value : Math.min(min, value);
+			max = count == 1 ? value : Math.max(max, value);
+			return;
+		}
+		int size = (int) count - 1;//the window size before the value is added
+		if (size == values.length) {
+			//enlarge the ring buffer (the values start at index 0 afterwards)
+			double[] newValues = new double[2 * values.length];
+			double[] newTimes = new double[2 * times.length];
+			for (int i = 0; i < size; i++) {
+				newValues[i] = values[(first + i) % values.length];
+				newTimes[i] = times[(first + i) % times.length];
+			}
+			values = newValues;
+			times = newTimes;
+			first = 0;
+		}
+		int last = (first + size) % values.length;
+		values[last] = value;
+		times[last] = time;
+		minQueue.add(addedValues, value);
+		maxQueue.add(addedValues, value);
+		addedValues++;
+		while (count > getWindow().getMaxSamples() || (getWindow().isTimeWindow() && times[first] < time - getWindow().getTimeWindow())) {
+			removeOldest();
+		}
+	}
+	
+	private void removeOldest() {
+		double value = values[first];
+		long sequenceNumber = addedValues - count;
+		minQueue.remove(sequenceNumber);
+		maxQueue.remove(sequenceNumber);
+		first = (first + 1) % values.length;
+		removeFromMoments(value);
+		removedSinceRecalculation++;
+		if (removedSinceRecalculation > count) {
+			//O(1) amortized, because the window's values were removed since the last recalculation
+			recalculateMoments();
+		}
+	}
+	
+	private void addToMoments(double value) {
+		count++;
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+	}
+	
+	private void removeFromMoments(double value) {
+		if (count == 1) {
+			count = 0;
+			mean = 0;
+			m2 = 0;
+			return;
+		}
+		count--;
+		double delta = value - mean;
+		mean -= delta / count;
+		m2 = Math.max(m2 - delta * (value - mean), 0);
+	}
+	
+	private void recalculateMoments() {
+		long size = count;
+		count = 0;
+		mean = 0;
+		m2 = 0;
+		for (int i = 0; i < size; i++) {
+			addToMoments(values[(first + i) % values.length]);
+		}
+		removedSinceRecalculation = 0;
+	}
+	
+	@Override
+	synchronized void reset() {
+		count = 0;
+		mean = 0;
+		m2 = 0;
+		min = Double.NaN;
+		max = Double.NaN;
+		if (isSlidingWindow()) {
+			first = 0;
+			removedSinceRecalculation = 0;
+			minQueue.clear();
+			maxQueue.clear();
+		}
+	}
+	
+	/**
+	 * The number of values in the window.
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+	
+	/**
+	 * The mean of the values in the window (or NaN if there are no values).
+	 */
+	public synchronized double getMean() {
+		return count > 0 ? mean : Double.NaN;
+	}
+	
+	/**
+	 * The sample variance of the values in the window (or NaN if there are less than two values).
+	 */
+	public synchronized double getVariance() {
+		return count > 1 ? m2 / (count - 1) : Double.NaN;
+	}
+	
+	/**
+	 * The sample standard deviation of the values in the window (or NaN if there are less than two values).
+	 */
+	public synchronized double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+	
+	/**
+	 * The root mean square of the values in the window (or NaN if there are no values).
+	 */
+	public synchronized double getRms() {
+		return count > 0 ? Math.sqrt(m2 / count + mean * mean) : Double.NaN;
+	}
+	
+	/**
+	 * The minimum of the values in the window (or NaN if there are no values).
+	 */
+	public synchronized double getMin() {
+		if (isSlidingWindow()) {
+			return count > 0 ? minQueue.getFirstValue() : Double.NaN;
+		}
+		return min;
+	}
+	
+	/**
+	 * The maximum of the values in the window (or NaN if there are no values).
+	 */
+	public synchronized double getMax() {
+		if (isSlidingWindow()) {
+			return count > 0 ? maxQueue.getFirstValue() : Double.NaN;
+		}
+		return max;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "PhyphoxStatistics [bufferName=" + getBufferName() + ", count=" + count + ", mean=" + getMean() + ", variance=" + getVariance() + ", min="
+				+ getMin() + ", max=" + getMax() + ", rms=" + getRms() + "]";
+	}
+	
+	/**
+	 * A queue of the values of a sliding window, that only keeps the values that can still become the minimum (or maximum) of the window, so the
+	 * first value is the minimum (or maximum) of the window.
+	 */
+	private static class MonotonicQueue {
+		
+		private final boolean minimum;
+		private long[] sequenceNumbers = new long[16];
+		private double[] values = new double[16];
+		private int first;
+		private int size;
+		
+		public MonotonicQueue(boolean minimum) {
+			this.minimum = minimum;
+		}
+		
+		public void add(long sequenceNumber, double value) {
+			//remove the values that can't become the minimum (or maximum) anymore
+			while (size > 0) {
+				double lastValue = values[(first + size - 1) % values.length];
+				if (minimum ? lastValue >= value : lastValue <= value) {
+					size--;
+				}
+				else {
+					break;
+				}
+			}
+			if (size == values.length) {
+				long[] newSequenceNumbers = new long[2 * size];
+				double[] newValues = new double[2 * size];
+				for (int i = 0; i < size; i++) {
+					newSequenceNumbers[i] = sequenceNumbers[(first + i) % sequenceNumbers.length];
+					newValues[i] = values[(first + i) % values.length];
+				}
+				sequenceNumbers = newSequenceNumbers;
+				values = newValues;
+				first = 0;
+			}
+			int last = (first + size) % values.length;
+			sequenceNumbers[last] = sequenceNumber;
+			values[last] = value;
+			size++;
+		}
+		
+		/**
+		 * Remove the value with the sequence number, if it's the first value of the queue (a value that is removed from the window is always the
+		 * oldest one).
+		 */
+		public void remove(long sequenceNumber) {
+			if (size > 0 && sequenceNumbers[first] == sequenceNumber) {
+				first = (first + 1) % values.length;
+				size--;
+			}
+		}
+		
+		public double getFirstValue() {
+			return values[first];
+		}
+		
+		public void clear() {
+			first = 0;
+			size = 0;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,116 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.util.Arrays;
+
+/**
+ * A sparse block index of a monotonically increasing buffer (e.g. the time), that is used to find the values in a time range (see
+ * PhyphoxExperiment.getViewsInTimeRange).<br>
+ * 
+ * The index stores the first value of every block of 'block size' values. A search first finds the block using a binary search in the index and
+ * then the value using a binary search in the block, so only a few values of the buffer are read (which is important if the values are spilled to
+ * a file). The index is updated incrementally when new values are attached to the buffer.
+ */
+class PhyphoxTimeIndex {
+	
+	public static final int DEFAULT_BLOCK_SIZE = 1024;
+	
+	private final int blockSize;
+	private double[] blockTimes = new double[16];//the first value of every block
+	private long[] blockStarts = new long[16];//the index of the first value of every block, counted from the start of the recording
+	private int firstBlock;//the first block that contains values of the buffer (the blocks before only contain removed values)
+	private int blockCount;
+	private long nextBlockStart;//the index at which the next block starts, counted from the start of the recording
+	
+	public PhyphoxTimeIndex() {
+		this(DEFAULT_BLOCK_SIZE);
+	}
+	public PhyphoxTimeIndex(int blockSize) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("The block size must be a value greater than zero.");
+		}
+		this.blockSize = blockSize;
+	}
+	
+	/**
+	 * Add the blocks of the values that were attached to the buffer since the last update and forget the blocks of removed values.
+	 */
+	public void update(PhyphoxBuffer buffer) {
+		long removed = buffer.getRemovedValues();
+		long end = removed + buffer.size();
+		if (nextBlockStart < removed) {
+			//the values were removed before they were indexed
+			nextBlockStart = removed;
+		}
+		while (nextBlockStart < end) {
+			addBlock(nextBlockStart, buffer.get((int) (nextBlockStart - removed)));
+			nextBlockStart += blockSize;
+		}
+		while (firstBlock + 1 < blockCount && blockStarts[firstBlock + 1] <= removed) {
+			firstBlock++;
+		}
+	}
+	
+	private void addBlock(long start, double time) {
+		if (blockCount == blockTimes.length) {
+			//remove the blocks of removed values before the arrays are enlarged
+			int liveBlocks = blockCount - firstBlock;
+			System.arraycopy(blockTimes, firstBlock, blockTimes, 0, liveBlocks);
+			System.arraycopy(blockStarts, firstBlock, blockStarts, 0, liveBlocks);
+			firstBlock = 0;
+			blockCount = liveBlocks;
+			if (blockCount > blockTimes.length / 2) {
+				blockTimes = Arrays.copyOf(blockTimes, 2 * blockTimes.length);
+				blockStarts = Arrays.copyOf(blockStarts, 2 * blockStarts.length);
+			}
+		}
+		blockTimes[blockCount] = time;
+		blockStarts[blockCount] = start;
+		blockCount++;
+	}
+	
+	/**
+	 * Find the index (in the buffer) of the first value that is not lower than the given value (or greater than the given value, if 'after' is
+	 * true).
+	 * 
+	 * @return The index of the value or the size of the buffer if there is no such value
+	 */
+	public int findFirstIndex(PhyphoxBuffer buffer, double value, boolean after) {
+		long removed = buffer.getRemovedValues();
+		//the last block that starts with a lower value (the blocks after it start with the value or greater values)
+		int low = firstBlock;
+		int high = blockCount - 1;
+		int block = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (blockTimes[mid] < value || (after && blockTimes[mid] == value)) {
+				block = mid;
+				low = mid + 1;
+			}
+			else {
+				high = mid - 1;
+			}
+		}
+		int lowIndex = block != -1 ? (int) Math.max(blockStarts[block] - removed, 0) : 0;
+		int highIndex = block + 1 < blockCount ? (int) Math.max(blockStarts[Math.max(block + 1, firstBlock)] - removed, 0) : buffer.size();
+		highIndex = Math.min(highIndex, buffer.size());
+		return findFirstIndex(buffer, value, after, lowIndex, highIndex);
+	}
+	
+	/**
+	 * Find the index of the first value that is not lower than the given value (or greater than the given value, if 'after' is true), using a
+	 * binary search between the indices low (inclusive) and high (exclusive).
+	 */
+	static int findFirstIndex(PhyphoxBuffer buffer, double value, boolean after, int low, int high) {
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			double midValue = buffer.get(mid);
+			if (midValue < value || (after && midValue == value)) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,18 @@
+package de.fz_juelich.phyphox_interface.data;
+
+/**
+ * The way the time between two data updates (requests to the phone) is measured.
+ */
+public enum PhyphoxUpdateMode {
+	
+	/**
+	 * Wait the update rate after every update (the real period is the update rate plus the time of the request, parsing and informing the
+	 * listeners).
+	 */
+	FIXED_DELAY,
+	/**
+	 * Start an update every update rate (the time of the request, parsing and informing the listeners is subtracted from the waiting time). Updates
+	 * that are missed because an update took too long are handled by a PhyphoxMissedUpdatePolicy.
+	 */
+	FIXED_RATE;
+}
@@ -0,0 +1,145 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculates the time to wait between two data updates of an experiment (depending on the PhyphoxUpdateMode).<br>
+ * In the FIXED_RATE mode the updates are started on a fixed grid of times (the start time plus a multiple of the update rate), so the duration of
+ * the updates doesn't cause a drift.<br>
+ * If an adaptive update rate is used, the update rate is adjusted after every update (see reportUpdate).
+ */
+class PhyphoxUpdateTimer {
+	
+	private PhyphoxUpdateMode mode;
+	private PhyphoxMissedUpdatePolicy missedUpdatePolicy;
+	private volatile long periodNanos;//the update rate in nanoseconds
+	private long nextUpdate;//the time of the next regular update (in nanoseconds; only used in the FIXED_RATE mode)
+	private volatile long missedUpdates;//the number of updates that were skipped or coalesced
+	
+	private PhyphoxAdaptiveUpdateRate adaptiveUpdateRate;//the settings for the adaptive update rate (or null if the update rate is fixed)
+	private double sampleRate = Double.NaN;//the smoothed number of new samples per nanosecond
+	private double roundTripNanos = Double.NaN;//the smoothed duration of an update
+	private long lastUpdateStart = -1;//the start time of the last update
+	
+	public PhyphoxUpdateTimer(PhyphoxUpdateMode mode, PhyphoxMissedUpdatePolicy missedUpdatePolicy, int updateRate) {
+		this(mode, missedUpdatePolicy, updateRate, null);
+	}
+	/**
+	 * @param adaptiveUpdateRate
+	 *        The settings for an adaptive update rate (or null to use the fixed update rate)
+	 */
+	public PhyphoxUpdateTimer(PhyphoxUpdateMode mode, PhyphoxMissedUpdatePolicy missedUpdatePolicy, int updateRate,
+			PhyphoxAdaptiveUpdateRate adaptiveUpdateRate) {
+		this.mode = mode;
+		this.missedUpdatePolicy = missedUpdatePolicy;
+		this.adaptiveUpdateRate = adaptiveUpdateRate;
+		this.periodNanos = TimeUnit.MILLISECONDS.toNanos(updateRate);
+		if (adaptiveUpdateRate != null) {
+			//start with the given update rate (within the bounds)
+			periodNanos = clamp(periodNanos, TimeUnit.MILLISECONDS.toNanos(adaptiveUpdateRate.getMinUpdateRate()));
+		}
+	}
+	
+	/**
+	 * Start the timer with the first update at the given time (in nanoseconds; usually System.nanoTime()).
+	 */
+	public void start(long now) {
+		nextUpdate = now;
+	}
+	
+	/**
+	 * Get the time to wait until the next update is started (in nanoseconds).
+	 * 
+	 * @param now
+	 *        The time when the last update was finished (in nanoseconds; usually System.nanoTime())
+	 */
+	public long getDelayToNextUpdate(long now) {
+		if (mode == PhyphoxUpdateMode.FIXED_DELAY) {
+			return periodNanos;
+		}
+		nextUpdate += periodNanos;
+		if (now <= nextUpdate) {
+			//the update was fast enough; just wait for the rest of the period
+			return nextUpdate - now;
+		}
+		//the update took too long; all regular update times up to now were missed
+		long missed = (now - nextUpdate) / periodNanos + 1;
+		if (missedUpdatePolicy == PhyphoxMissedUpdatePolicy.SKIP) {
+			//wait for the next regular update time
+			missedUpdates += missed;
+			nextUpdate += missed * periodNanos;
+			return nextUpdate - now;
+		}
+		else {
+			//start one update now, that replaces the last missed update
+			missedUpdates += missed - 1;
+			nextUpdate += (missed - 1) * periodNanos;
+			return 0;
+		}
+	}
+	
+	/**
+	 * Report a finished update to adjust the adaptive update rate (has no effect if the update rate is fixed).<br>
+	 * The sample rate of the phone is estimated from the new samples and the time since the last update was started. The next update rate is chosen
+	 * to receive the target number of samples, but it's not lower than the duration of an update. If no new samples were received the update rate
+	 * is doubled.
+	 * 
+	 * @param updateStart
+	 *        The time when the update was started (in nanoseconds)
+	 * 
+	 * @param updateEnd
+	 *        The time when the update was finished (in nanoseconds)
+	 * 
+	 * @param newSamples
+	 *        The number of new samples that were received with the update
+	 */
+	public void reportUpdate(long updateStart, long updateEnd, int newSamples) {
+		if (adaptiveUpdateRate == null) {
+			return;
+		}
+		roundTripNanos = smooth(roundTripNanos, updateEnd - updateStart);
+		if (lastUpdateStart != -1 && updateStart > lastUpdateStart) {
+			sampleRate = smooth(sampleRate, newSamples / (double) (updateStart - lastUpdateStart));
+		}
+		lastUpdateStart = updateStart;
+		
+		long minPeriod = Math.max(TimeUnit.MILLISECONDS.toNanos(adaptiveUpdateRate.getMinUpdateRate()), (long) roundTripNanos);
+		if (Double.isNaN(sampleRate)) {
+			//not enough updates to estimate the sample rate yet
+			periodNanos = clamp(periodNanos, minPeriod);
+		}
+		else if (sampleRate <= 0) {
+			//no new samples; the sensor is slow (or the experiment is not running)
+			periodNanos = clamp(periodNanos * 2, minPeriod);
+		}
+		else {
+			periodNanos = clamp((long) (adaptiveUpdateRate.getTargetSamplesPerUpdate() / sampleRate), minPeriod);
+		}
+	}
+	
+	private long clamp(long period, long minPeriod) {
+		long maxPeriod = TimeUnit.MILLISECONDS.toNanos(adaptiveUpdateRate.getMaxUpdateRate());
+		return Math.min(Math.max(period, minPeriod), maxPeriod);
+	}
+	
+	/**
+	 * An exponentially weighted moving average (to not react too strongly to single updates).
+	 */
+	private double smooth(double average, double value) {
+		if (Double.isNaN(average)) {
+			return value;
+		}
+		return 0.5 * average + 0.5 * value;
+	}
+	
+	public long getMissedUpdates() {
+		return missedUpdates;
+	}
+	
+	/**
+	 * The current time between two updates (in milliseconds).
+	 */
+	public int getUpdateRate() {
+		return (int) TimeUnit.NANOSECONDS.toMillis(periodNanos);
+	}
+}
\ No newline at end of file
@@ -4,14 +4,15 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
 import java.util.ResourceBundle;
 
 import de.fz_juelich.phyphox_interface.connection.PhyphoxConnectionException;
 import de.fz_juelich.phyphox_interface.connection.PhyphoxConnectionSettings;
 import de.fz_juelich.phyphox_interface.data.PhyphoxBuffer;
 import de.fz_juelich.phyphox_interface.data.PhyphoxExperiment;
-import de.fz_juelich.phyphox_interface.data.PhyphoxDataListener;
+import de.fz_juelich.phyphox_interface.data.PhyphoxBatchListener;
+import de.fz_juelich.phyphox_interface.data.PhyphoxDataBatch;
+import de.fz_juelich.phyphox_interface.data.PhyphoxDecimator;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
@@ -24,7 +25,7 @@ import javafx.scene.control.TextField;
 /**
  * A simple example implementation to show how the phyphox_java_interface can be used (using a text-area and a plot for visualization)
  */
-public class PhyphoxInterfaceVisualisationController implements Initializable, PhyphoxDataListener {
+public class PhyphoxInterfaceVisualisationController implements Initializable, PhyphoxBatchListener {
 	
 	@FXML
 	private TextField textFieldPhyphoxIp;
@@ -47,6 +48,7 @@ public class PhyphoxInterfaceVisualisationController implements Initializable, P
 	private LineChart<String, Double> chartOutputData;
 	
 	private PhyphoxExperiment experiment;
+	private PhyphoxDecimator decimator;//reduces the data to the points that are displayed in the plot
 	
 	public PhyphoxInterfaceVisualisationController() {
 		//don't create the experiment here because we don't know the names of the buffers yet.
@@ -99,8 +101,15 @@ public class PhyphoxInterfaceVisualisationController implements Initializable, P
 		}
 		//create the PhyphoxExperiment object that starts reading the buffers automatically
 		experiment = new PhyphoxExperiment(connection, bufferNames, updateRate);
-		//register this object as PhyphoxDataListener to be informed about new data
-		experiment.addDataListener(this);
+		//the decimator is updated with the new data, so the plot doesn't need to process all the data on every update
+		if (decimator != null) {
+			//stop updating the decimator of the last experiment
+			decimator.disconnect();
+		}
+		decimator = new PhyphoxDecimator();
+		decimator.connect(experiment, textFieldTimeBuffer.getText(), textFieldNameBuffer1.getText());
+		//register this object as PhyphoxBatchListener to be informed about new data (after the decimator was updated)
+		experiment.addBatchListener(this);
 		//start the experiment
 		try {
 			experiment.startExperiment();
@@ -137,6 +146,7 @@ public class PhyphoxInterfaceVisualisationController implements Initializable, P
 				DialogUtils.showExceptionDialog("Problems while clearing the experiment's data", pce.getMessage(), pce);
 				//in a real application the error should probably be handled
 			}
+			decimator.clear();
 		}
 		//clear the text area and the plot
 		textAreaOutputPlainText.clear();
@@ -159,11 +169,11 @@ public class PhyphoxInterfaceVisualisationController implements Initializable, P
 	}
 	
 	@Override
-	public void updateData(List<PhyphoxBuffer> newData) {
+	public void updateData(PhyphoxDataBatch batch) {
 		//print the data for testing:
-		//printData(newData);
+		//printData(batch);
 		
-		List<XYChart.Data<String, Double>> chartDataPoints = getAsChartData(newData);
+		List<XYChart.Data<String, Double>> chartDataPoints = getAsChartData();
 		
 		//set the chart data series (needs to be run in an JavaFX thread; therefore the Platform.runLater())
 		Platform.runLater(() -> {
@@ -175,71 +185,39 @@ public class PhyphoxInterfaceVisualisationController implements Initializable, P
 		});
 	}
 	
-	private List<XYChart.Data<String, Double>> getAsChartData(List<PhyphoxBuffer> newData) {
-		if (newData.size() == 2) {//should be x-values and time
-			//we can use index 0 here because it was the first name that was added 
-			PhyphoxBuffer xDataBuffer = newData.get(0);
-			
-			//alternatively just check the names of the buffers
-			String timeBufferName = textFieldTimeBuffer.getText();
-			Optional<PhyphoxBuffer> timeBufferOptional = PhyphoxBuffer.getByName(newData, timeBufferName);
-			PhyphoxBuffer timeBuffer;
-			//get the buffer if there was any with the searched name
-			if (timeBufferOptional.isPresent()) {
-				timeBuffer = timeBufferOptional.get();
-			}
-			else {
-				//if there is no such buffer something went wrong and should probably be logged or something...
-				return null;
-			}
-			
-			//append the data to the text area and the chart
-			List<XYChart.Data<String, Double>> chartDataPoints = new ArrayList<XYChart.Data<String, Double>>();
-			//there may be differences in the number of values in every array, so use the lower number of values
-			int numData = Math.min(newData.get(0).size(), newData.get(1).size());
-			
-			//use a maximum number of points in the plot (otherwise these FX-Plots will will get really slow). 
-			int maxDataPoints = 1000;
-			int displayedRestClass;
-			if (numData > maxDataPoints) {
-				displayedRestClass = numData / maxDataPoints;
-			}
-			else {
-				displayedRestClass = 1;//display all
-			}
-			
-			//also add the values to the text area
-			StringBuilder sb = new StringBuilder();
-			sb.append("Time      -      Value");
-			
-			for (int i = 0; i < numData; i++) {
-				//only display some of the measured points
-				if (i % displayedRestClass == 0) {
-					
-					double time = timeBuffer.getData()[i];
-					double xData = xDataBuffer.getData()[i];
-					
-					sb.append(String.format("\n%.3f              %.5f", time, xData));
-					chartDataPoints.add(new XYChart.Data<String, Double>(String.format("%.4f", time), xData));
-				}
-			}
-			textAreaOutputPlainText.setText(sb.toString());
+	private List<XYChart.Data<String, Double>> getAsChartData() {
+		//use a maximum number of points in the plot (otherwise these FX-Plots will will get really slow). 
+		int maxDataPoints = 1000;
+		//select the points that keep the shape of the data (instead of every n-th point, which may miss the peaks)
+		List<PhyphoxBuffer> displayedPoints = decimator.getLargestTriangleThreeBuckets(maxDataPoints);
+		PhyphoxBuffer timeBuffer = displayedPoints.get(0);
+		PhyphoxBuffer xDataBuffer = displayedPoints.get(1);
+		
+		//append the data to the text area and the chart
+		List<XYChart.Data<String, Double>> chartDataPoints = new ArrayList<XYChart.Data<String, Double>>();
+		
+		//also add the values to the text area
+		StringBuilder sb = new StringBuilder();
+		sb.append("Time      -      Value");
+		
+		for (int i = 0; i < timeBuffer.size(); i++) {
+			double time = timeBuffer.get(i);
+			double xData = xDataBuffer.get(i);
 			
-			return chartDataPoints;
-		}
-		else {
-			//there seems to be problems with the data (that should probably be logged)
-			return null;
+			sb.append(String.format("\n%.3f              %.5f", time, xData));
+			chartDataPoints.add(new XYChart.Data<String, Double>(String.format("%.4f", time), xData));
 		}
+		textAreaOutputPlainText.setText(sb.toString());
+		
+		return chartDataPoints;
 	}
 	
 	@SuppressWarnings("unused")
-	private void printData(List<PhyphoxBuffer> newData) {
-		for (PhyphoxBuffer buffer : newData) {
-			System.out.println("\n" + buffer.getName());
-			double[] data = buffer.getData();
-			for (int i = 0; i < data.length; i++) {
-				System.out.println(i + " " + data[i]);
+	private void printData(PhyphoxDataBatch batch) {
+		for (int bufferId = 0; bufferId < batch.getBufferCount(); bufferId++) {
+			System.out.println("\n" + batch.getName(bufferId));
+			for (int i = 0; i < batch.getLength(bufferId); i++) {
+				System.out.println(i + " " + batch.get(bufferId, i));
 			}
 		}
 	}
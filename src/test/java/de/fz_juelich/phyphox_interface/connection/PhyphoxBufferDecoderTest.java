@@ -0,0 +1,67 @@
+package de.fz_juelich.phyphox_interface.connection;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.fz_juelich.phyphox_interface.data.PhyphoxBuffer;
+
+class PhyphoxBufferDecoderTest {
+	
+	private static final double epsilon = 1e-5;
+	
+	@Test
+	public void testDecode() throws IOException {
+		String json = "{\"buffer\": {\"acc\": {\"size\": 0, \"updateMode\": \"full\", \"buffer\": [1.5, 2, -3e2]}, "
+				+ "\"time\": {\"size\": 0, \"updateMode\": \"partial\", \"buffer\": [0.1, 0.2, 0.3]}}, "
+				+ "\"status\": {\"session\": \"abc\", \"measuring\": true, \"timedRun\": false, \"countDown\": 0}}";
+		
+		List<PhyphoxBuffer> buffers = new PhyphoxBufferDecoder().decode(new StringReader(json));
+		
+		assertEquals(2, buffers.size());
+		assertEquals("acc", buffers.get(0).getName());
+		assertArrayEquals(new double[] {1.5, 2, -300}, buffers.get(0).getData(), epsilon);
+		assertEquals("time", buffers.get(1).getName());
+		assertArrayEquals(new double[] {0.1, 0.2, 0.3}, buffers.get(1).getData(), epsilon);
+	}
+	
+	@Test
+	public void testDecode_growingArray() throws IOException {
+		StringBuilder sb = new StringBuilder("{\"buffer\": {\"x\": {\"buffer\": [");
+		for (int i = 0; i < 1000; i++) {
+			sb.append(i).append(i < 999 ? "," : "");
+		}
+		sb.append("]}}}");
+		
+		List<PhyphoxBuffer> buffers = new PhyphoxBufferDecoder().decode(new StringReader(sb.toString()));
+		
+		double[] data = buffers.get(0).getData();
+		assertEquals(1000, data.length);
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i, data[i], epsilon);
+		}
+	}
+	
+	@Test
+	public void testDecode_nullValuesAndEmptyBuffer() throws IOException {
+		String json = "{\"status\": {}, \"buffer\": {\"x\": {\"buffer\": [1, null, 3]}, \"y\": {\"buffer\": []}}}";
+		
+		List<PhyphoxBuffer> buffers = new PhyphoxBufferDecoder().decode(new StringReader(json));
+		
+		assertArrayEquals(new double[] {1, Double.NaN, 3}, buffers.get(0).getData(), epsilon);
+		assertEquals(0, buffers.get(1).size());
+	}
+	
+	@Test
+	public void testDecode_unexpectedStructure() {
+		String json = "{\"buffer\": [1, 2, 3]}";
+		
+		assertThrows(IOException.class, () -> new PhyphoxBufferDecoder().decode(new StringReader(json)));
+	}
+}
@@ -0,0 +1,106 @@
+package de.fz_juelich.phyphox_interface.connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+class PhyphoxConnectionTest {
+	
+	@Test
+	public void testAsyncRequest_closedConnection() {
+		PhyphoxConnection connection = new PhyphoxConnection(new PhyphoxConnectionSettings("1.1.1.1", 42));
+		connection.close();
+		
+		CompletableFuture<Void> future = connection.startExperimentAsync();
+		
+		ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get());
+		assertTrue(exception.getCause() instanceof PhyphoxConnectionException);
+	}
+	
+	@Test
+	public void testAsyncRequest_usesExecutor() {
+		//an executor that runs everything in the calling thread
+		Executor executor = Runnable::run;
+		PhyphoxConnection connection = new PhyphoxConnection(new PhyphoxConnectionSettings("1.1.1.1", 42), executor);
+		connection.close();
+		
+		CompletableFuture<?> future = connection.getDataAsync("buffer=full");
+		
+		//the request was already executed by the executor
+		assertTrue(future.isCompletedExceptionally());
+	}
+	
+	/**
+	 * Start a local server that answers the control requests like the phone and remembers the client port of every request (the port identifies
+	 * the TCP connection that was used).
+	 */
+	private static HttpServer startServer(List<Integer> clientPorts) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/control", exchange -> {
+			clientPorts.add(exchange.getRemoteAddress().getPort());
+			byte[] answer = "{\"result\": true}".getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, answer.length);
+			try (OutputStream body = exchange.getResponseBody()) {
+				body.write(answer);
+			}
+		});
+		server.start();
+		return server;
+	}
+	
+	@Test
+	public void testKeepAlive_connectionIsReused() throws IOException, PhyphoxConnectionException {
+		List<Integer> clientPorts = new CopyOnWriteArrayList<Integer>();
+		HttpServer server = startServer(clientPorts);
+		try (PhyphoxConnection connection = new PhyphoxConnection(
+				new PhyphoxConnectionSettings(server.getAddress().getHostString(), server.getAddress().getPort(), 2, 5000))) {
+			for (int i = 0; i < 3; i++) {
+				connection.startExperiment();
+			}
+		}
+		finally {
+			server.stop(0);
+		}
+		
+		//all requests were sent over the same (pooled) connection
+		assertEquals(3, clientPorts.size());
+		assertEquals(1, clientPorts.stream().distinct().count());
+	}
+	
+	@Test
+	public void testKeepAlive_durationFromSettings() throws IOException, PhyphoxConnectionException, InterruptedException {
+		List<Integer> clientPorts = new CopyOnWriteArrayList<Integer>();
+		HttpServer server = startServer(clientPorts);
+		//the server doesn't send a keep-alive header, so the connection expires after the keep-alive time of the settings
+		try (PhyphoxConnection connection = new PhyphoxConnection(
+				new PhyphoxConnectionSettings(server.getAddress().getHostString(), server.getAddress().getPort(), 2, 50))) {
+			connection.startExperiment();
+			connection.startExperiment();
+			Thread.sleep(200);
+			connection.startExperiment();
+		}
+		finally {
+			server.stop(0);
+		}
+		
+		assertEquals(3, clientPorts.size());
+		assertEquals(clientPorts.get(0), clientPorts.get(1));
+		assertNotEquals(clientPorts.get(1), clientPorts.get(2));
+	}
+}
\ No newline at end of file
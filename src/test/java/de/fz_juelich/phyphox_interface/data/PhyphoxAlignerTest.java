@@ -0,0 +1,86 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PhyphoxAlignerTest {
+	
+	private static final double epsilon = 1e-5;
+	
+	@Test
+	public void testUniformGrid_linear() {
+		PhyphoxAligner aligner = new PhyphoxAligner(0.5, PhyphoxInterpolation.LINEAR);
+		int sourceA = aligner.addSource("a");
+		int sourceB = aligner.addSource("b");
+		List<List<PhyphoxBuffer>> updates = new ArrayList<List<PhyphoxBuffer>>();
+		aligner.addDataListener(updates::add);
+		
+		aligner.addData(sourceA, new double[] {0, 1, 2, 3}, new double[] {0, 10, 20, 30});
+		//nothing can be aligned before all sources have values
+		assertEquals(0, updates.size());
+		aligner.addData(sourceB, new double[] {0.5, 1.5}, new double[] {1, 3});
+		
+		List<PhyphoxBuffer> alignedData = aligner.getAlignedData();
+		assertArrayEquals(new double[] {0.5, 1, 1.5}, alignedData.get(0).getData(), epsilon);
+		assertArrayEquals(new double[] {5, 10, 15}, alignedData.get(1).getData(), epsilon);
+		assertArrayEquals(new double[] {1, 2, 3}, alignedData.get(2).getData(), epsilon);
+		
+		//incremental update
+		aligner.addData(sourceB, new double[] {2.5}, new double[] {5});
+		assertArrayEquals(new double[] {0.5, 1, 1.5, 2, 2.5}, alignedData.get(0).getData(), epsilon);
+		assertArrayEquals(new double[] {5, 10, 15, 20, 25}, alignedData.get(1).getData(), epsilon);
+		assertArrayEquals(new double[] {1, 2, 3, 4, 5}, alignedData.get(2).getData(), epsilon);
+		assertEquals(2, updates.size());
+		assertArrayEquals(new double[] {2, 2.5}, updates.get(1).get(0).getData(), epsilon);
+		
+		assertThrows(IllegalStateException.class, () -> aligner.addSource("c"));
+	}
+	
+	@Test
+	public void testUniformGrid_zeroOrderHold() {
+		PhyphoxAligner aligner = new PhyphoxAligner(1, PhyphoxInterpolation.ZERO_ORDER_HOLD);
+		int source = aligner.addSource("a");
+		//the values and times don't need to have the same length
+		aligner.addData(source, new double[] {0, 1.5, 2.5, 4}, new double[] {1, 2});
+		aligner.addData(source, new double[0], new double[] {3, 4});
+		
+		List<PhyphoxBuffer> alignedData = aligner.getAlignedData();
+		assertArrayEquals(new double[] {0, 1, 2, 3, 4}, alignedData.get(0).getData(), epsilon);
+		assertArrayEquals(new double[] {1, 1, 2, 3, 4}, alignedData.get(1).getData(), epsilon);
+	}
+	
+	@Test
+	public void testReferenceTimes_experiments() {
+		PhyphoxExperiment experiment1 = new PhyphoxExperiment("time", "acc_x");
+		PhyphoxExperiment experiment2 = new PhyphoxExperiment("time", "acc_x");
+		PhyphoxAligner aligner = new PhyphoxAligner(PhyphoxInterpolation.LINEAR);
+		aligner.addSource(experiment1, "time", "acc_x", "x1");
+		int source2 = aligner.addSource(experiment2, "time", "acc_x", "x2");
+		//the second experiment was started one second later
+		aligner.setTimeOffset(source2, 1);
+		
+		experiment1.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {1, 2, 3, 4}), new PhyphoxBuffer("acc_x", new double[] {1, 2, 3}))));
+		experiment2.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {0, 2}), new PhyphoxBuffer("acc_x", new double[] {10, 30}))));
+		
+		//the times of the first experiment (that have values of both experiments)
+		List<PhyphoxBuffer> alignedData = aligner.getAlignedData();
+		assertArrayEquals(new double[] {1, 2, 3}, alignedData.get(0).getData(), epsilon);
+		assertArrayEquals(new double[] {1, 2, 3}, alignedData.get(1).getData(), epsilon);
+		assertArrayEquals(new double[] {10, 20, 30}, alignedData.get(2).getData(), epsilon);
+		
+		experiment1.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("acc_x", new double[] {4}))));
+		experiment2.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {4}), new PhyphoxBuffer("acc_x", new double[] {70}))));
+		assertArrayEquals(new double[] {1, 2, 3, 4}, alignedData.get(0).getData(), epsilon);
+		assertArrayEquals(new double[] {10, 20, 30, 50}, alignedData.get(2).getData(), epsilon);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,167 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+class PhyphoxAsyncDataListenerTest {
+	
+	private static final double epsilon = 1e-5;
+	
+	/**
+	 * A listener that waits until it's released, to simulate a slow listener.
+	 */
+	private static class SlowListener implements PhyphoxDataListener {
+		
+		private CountDownLatch release = new CountDownLatch(1);
+		private List<Double> values = new ArrayList<Double>();
+		private int batches;
+		
+		@Override
+		public void updateData(List<PhyphoxBuffer> newData) {
+			try {
+				release.await();
+			}
+			catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			batches++;
+			for (double value : newData.get(0).getData()) {
+				values.add(value);
+			}
+		}
+	}
+	
+	private static List<PhyphoxBuffer> batch(double... values) {
+		return Arrays.asList(new PhyphoxBuffer("buffer_x", values));
+	}
+	
+	private static void waitForQueue(PhyphoxAsyncDataListener listener, int size) throws InterruptedException {
+		while (listener.getQueueSize() != size) {
+			Thread.sleep(1);
+		}
+	}
+	
+	@Test
+	public void testDropOldest() throws InterruptedException {
+		SlowListener slowListener = new SlowListener();
+		PhyphoxAsyncDataListener listener = new PhyphoxAsyncDataListener(slowListener, 2, PhyphoxOverflowPolicy.DROP_OLDEST);
+		
+		listener.updateData(batch(1));
+		//the first batch is taken by the dispatch thread (that waits in the slow listener)
+		waitForQueue(listener, 0);
+		listener.updateData(batch(2));
+		listener.updateData(batch(3));
+		listener.updateData(batch(4));
+		assertEquals(2, listener.getQueueSize());
+		assertEquals(1, listener.getDroppedBatches());
+		
+		slowListener.release.countDown();
+		listener.close();
+		listener.awaitTermination();
+		
+		assertEquals(Arrays.asList(1d, 3d, 4d), slowListener.values);
+		assertEquals(3, listener.getDeliveredBatches());
+		assertEquals(2, listener.getMaxQueueSize());
+	}
+	
+	@Test
+	public void testCoalesce() throws InterruptedException {
+		SlowListener slowListener = new SlowListener();
+		PhyphoxAsyncDataListener listener = new PhyphoxAsyncDataListener(slowListener, 1, PhyphoxOverflowPolicy.COALESCE);
+		
+		listener.updateData(batch(1));
+		waitForQueue(listener, 0);
+		listener.updateData(batch(2));
+		listener.updateData(batch(3, 4));
+		listener.updateData(batch(5));
+		assertEquals(2, listener.getCoalescedBatches());
+		
+		slowListener.release.countDown();
+		listener.close();
+		listener.awaitTermination();
+		
+		//all values are dispatched, but in fewer batches
+		assertArrayEquals(new double[] {1, 2, 3, 4, 5}, slowListener.values.stream().mapToDouble(Double::doubleValue).toArray(), epsilon);
+		assertEquals(2, slowListener.batches);
+	}
+	
+	@Test
+	public void testBlock() throws InterruptedException {
+		SlowListener slowListener = new SlowListener();
+		slowListener.release.countDown();
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		PhyphoxAsyncDataListener listener = experiment.addAsyncDataListener(slowListener, 1, PhyphoxOverflowPolicy.BLOCK);
+		
+		for (int i = 0; i < 100; i++) {
+			experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("time", new double[] {i}))));
+		}
+		experiment.removeDataListener(slowListener);
+		listener.awaitTermination();
+		
+		assertEquals(100, slowListener.batches);
+		assertEquals(100, listener.getDeliveredBatches());
+		assertEquals(0, listener.getDroppedBatches());
+	}
+	
+	@Test
+	public void testBlock_listenerUsesExperiment() throws InterruptedException {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		CountDownLatch release = new CountDownLatch(1);
+		List<Integer> sizes = new ArrayList<Integer>();
+		//a slow listener that reads the experiment's data (which needs the lock of the experiment)
+		PhyphoxAsyncDataListener listener = experiment.addAsyncDataListener(newData -> {
+			try {
+				release.await();
+			}
+			catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			sizes.add(experiment.getBufferData("time").size());
+		}, 1, PhyphoxOverflowPolicy.BLOCK);
+		
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("time", new double[] {1}))));
+		waitForQueue(listener, 0);
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("time", new double[] {2}))));
+		//the queue is full, so the next update blocks until the listener took a batch
+		Thread updateThread = new Thread(() -> experiment
+				.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("time", new double[] {3})))));
+		updateThread.start();
+		while (updateThread.getState() != Thread.State.WAITING) {
+			Thread.sleep(1);
+		}
+		//the blocked update doesn't hold the lock of the experiment
+		assertEquals(3, experiment.getBufferData("time").size());
+		release.countDown();
+		updateThread.join(10000);
+		assertFalse(updateThread.isAlive());
+		
+		experiment.removeDataListener(listener.getListener());
+		listener.awaitTermination();
+		assertEquals(3, sizes.size());
+		assertEquals(3, listener.getDeliveredBatches());
+	}
+	
+	@Test
+	public void testRemoveAsyncListener() throws InterruptedException {
+		SlowListener slowListener = new SlowListener();
+		slowListener.release.countDown();
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		PhyphoxAsyncDataListener listener = experiment.addAsyncDataListener(slowListener, 1, PhyphoxOverflowPolicy.BLOCK);
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("time", new double[] {1}))));
+		
+		//removing the asynchronous listener itself (instead of the listener it informs) also stops it's dispatch thread
+		experiment.removeDataListener(listener);
+		listener.awaitTermination();
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("time", new double[] {2}))));
+		assertEquals(1, slowListener.batches);
+		assertEquals(1, listener.getDeliveredBatches());
+	}
+}
\ No newline at end of file
@@ -2,6 +2,11 @@ package de.fz_juelich.phyphox_interface.data;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import org.junit.jupiter.api.Test;
 
 class PhyphoxBufferTest {
@@ -42,4 +47,137 @@ class PhyphoxBufferTest {
 		assertEquals(5, clone.getData().length);
 		assertArrayEquals(new double[] {1, 2, 3, 4, 5}, clone.getData(), epsilon);
 	}
+	
+	@Test
+	public void testAttachDataGrowing() {
+		PhyphoxBuffer buffer = new PhyphoxBuffer("buffer1", new double[0]);
+		for (int i = 0; i < 1000; i++) {
+			buffer.attachData(new double[] {2 * i, 2 * i + 1});
+		}
+		
+		final double epsilon = 1e-5;
+		assertEquals(2000, buffer.size());
+		assertEquals(0, buffer.get(0), epsilon);
+		assertEquals(1999, buffer.get(1999), epsilon);
+		assertThrows(IndexOutOfBoundsException.class, () -> buffer.get(2000));
+		assertArrayEquals(new double[] {1997, 1998, 1999}, buffer.getCopyFromIndex(1997).getData(), epsilon);
+		assertEquals(2000, buffer.getData().length);
+		
+		//getData() doesn't trim the storage array, so attaching again doesn't need to enlarge it
+		double[] storage = buffer.getStorageArray();
+		buffer.attachData(new double[] {2000});
+		assertEquals(2001, buffer.size());
+		assertEquals(2000, buffer.get(2000), epsilon);
+		buffer.getData();
+		buffer.attachData(new double[] {2001});
+		assertTrue(storage == buffer.getStorageArray());
+	}
+	
+	@Test
+	public void testAttachBuffer() {
+		PhyphoxBuffer buffer = new PhyphoxBuffer("buffer1", new double[] {1, 2});
+		PhyphoxBuffer attachment = new PhyphoxBuffer("buffer1", new double[] {3, 4, 0, 0}, 2);//only the first two values are used
+		buffer.attachData(attachment);
+		
+		final double epsilon = 1e-5;
+		assertEquals(2, attachment.size());
+		assertArrayEquals(new double[] {1, 2, 3, 4}, buffer.getData(), epsilon);
+	}
+	
+	@Test
+	public void testMaxSize() {
+		PhyphoxBuffer buffer = new PhyphoxBuffer("buffer1", new double[] {1, 2});
+		buffer.setMaxSize(3);
+		buffer.attachData(new double[] {3, 4});
+		buffer.attachData(new double[] {5});
+		
+		final double epsilon = 1e-5;
+		//the oldest values were overwritten
+		assertEquals(3, buffer.size());
+		assertEquals(2, buffer.getRemovedValues());
+		assertEquals(3, buffer.get(0), epsilon);
+		assertEquals(5, buffer.get(2), epsilon);
+		assertArrayEquals(new double[] {4, 5}, buffer.getCopyFromIndex(1).getData(), epsilon);
+		
+		//more new values than the maximum size
+		buffer.attachData(new double[] {6, 7, 8, 9});
+		assertEquals(6, buffer.getRemovedValues());
+		assertArrayEquals(new double[] {7, 8, 9}, buffer.getData(), epsilon);
+		
+		PhyphoxBuffer copy = new PhyphoxBuffer("buffer2", new double[0]);
+		copy.attachData(buffer);
+		assertArrayEquals(new double[] {7, 8, 9}, copy.getData(), epsilon);
+	}
+	
+	@Test
+	public void testRemoveOldest() {
+		PhyphoxBuffer buffer = new PhyphoxBuffer("buffer1", new double[] {1, 2, 3, 4});
+		buffer.removeOldest(3);
+		buffer.attachData(new double[] {5, 6});
+		
+		final double epsilon = 1e-5;
+		assertEquals(3, buffer.getRemovedValues());
+		assertArrayEquals(new double[] {4, 5, 6}, buffer.getData(), epsilon);
+		
+		buffer.removeOldest(10);
+		assertEquals(0, buffer.size());
+		assertEquals(6, buffer.getRemovedValues());
+	}
+	
+	@Test
+	public void testSpillStorage() throws IOException {
+		Path directory = Files.createTempDirectory("phyphox_test");
+		PhyphoxBuffer buffer = new PhyphoxBuffer("buffer1", new double[] {1, 2, 3});
+		buffer.setSpillStorage(new PhyphoxSpillStorage(directory, 4));
+		for (int i = 4; i <= 10; i++) {
+			buffer.attachData(new double[] {i});
+		}
+		buffer.attachData(new double[] {11, 12, 13, 14, 15, 16});
+		
+		final double epsilon = 1e-5;
+		//only the last 4 values are kept on the heap
+		assertEquals(16, buffer.size());
+		assertEquals(12, buffer.getSpilledSize());
+		for (int i = 0; i < 16; i++) {
+			assertEquals(i + 1, buffer.get(i), epsilon);
+		}
+		assertArrayEquals(new double[] {10, 11, 12, 13, 14, 15, 16}, buffer.getCopyFromIndex(9).getData(), epsilon);
+		
+		//the oldest values are removed from the file first
+		buffer.removeOldest(13);
+		assertArrayEquals(new double[] {14, 15, 16}, buffer.getData(), epsilon);
+		
+		//move the values back to the heap
+		buffer.attachData(new double[] {17, 18});
+		buffer.setSpillStorage(null);
+		assertEquals(0, buffer.getSpilledSize());
+		assertArrayEquals(new double[] {14, 15, 16, 17, 18}, buffer.getData(), epsilon);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			assertFalse(files.iterator().hasNext());
+		}
+		Files.delete(directory);
+	}
+	
+	@Test
+	public void testView() {
+		PhyphoxBuffer buffer = new PhyphoxBuffer("buffer1", new double[] {1, 2, 3, 4});
+		PhyphoxBufferView view = buffer.view(1, 3);
+		
+		final double epsilon = 1e-5;
+		assertEquals(2, view.size());
+		assertEquals(2, view.get(0), epsilon);
+		assertThrows(IndexOutOfBoundsException.class, () -> view.get(2));
+		double[] values = new double[3];
+		view.copyTo(values, 1);
+		assertArrayEquals(new double[] {0, 2, 3}, values, epsilon);
+		
+		//the view doesn't move when the oldest values are removed
+		buffer.attachData(new double[] {5});
+		buffer.removeOldest(1);
+		assertArrayEquals(new double[] {2, 3}, view.toArray(), epsilon);
+		assertEquals(5, view.stream().sum(), epsilon);
+		buffer.removeOldest(1);
+		assertThrows(IllegalStateException.class, () -> view.get(0));
+		assertEquals(0, buffer.viewFromIndex(10).size());
+	}
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+class PhyphoxDataLogTest {
+	
+	private static final double epsilon = 1e-5;
+	
+	@Test
+	public void testRecoverExperiment() throws IOException {
+		Path logFile = Files.createTempFile("phyphox_test", ".log");
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		experiment.setContinuesBuffer("time");
+		experiment.startLog(logFile, PhyphoxLogSyncPolicy.everyMillis(10));
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {1, 2, 3}), new PhyphoxBuffer("buffer_x", new double[] {10, 20, 30}))));
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {4}), new PhyphoxBuffer("buffer_x", new double[] {40}))));
+		experiment.stopLog();
+		
+		//a new experiment (e.g. after a crash) recovers the data from the log
+		PhyphoxExperiment recovered = new PhyphoxExperiment("time", "buffer_x");
+		recovered.setContinuesBuffer("time");
+		assertEquals(2, recovered.recoverFromLog(logFile));
+		assertArrayEquals(new double[] {1, 2, 3, 4}, recovered.getBufferData("time").getData(), epsilon);
+		assertArrayEquals(new double[] {10, 20, 30, 40}, recovered.getBufferData("buffer_x").getData(), epsilon);
+		//only the new data is requested next
+		assertEquals("time=4.0&buffer_x=4.0|time", recovered.createRequestForNewData().getAsString());
+		Files.delete(logFile);
+	}
+	
+	@Test
+	public void testWriteFailure() throws IOException, InterruptedException {
+		Path full = Paths.get("/dev/full");//a device that fails every write (only on Linux)
+		assumeTrue(Files.isWritable(full));
+		PhyphoxDataLog log = new PhyphoxDataLog(full, PhyphoxLogSyncPolicy.ALWAYS);
+		log.append(Arrays.asList(new PhyphoxBuffer("time", new double[] {1})));
+		//the sync fails, because the batch couldn't be written
+		assertThrows(ExecutionException.class, () -> log.sync().get());
+		//the log is stopped, but appending more data doesn't throw
+		log.append(Arrays.asList(new PhyphoxBuffer("time", new double[] {2})));
+		assertThrows(IOException.class, log::close);
+		
+		//the experiment keeps the received data if the log fails
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		experiment.startLog(full, PhyphoxLogSyncPolicy.ALWAYS);
+		for (int i = 0; i < 10; i++) {
+			experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("time", new double[] {i}))));
+		}
+		assertEquals(10, experiment.getBufferData("time").size());
+		assertThrows(IOException.class, experiment::stopLog);
+	}
+	
+	@Test
+	public void testIncompleteRecord() throws IOException, InterruptedException, ExecutionException {
+		Path logFile = Files.createTempFile("phyphox_test", ".log");
+		try (PhyphoxDataLog log = new PhyphoxDataLog(logFile, PhyphoxLogSyncPolicy.ALWAYS)) {
+			log.append(Arrays.asList(new PhyphoxBuffer("time", new double[] {1, 2})));
+			log.append(Arrays.asList(new PhyphoxBuffer("time", new double[] {3})));
+			log.sync().get();
+		}
+		//simulate a crash while the last record was written
+		long validLength = Files.size(logFile);
+		try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 42, 1, 2, 3}));
+		}
+		List<List<PhyphoxBuffer>> batches = PhyphoxDataLog.readBatches(logFile);
+		assertEquals(2, batches.size());
+		assertArrayEquals(new double[] {3}, batches.get(1).get(0).getData(), epsilon);
+		
+		//the incomplete record is removed when the log is opened again
+		try (PhyphoxDataLog log = new PhyphoxDataLog(logFile, PhyphoxLogSyncPolicy.NEVER)) {
+			assertEquals(validLength, Files.size(logFile));
+			log.append(Arrays.asList(new PhyphoxBuffer("time", new double[] {4})));
+		}
+		batches = PhyphoxDataLog.readBatches(logFile);
+		assertEquals(3, batches.size());
+		assertArrayEquals(new double[] {4}, batches.get(2).get(0).getData(), epsilon);
+		Files.delete(logFile);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,140 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.Test;
+
+class PhyphoxDataPublisherTest {
+	
+	private static final double epsilon = 1e-5;
+	
+	/**
+	 * Runs the tasks in the calling thread, so the test doesn't need to wait for the subscribers.
+	 */
+	private static final Executor directExecutor = Runnable::run;
+	
+	private static class TestSubscriber implements PhyphoxFlow.Subscriber<List<PhyphoxBuffer>> {
+		
+		private PhyphoxFlow.Subscription subscription;
+		private List<List<PhyphoxBuffer>> batches = new ArrayList<List<PhyphoxBuffer>>();
+		private boolean completed;
+		private Throwable error;
+		
+		@Override
+		public void onSubscribe(PhyphoxFlow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+		
+		@Override
+		public void onNext(List<PhyphoxBuffer> item) {
+			batches.add(item);
+		}
+		
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+		}
+		
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+	}
+	
+	private static void addData(PhyphoxExperiment experiment, double... values) {
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", values))));
+	}
+	
+	@Test
+	public void testRequestedBatches() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("buffer_x");
+		PhyphoxDataPublisher publisher = experiment.createDataPublisher(2, PhyphoxOverflowPolicy.DROP_OLDEST, directExecutor);
+		TestSubscriber slowSubscriber = new TestSubscriber();
+		TestSubscriber fastSubscriber = new TestSubscriber();
+		publisher.subscribe(slowSubscriber);
+		publisher.subscribe(fastSubscriber);
+		fastSubscriber.subscription.request(Long.MAX_VALUE);
+		
+		addData(experiment, 1);
+		addData(experiment, 2);
+		addData(experiment, 3);
+		
+		//the batches are only delivered when they are requested
+		assertEquals(0, slowSubscriber.batches.size());
+		assertEquals(3, fastSubscriber.batches.size());
+		slowSubscriber.subscription.request(1);
+		assertEquals(1, slowSubscriber.batches.size());
+		//the oldest batch was dropped
+		assertEquals(2, slowSubscriber.batches.get(0).get(0).get(0), epsilon);
+		
+		slowSubscriber.subscription.cancel();
+		assertEquals(1, publisher.getNumberOfSubscribers());
+		publisher.close();
+		assertTrue(fastSubscriber.completed);
+		assertEquals(0, publisher.getNumberOfSubscribers());
+	}
+	
+	@Test
+	public void testCoalesceAndComplete() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("buffer_x");
+		PhyphoxDataPublisher publisher = experiment.createDataPublisher(1, PhyphoxOverflowPolicy.COALESCE, directExecutor);
+		TestSubscriber subscriber = new TestSubscriber();
+		publisher.subscribe(subscriber);
+		
+		addData(experiment, 1);
+		addData(experiment, 2, 3);
+		publisher.close();
+		addData(experiment, 4);
+		//the subscriber is completed after the waiting batches were requested
+		assertFalse(subscriber.completed);
+		subscriber.subscription.request(5);
+		
+		assertEquals(1, subscriber.batches.size());
+		assertEquals(3, subscriber.batches.get(0).get(0).size());
+		assertTrue(subscriber.completed);
+	}
+	
+	@Test
+	public void testInvalidRequest() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("buffer_x");
+		PhyphoxDataPublisher publisher = experiment.createDataPublisher(1, PhyphoxOverflowPolicy.BLOCK, directExecutor);
+		TestSubscriber subscriber = new TestSubscriber();
+		publisher.subscribe(subscriber);
+		
+		subscriber.subscription.request(0);
+		assertTrue(subscriber.error instanceof IllegalArgumentException);
+		assertEquals(0, publisher.getNumberOfSubscribers());
+	}
+	
+	@Test
+	public void testBlockUntilClosed() throws InterruptedException {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("buffer_x");
+		PhyphoxDataPublisher publisher = experiment.createDataPublisher(1, PhyphoxOverflowPolicy.BLOCK, directExecutor);
+		TestSubscriber subscriber = new TestSubscriber();
+		publisher.subscribe(subscriber);
+		
+		addData(experiment, 1);
+		//the queue is full, so the next update blocks until the subscriber requests a batch (or the publisher is closed)
+		Thread updateThread = new Thread(() -> addData(experiment, 2));
+		updateThread.start();
+		while (updateThread.getState() != Thread.State.WAITING) {
+			Thread.sleep(1);
+		}
+		//the blocked update doesn't hold the lock of the experiment
+		assertEquals(2, experiment.getBufferData("buffer_x").size());
+		publisher.close();
+		updateThread.join(10000);
+		assertFalse(updateThread.isAlive());
+		
+		subscriber.subscription.request(5);
+		assertEquals(1, subscriber.batches.size());
+		assertTrue(subscriber.completed);
+	}
+}
\ No newline at end of file
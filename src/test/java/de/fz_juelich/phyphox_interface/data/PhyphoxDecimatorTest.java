@@ -0,0 +1,133 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PhyphoxDecimatorTest {
+	
+	@Test
+	public void testMinMax_fewPoints() {
+		PhyphoxDecimator decimator = new PhyphoxDecimator();
+		decimator.addData(new double[] {0, 1, 2, 3, 4}, new double[] {5, 5, 1, 7, 2});
+		
+		//all points are kept (even equal values)
+		List<PhyphoxBuffer> points = decimator.getMinMax(100);
+		assertArrayEquals(new double[] {0, 1, 2, 3, 4}, points.get(0).getData());
+		assertArrayEquals(new double[] {5, 5, 1, 7, 2}, points.get(1).getData());
+		assertEquals(PhyphoxDecimator.X_BUFFER_NAME, points.get(0).getName());
+		assertEquals(PhyphoxDecimator.Y_BUFFER_NAME, points.get(1).getName());
+		assertEquals(5, decimator.size());
+	}
+	
+	@Test
+	public void testMinMax_peaksAreKept() {
+		Random random = new Random(42);
+		PhyphoxDecimator decimator = new PhyphoxDecimator();
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < 100000; i++) {
+			double value = random.nextGaussian();
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			decimator.add(i, value);
+			
+			if (i % 9973 == 0) {
+				double[] x = decimator.getMinMax(500).get(0).getData();
+				double[] y = decimator.getMinMax(500).get(1).getData();
+				assertTrue(x.length <= 500);
+				assertEquals(min, Arrays.stream(y).min().getAsDouble());
+				assertEquals(max, Arrays.stream(y).max().getAsDouble());
+				//the last point is always included and the points are sorted
+				assertEquals(i, x[x.length - 1]);
+				for (int j = 1; j < x.length; j++) {
+					assertTrue(x[j - 1] < x[j]);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testLargestTriangleThreeBuckets() {
+		double[] x = new double[1000];
+		double[] y = new double[1000];
+		for (int i = 0; i < x.length; i++) {
+			x[i] = i;
+			y[i] = i == 500 ? 100 : Math.sin(i / 50.);
+		}
+		double[][] selected = PhyphoxDecimator.largestTriangleThreeBuckets(x, y, 50);
+		assertEquals(50, selected[0].length);
+		assertEquals(0, selected[0][0]);
+		assertEquals(999, selected[0][49]);
+		//the peak is selected
+		assertEquals(100, Arrays.stream(selected[1]).max().getAsDouble());
+		
+		//fewer points than the threshold
+		assertArrayEquals(x, PhyphoxDecimator.largestTriangleThreeBuckets(x, y, 1000)[0]);
+		
+		PhyphoxDecimator decimator = new PhyphoxDecimator();
+		decimator.addData(x, y);
+		List<PhyphoxBuffer> points = decimator.getLargestTriangleThreeBuckets(50);
+		assertEquals(50, points.get(0).size());
+		assertEquals(100, Arrays.stream(points.get(1).getData()).max().getAsDouble());
+	}
+	
+	@Test
+	public void testConnect() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "acc_x");
+		PhyphoxDecimator decimator = new PhyphoxDecimator();
+		decimator.connect(experiment, "time", "acc_x");
+		
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {0, 1, 2}), new PhyphoxBuffer("acc_x", new double[] {3, 4}))));
+		assertEquals(2, decimator.size());
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("acc_x", new double[] {5, 6}))));
+		assertEquals(3, decimator.size());
+		assertArrayEquals(new double[] {0, 1, 2}, decimator.getMinMax(10).get(0).getData());
+		assertArrayEquals(new double[] {3, 4, 5}, decimator.getMinMax(10).get(1).getData());
+		
+		//the decimator stays connected after it was cleared
+		decimator.clear();
+		assertEquals(0, decimator.size());
+		assertEquals(0, decimator.getLargestTriangleThreeBuckets(10).get(0).size());
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {3, 4}), new PhyphoxBuffer("acc_x", new double[] {7, 8}))));
+		assertArrayEquals(new double[] {3, 4}, decimator.getLargestTriangleThreeBuckets(10).get(0).getData());
+		assertArrayEquals(new double[] {7, 8}, decimator.getLargestTriangleThreeBuckets(10).get(1).getData());
+	}
+	
+	@Test
+	public void testDisconnect() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "acc_x");
+		PhyphoxExperiment otherExperiment = new PhyphoxExperiment("time", "acc_x");
+		PhyphoxDecimator decimator = new PhyphoxDecimator();
+		decimator.connect(experiment, "time", "acc_x");
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {0, 1}), new PhyphoxBuffer("acc_x", new double[] {2, 3}))));
+		assertEquals(2, decimator.size());
+		
+		decimator.disconnect();
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {2}), new PhyphoxBuffer("acc_x", new double[] {4}))));
+		assertEquals(2, decimator.size());
+		
+		//connecting to another experiment disconnects the last one
+		decimator.connect(experiment, "time", "acc_x");
+		decimator.connect(otherExperiment, "acc_x", "time");
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {3}), new PhyphoxBuffer("acc_x", new double[] {5}))));
+		otherExperiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {0}), new PhyphoxBuffer("acc_x", new double[] {6}))));
+		assertEquals(3, decimator.size());
+		assertArrayEquals(new double[] {0, 1, 6}, decimator.getMinMax(10).get(0).getData());
+		assertThrows(IllegalStateException.class, () -> decimator.connect(experiment, "time", "non_existing_buffer_name"));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,184 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+class PhyphoxExperimentFleetTest {
+	
+	private static final long TIMEOUT_SECONDS = 10;
+	
+	/**
+	 * Counts the polls of the experiments of a test that are executed at the same time.
+	 */
+	private static class ConcurrentPolls {
+		
+		private AtomicInteger running = new AtomicInteger();
+		private AtomicInteger max = new AtomicInteger();
+	}
+	
+	/**
+	 * An experiment that doesn't send requests but counts the polls (and the polls that are executed at the same time).
+	 */
+	private static class CountingExperiment extends PhyphoxExperiment {
+		
+		private final ConcurrentPolls concurrentPolls;
+		private final CountDownLatch firstPolls;//counted down by the first polls
+		private AtomicInteger polls = new AtomicInteger();
+		
+		public CountingExperiment(ConcurrentPolls concurrentPolls, int firstPolls) {
+			super("time");
+			this.concurrentPolls = concurrentPolls;
+			this.firstPolls = new CountDownLatch(firstPolls);
+		}
+		
+		@Override
+		protected int pollData() {
+			int concurrent = concurrentPolls.running.incrementAndGet();
+			concurrentPolls.max.accumulateAndGet(concurrent, Math::max);
+			try {
+				Thread.sleep(2);
+			}
+			catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			finally {
+				concurrentPolls.running.decrementAndGet();
+			}
+			polls.incrementAndGet();
+			firstPolls.countDown();
+			return 0;
+		}
+		
+		public void awaitFirstPolls() throws InterruptedException {
+			assertTrue(firstPolls.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		}
+	}
+	
+	/**
+	 * Wait until the condition is true (or fail after the timeout).
+	 */
+	private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < deadline);
+			Thread.sleep(1);
+		}
+	}
+	
+	@Test
+	public void testPollExperiments() throws InterruptedException {
+		ConcurrentPolls concurrentPolls = new ConcurrentPolls();
+		PhyphoxExperimentFleet fleet = new PhyphoxExperimentFleet(4, 2);
+		List<CountingExperiment> experiments = new ArrayList<CountingExperiment>();
+		for (int i = 0; i < 20; i++) {
+			CountingExperiment experiment = new CountingExperiment(concurrentPolls, 3);
+			fleet.register(experiment, 5);
+			experiments.add(experiment);
+		}
+		CountingExperiment notStarted = new CountingExperiment(concurrentPolls, 1);
+		fleet.register(notStarted, 5);
+		
+		for (CountingExperiment experiment : experiments) {
+			assertEquals(0, experiment.polls.get());
+			experiment.restartDataConnection();
+			assertTrue(experiment.isDataConnectionRunning());
+		}
+		for (CountingExperiment experiment : experiments) {
+			experiment.awaitFirstPolls();
+		}
+		fleet.shutdown();
+		
+		assertEquals(0, fleet.size());
+		//registered experiments are not polled before the data connection is started
+		assertEquals(0, notStarted.polls.get());
+		assertTrue(concurrentPolls.max.get() <= 2);
+	}
+	
+	@Test
+	public void testStopDataConnection() throws InterruptedException {
+		ConcurrentPolls concurrentPolls = new ConcurrentPolls();
+		PhyphoxExperimentFleet fleet = new PhyphoxExperimentFleet();
+		CountingExperiment experiment = new CountingExperiment(concurrentPolls, 3);
+		fleet.register(experiment, 5);
+		experiment.restartDataConnection();
+		experiment.awaitFirstPolls();
+		
+		experiment.stopDataConnection();
+		assertFalse(experiment.isDataConnectionRunning());
+		//another experiment is polled several times (so a poll that was running when the connection was stopped is finished)
+		CountingExperiment other = new CountingExperiment(concurrentPolls, 5);
+		fleet.register(other, 5);
+		other.restartDataConnection();
+		other.awaitFirstPolls();
+		int polls = experiment.polls.get();
+		
+		awaitCondition(() -> other.polls.get() >= 10);
+		assertEquals(polls, experiment.polls.get());
+		fleet.shutdown();
+	}
+	
+	@Test
+	public void testRegisterRunningExperiment() throws InterruptedException {
+		PhyphoxExperimentFleet fleet = new PhyphoxExperimentFleet();
+		Set<Thread> pollingThreads = ConcurrentHashMap.newKeySet();
+		CountDownLatch requestAnswered = new CountDownLatch(1);
+		CountingExperiment experiment = new CountingExperiment(new ConcurrentPolls(), 1) {
+			
+			@Override
+			protected int pollData() {
+				pollingThreads.add(Thread.currentThread());
+				if (Thread.currentThread().isInterrupted()) {
+					//a request of the update thread that is still sent after the data connection was stopped
+					while (requestAnswered.getCount() > 0) {
+						Thread.yield();
+					}
+				}
+				return super.pollData();
+			}
+		};
+		//the experiment is polled by it's own update thread first
+		experiment.restartDataConnection();
+		experiment.awaitFirstPolls();
+		
+		Thread answerRequest = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+			}
+			catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			requestAnswered.countDown();
+		});
+		answerRequest.start();
+		fleet.register(experiment, 5);
+		//the update thread of the experiment has ended before the fleet polls the data
+		for (Thread thread : pollingThreads) {
+			assertTrue(thread.getName().startsWith("phyphox_fleet_thread") || !thread.isAlive());
+		}
+		assertTrue(experiment.isDataConnectionRunning());
+		fleet.shutdown();
+	}
+	
+	@Test
+	public void testRegisterTwice() {
+		PhyphoxExperimentFleet fleet = new PhyphoxExperimentFleet();
+		CountingExperiment experiment = new CountingExperiment(new ConcurrentPolls(), 1);
+		fleet.register(experiment, 5);
+		
+		assertThrows(IllegalStateException.class, () -> fleet.register(experiment, 5));
+		fleet.shutdown();
+	}
+}
\ No newline at end of file
@@ -2,18 +2,26 @@ package de.fz_juelich.phyphox_interface.data;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 import org.mockito.Matchers;
 
+import de.fz_juelich.phyphox_interface.connection.PhyphoxConnectionException;
 import de.fz_juelich.phyphox_interface.connection.PhyphoxConnectionSettings;
 import de.fz_juelich.phyphox_interface.connection.PhyphoxDataRequest;
 
@@ -112,6 +120,51 @@ class PhyphoxExperimentTest {
 		assertEquals("buffer_x=full&buffer_y=full", requestText);
 	}
 	
+	@Test
+	public void testCreateRequest_incrementalUpdate() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		experiment.setContinuesBuffer("time");
+		
+		//no data received yet, so the first request is a full update
+		assertEquals("time=full&buffer_x=full", experiment.createRequestForNewData().getAsString());
+		
+		PhyphoxBuffer time = new PhyphoxBuffer("time", new double[] {1, 2, 3});
+		PhyphoxBuffer bufferX = new PhyphoxBuffer("buffer_x", new double[] {42, 43, 44});
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(time, bufferX)));
+		
+		//only the data after the last received time is requested
+		assertEquals("time=3.0&buffer_x=3.0|time", experiment.createRequestForNewData().getAsString());
+	}
+	
+	@Test
+	public void testCreateRequest_incrementalUpdateWithAddedContinuesBuffer() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("buffer_x");
+		experiment.setContinuesBuffer("time");
+		
+		assertEquals(2, experiment.getAllData().size());
+		
+		PhyphoxBuffer time = new PhyphoxBuffer("time", new double[] {0.5, 1.5});
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(time)));
+		
+		assertEquals("buffer_x=1.5|time&time=1.5", experiment.createRequestForNewData().getAsString());
+	}
+	
+	@Test
+	public void testAddNewDataToBuffers_incrementalUpdate() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		experiment.setContinuesBuffer("time");
+		
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {1, 2}), new PhyphoxBuffer("buffer_x", new double[] {42, 43}))));
+		//the next (incremental) response only contains the new values
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {3}), new PhyphoxBuffer("buffer_x", new double[] {44}))));
+		
+		assertArrayEquals(new double[] {1, 2, 3}, experiment.getBufferData("time").getData(), epsilon);
+		assertArrayEquals(new double[] {42, 43, 44}, experiment.getBufferData("buffer_x").getData(), epsilon);
+		assertEquals("time=3.0&buffer_x=3.0|time", experiment.createRequestForNewData().getAsString());
+	}
+	
 	@Test
 	public void testGetNewData() {
 		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
@@ -159,6 +212,39 @@ class PhyphoxExperimentTest {
 		assertArrayEquals(new double[] {1, 2, 3}, bufferNewData.getData(), epsilon);
 	}
 	
+	@Test
+	public void testRetentionPolicy_sampleCount() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		experiment.setRetentionPolicy(PhyphoxRetentionPolicy.bySampleCount(5));
+		
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {1, 2, 3}))));
+		assertArrayEquals(new double[] {1, 2, 3}, experiment.getNewBufferData("buffer_x").getData(), epsilon);
+		
+		//the oldest values are overwritten, but the new data is still found
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {4, 5, 6, 7}))));
+		assertArrayEquals(new double[] {4, 5, 6, 7}, experiment.getNewBufferData("buffer_x").getData(), epsilon);
+		assertArrayEquals(new double[] {3, 4, 5, 6, 7}, experiment.getBufferData("buffer_x").getData(), epsilon);
+		assertEquals(2, experiment.getBufferData("buffer_x").getRemovedValues());
+	}
+	
+	@Test
+	public void testRetentionPolicy_timeWindow() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		assertThrows(IllegalStateException.class, () -> experiment.setRetentionPolicy(PhyphoxRetentionPolicy.byTimeWindow(2)));
+		experiment.setContinuesBuffer("time");
+		experiment.setRetentionPolicy(PhyphoxRetentionPolicy.byTimeWindow(2));
+		
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {1, 2, 3}), new PhyphoxBuffer("buffer_x", new double[] {10, 20, 30}))));
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {4, 5}), new PhyphoxBuffer("buffer_x", new double[] {40, 50}))));
+		
+		//only the values of the last two seconds are kept
+		assertArrayEquals(new double[] {3, 4, 5}, experiment.getBufferData("time").getData(), epsilon);
+		assertArrayEquals(new double[] {40, 50}, experiment.getNewBufferData("buffer_x").getData(), epsilon);
+		assertArrayEquals(new double[] {30, 40, 50}, experiment.getBufferData("buffer_x").getData(), epsilon);
+	}
+	
 	@Test
 	public void testRealConstructor() {
 		//use the real constructor to build a PhyphoxData object
@@ -167,6 +253,133 @@ class PhyphoxExperimentTest {
 		new PhyphoxExperiment(new PhyphoxConnectionSettings("1.1.1.1", 42), bufferNames, 1000);
 	}
 	
+	@Test
+	public void testPipelinedUpdates() throws InterruptedException {
+		//an experiment that receives one new time value with every update
+		AtomicInteger updates = new AtomicInteger();
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time") {
+			
+			@Override
+			protected List<PhyphoxBuffer> fetchData() {
+				double time = updates.incrementAndGet();
+				return new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("time", new double[] {time})));
+			}
+		};
+		experiment.setPipelinedUpdates(2);
+		
+		experiment.restartDataConnection();
+		Thread.sleep(100);
+		experiment.stopDataConnection();
+		Thread.sleep(100);//wait for the received data to be added to the buffers
+		
+		assertFalse(experiment.isDataConnectionRunning());
+		//all received data was added to the buffers in the order it was received
+		double[] time = experiment.getBufferData("time").getData();
+		assertEquals(updates.get(), time.length);
+		for (int i = 0; i < time.length; i++) {
+			assertEquals(i + 1, time[i], epsilon);
+		}
+	}
+	
+	@Test
+	public void testPipelinedUpdates_failingListener() throws InterruptedException {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time") {
+			
+			@Override
+			protected List<PhyphoxBuffer> fetchData() {
+				return new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("time", new double[] {1})));
+			}
+		};
+		experiment.addDataListener(newData -> {
+			throw new IllegalStateException("The listener failed.");
+		});
+		experiment.setPipelinedUpdates(1);
+		
+		//the dispatch thread ends with the listener's exception, so the update thread has to end too (instead of waiting for space in the queue)
+		experiment.restartDataConnection();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (experiment.isDataConnectionRunning()) {
+			assertTrue(System.nanoTime() < deadline);
+			Thread.sleep(1);
+		}
+	}
+	
+	@Test
+	public void testPipelinedUpdates_failingListenerKeepsData() throws InterruptedException {
+		AtomicInteger updates = new AtomicInteger();
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time") {
+			
+			@Override
+			protected List<PhyphoxBuffer> fetchData() {
+				double time = updates.incrementAndGet();
+				return new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("time", new double[] {time})));
+			}
+		};
+		experiment.addDataListener(newData -> {
+			throw new IllegalStateException("The listener failed.");
+		});
+		experiment.setPipelinedUpdates(4);
+		
+		experiment.restartDataConnection();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (experiment.isDataConnectionRunning()) {
+			assertTrue(System.nanoTime() < deadline);
+			Thread.sleep(1);
+		}
+		
+		//the data that was received after the dispatch thread ended is added by the update thread (the phone won't send it again)
+		while (experiment.getBufferData("time").getData().length < updates.get()) {
+			assertTrue(System.nanoTime() < deadline);
+			Thread.sleep(1);
+		}
+		double[] time = experiment.getBufferData("time").getData();
+		assertEquals(updates.get(), time.length);
+		for (int i = 0; i < time.length; i++) {
+			assertEquals(i + 1, time[i], epsilon);
+		}
+	}
+	
+	@Test
+	public void testPipelinedUpdates_restart() throws InterruptedException {
+		AtomicInteger updates = new AtomicInteger();
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time") {
+			
+			@Override
+			protected List<PhyphoxBuffer> fetchData() {
+				double time = updates.incrementAndGet();
+				return new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("time", new double[] {time})));
+			}
+			
+			@Override
+			protected synchronized void addNewDataToBuffers(List<PhyphoxBuffer> newData) {
+				//a slow dispatch thread, that still adds data when the connection is restarted
+				try {
+					Thread.sleep(1);
+				}
+				catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+				super.addNewDataToBuffers(newData);
+			}
+		};
+		experiment.setPipelinedUpdates(4);
+		
+		for (int i = 0; i < 10; i++) {
+			experiment.restartDataConnection();
+		}
+		experiment.stopDataConnection();
+		//wait for the last dispatch thread (a restart joins it)
+		experiment.setPipelinedUpdates(0);
+		experiment.restartDataConnection();
+		experiment.stopDataConnection();
+		
+		//the data of the old and the new dispatch threads was added in order
+		double[] time = experiment.getBufferData("time").getData();
+		for (int i = 1; i < time.length; i++) {
+			assertTrue(time[i - 1] < time[i]);
+		}
+	}
+	
 	@Test
 	public void testListenerPattern() {
 		PhyphoxDataListener listener = mock(PhyphoxDataListener.class);
@@ -199,4 +412,255 @@ class PhyphoxExperimentTest {
 		//the update method is still called only once
 		verify(listener, times(1)).updateData(Matchers.anyListOf(PhyphoxBuffer.class));
 	}
+	
+	@Test
+	public void testDataViewListener() {
+		List<PhyphoxBufferView> received = new ArrayList<PhyphoxBufferView>();
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		experiment.addDataViewListener(newData -> received.addAll(newData));
+		PhyphoxDataListener listener = mock(PhyphoxDataListener.class);
+		experiment.addDataListener(listener);
+		
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {1, 2, 3}))));
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {4, 5}))));
+		
+		//both kinds of listeners get the new data
+		verify(listener, times(2)).updateData(Matchers.anyListOf(PhyphoxBuffer.class));
+		assertEquals(4, received.size());
+		PhyphoxBufferView first = received.get(1);
+		PhyphoxBufferView second = received.get(3);
+		assertEquals("buffer_x", second.getName());
+		//the views are not changed by the new data
+		assertArrayEquals(new double[] {1, 2, 3}, first.toArray(), epsilon);
+		assertArrayEquals(new double[] {4, 5}, second.toArray(), epsilon);
+		assertEquals(9, second.stream().sum(), epsilon);
+	}
+	
+	@Test
+	public void testReadCursors() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		experiment.setRetentionPolicy(PhyphoxRetentionPolicy.bySampleCount(4));
+		PhyphoxReadCursor cursor1 = experiment.createReadCursor();
+		PhyphoxReadCursor cursor2 = experiment.createReadCursor();
+		
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {1, 2, 3}))));
+		assertArrayEquals(new double[] {1, 2, 3}, experiment.getNewBufferData(cursor1, "buffer_x").getData(), epsilon);
+		
+		//the cursors don't change the new data of each other (or of the experiment)
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {4, 5}))));
+		assertArrayEquals(new double[] {4, 5}, experiment.getNewBufferData(cursor1, "buffer_x").getData(), epsilon);
+		assertEquals(0, experiment.getNewBufferView(cursor1, "buffer_x").size());
+		//the values that were removed before they were read are lost
+		assertArrayEquals(new double[] {2, 3, 4, 5}, experiment.getNewData(cursor2).get(1).getData(), epsilon);
+		
+		//the cursors continue after a buffer was cleared
+		experiment.clearBuffer("buffer_x");
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {6}))));
+		assertArrayEquals(new double[] {6}, experiment.getNewDataViews(cursor1).get(1).toArray(), epsilon);
+		
+		PhyphoxReadCursor otherCursor = new PhyphoxExperiment("time").createReadCursor();
+		assertThrows(IllegalArgumentException.class, () -> experiment.getNewData(otherCursor));
+	}
+	
+	@Test
+	public void testPollData_fullUpdates() throws PhyphoxConnectionException {
+		//without a continues buffer the phone sends all it's data on every update
+		int[] phoneSamples = {100};
+		PhyphoxExperiment experiment = new PhyphoxExperiment("buffer_x") {
+			
+			@Override
+			protected List<PhyphoxBuffer> fetchData() {
+				return new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[phoneSamples[0]])));
+			}
+		};
+		assertEquals(100, experiment.pollData());
+		//only the samples that were recorded since the last update are new
+		phoneSamples[0] = 150;
+		assertEquals(50, experiment.pollData());
+		assertEquals(0, experiment.pollData());
+		//the data of the phone was cleared
+		phoneSamples[0] = 20;
+		assertEquals(20, experiment.pollData());
+		
+		//the adaptive update rate is not pushed to the minimum by the growing data (0.5 samples per millisecond, 50 samples per update)
+		PhyphoxUpdateTimer timer = new PhyphoxUpdateTimer(PhyphoxUpdateMode.FIXED_DELAY, PhyphoxMissedUpdatePolicy.SKIP, 100,
+				new PhyphoxAdaptiveUpdateRate(10, 1000, 50));
+		long millis = TimeUnit.MILLISECONDS.toNanos(1);
+		for (int i = 0; i < 10; i++) {
+			phoneSamples[0] += 50;
+			timer.reportUpdate(i * 100 * millis, i * 100 * millis + 5 * millis, experiment.pollData());
+		}
+		assertEquals(100, timer.getUpdateRate());
+	}
+	
+	@Test
+	public void testSnapshots() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		experiment.setRetentionPolicy(PhyphoxRetentionPolicy.bySampleCount(3));
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {1, 2}))));
+		
+		PhyphoxExperimentSnapshot snapshot1 = experiment.getSnapshot();
+		assertArrayEquals(new double[] {1, 2}, snapshot1.getBuffer("buffer_x").toArray(), epsilon);
+		
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {3}))));
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {4, 5}))));
+		PhyphoxExperimentSnapshot snapshot2 = experiment.getSnapshot();
+		PhyphoxBufferSnapshot bufferX = snapshot2.getBuffer("buffer_x");
+		assertTrue(snapshot2.getVersion() > snapshot1.getVersion());
+		assertArrayEquals(new double[] {3, 4, 5}, bufferX.toArray(), epsilon);
+		assertEquals(2, bufferX.getRemovedValues());
+		assertEquals(4, bufferX.get(1), epsilon);
+		assertEquals(12, bufferX.stream().sum(), epsilon);
+		//the older snapshot is not changed
+		assertArrayEquals(new double[] {1, 2}, snapshot1.getBuffer("buffer_x").toArray(), epsilon);
+		
+		experiment.clearBuffer("buffer_x");
+		assertEquals(0, experiment.getSnapshot().getBuffer("buffer_x").size());
+		assertThrows(IllegalStateException.class, () -> experiment.getSnapshot().getBuffer("non_existing_buffer_name"));
+	}
+	
+	@Test
+	public void testSnapshots_clearAllBuffers() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("time", new double[] {1, 2}),
+				new PhyphoxBuffer("buffer_x", new double[] {3, 4}))));
+		PhyphoxExperimentSnapshot snapshot = experiment.getSnapshot();
+		
+		//all buffers are cleared in a single snapshot
+		experiment.clearAllBuffers();
+		PhyphoxExperimentSnapshot clearedSnapshot = experiment.getSnapshot();
+		assertEquals(snapshot.getVersion() + 1, clearedSnapshot.getVersion());
+		assertEquals(0, clearedSnapshot.getBuffer("time").size());
+		assertEquals(0, clearedSnapshot.getBuffer("buffer_x").size());
+	}
+	
+	@Test
+	public void testSnapshots_spillStorage() throws IOException {
+		Path directory = Files.createTempDirectory("phyphox_test");
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		experiment.setSpillStorage("buffer_x", new PhyphoxSpillStorage(directory, 3));
+		experiment.getSnapshot();
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {1, 2}))));
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {3, 4, 5, 6}))));
+		
+		//only the values on the heap are part of the snapshot
+		PhyphoxBufferSnapshot bufferX = experiment.getSnapshot().getBuffer("buffer_x");
+		assertEquals(3, experiment.getBufferData("buffer_x").getSpilledSize());
+		assertArrayEquals(new double[] {4, 5, 6}, bufferX.toArray(), epsilon);
+		assertEquals(3, bufferX.getRemovedValues());
+		
+		experiment.setSpillStorage("buffer_x", null);
+		Files.delete(directory);
+	}
+	
+	@Test
+	public void testSnapshots_concurrentReaders() throws InterruptedException {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		experiment.setRetentionPolicy(PhyphoxRetentionPolicy.bySampleCount(100));
+		experiment.getSnapshot();
+		AtomicInteger inconsistentSnapshots = new AtomicInteger();
+		Thread reader = new Thread(() -> {
+			while (!Thread.currentThread().isInterrupted()) {
+				PhyphoxExperimentSnapshot snapshot = experiment.getSnapshot();
+				PhyphoxBufferSnapshot time = snapshot.getBuffer("time");
+				PhyphoxBufferSnapshot values = snapshot.getBuffer("buffer_x");
+				if (time.size() != values.size() || time.getRemovedValues() != values.getRemovedValues()) {
+					inconsistentSnapshots.incrementAndGet();
+				}
+				double[] timeValues = time.toArray();
+				for (int i = 1; i < timeValues.length; i++) {
+					if (timeValues[i] != timeValues[i - 1] + 1) {
+						inconsistentSnapshots.incrementAndGet();
+					}
+				}
+			}
+		});
+		reader.start();
+		for (int i = 0; i < 2000; i++) {
+			PhyphoxBuffer time = new PhyphoxBuffer("time", new double[] {2 * i, 2 * i + 1});
+			PhyphoxBuffer values = new PhyphoxBuffer("buffer_x", new double[] {i, i});
+			experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(time, values)));
+		}
+		reader.interrupt();
+		reader.join();
+		
+		assertEquals(0, inconsistentSnapshots.get());
+		assertEquals(100, experiment.getSnapshot().getBuffer("time").size());
+		assertEquals(3999, experiment.getSnapshot().getBuffer("time").get(99), epsilon);
+	}
+	
+	@Test
+	public void testBatchListener() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		experiment.setRetentionPolicy(PhyphoxRetentionPolicy.bySampleCount(4));
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {1, 2}))));
+		
+		List<double[]> received = new ArrayList<double[]>();
+		List<PhyphoxDataBatch> batches = new ArrayList<PhyphoxDataBatch>();
+		experiment.addBatchListener(batch -> {
+			int bufferX = batch.getBufferId("buffer_x");
+			double[] values = new double[batch.getLength(bufferX)];
+			System.arraycopy(batch.getArray(bufferX), batch.getOffset(bufferX), values, 0, values.length);
+			received.add(values);
+			batches.add(batch);
+			assertEquals(0, batch.getLength(batch.getBufferId("time")));
+		});
+		
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {3}))));
+		//the new values are split by the end of the ring buffer
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {4, 5, 6}))));
+		
+		assertEquals(2, received.size());
+		assertArrayEquals(new double[] {3}, received.get(0), epsilon);
+		assertArrayEquals(new double[] {4, 5, 6}, received.get(1), epsilon);
+		//the batch is reused
+		assertTrue(batches.get(0) == batches.get(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> batches.get(0).getLength(2));
+	}
+	
+	@Test
+	public void testBufferHandles() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		PhyphoxBufferHandle bufferX = experiment.getBufferHandle("buffer_x");
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {1, 2}))));
+		
+		assertEquals("buffer_x", bufferX.getName());
+		assertArrayEquals(new double[] {1, 2}, experiment.getBufferData(bufferX).getData(), epsilon);
+		PhyphoxReadCursor cursor = experiment.createReadCursor();
+		assertArrayEquals(new double[] {1, 2}, experiment.getNewBufferView(cursor, bufferX).toArray(), epsilon);
+		experiment.clearBuffer(bufferX);
+		assertEquals(0, experiment.getBufferData("buffer_x").size());
+		
+		//the continues buffer is added to the buffers
+		experiment.setContinuesBuffer("new_time");
+		assertEquals("new_time", experiment.getBufferData(experiment.getBufferHandle("new_time")).getName());
+		assertThrows(IllegalStateException.class, () -> experiment.getBufferHandle("non_existing_buffer_name"));
+		PhyphoxBufferHandle otherHandle = new PhyphoxExperiment("buffer_x").getBufferHandle("buffer_x");
+		assertThrows(IllegalArgumentException.class, () -> experiment.getBufferData(otherHandle));
+	}
+	
+	@Test
+	public void testViewsInTimeRange() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		assertThrows(IllegalStateException.class, () -> experiment.getViewsInTimeRange(0, 1));
+		experiment.setContinuesBuffer("time");
+		experiment.setRetentionPolicy(PhyphoxRetentionPolicy.bySampleCount(3000));
+		for (int i = 0; i < 5; i++) {
+			double[] time = new double[1000];
+			double[] values = new double[1000];
+			for (int j = 0; j < time.length; j++) {
+				time[j] = (i * 1000 + j) * 0.01;
+				values[j] = i * 1000 + j;
+			}
+			experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("time", time), new PhyphoxBuffer("buffer_x", values))));
+		}
+		
+		List<PhyphoxBufferView> views = experiment.getViewsInTimeRange(25, 25.05);
+		assertEquals(2, views.size());
+		assertArrayEquals(new double[] {25, 25.01, 25.02, 25.03, 25.04, 25.05}, views.get(0).toArray(), epsilon);
+		assertArrayEquals(new double[] {2500, 2501, 2502, 2503, 2504, 2505}, views.get(1).toArray(), epsilon);
+		//the removed values are not found
+		assertEquals(2000, experiment.getViewInTimeRange("buffer_x", 0, 20.005).get(0), epsilon);
+		assertEquals(0, experiment.getViewInTimeRange(experiment.getBufferHandle("buffer_x"), 60, 70).size());
+	}
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+class PhyphoxMappedStorageTest {
+	
+	private static final double epsilon = 1e-5;
+	
+	@Test
+	public void testAppendOverSegments() throws IOException {
+		Path directory = Files.createTempDirectory("phyphox_test");
+		PhyphoxMappedStorage storage = new PhyphoxMappedStorage(directory, "time", 4);
+		storage.append(new double[] {1, 2, 3}, 0, 3);
+		storage.append(new double[] {0, 4, 5, 6, 7, 8, 9, 10}, 1, 7);
+		
+		assertEquals(10, storage.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i + 1, storage.get(i), epsilon);
+		}
+		double[] values = new double[6];
+		storage.copyValues(2, values, 0, 6);
+		assertArrayEquals(new double[] {3, 4, 5, 6, 7, 8}, values, epsilon);
+		
+		storage.removeOldest(5);
+		assertEquals(5, storage.size());
+		assertEquals(6, storage.get(0), epsilon);
+		
+		storage.close();
+		assertFalse(Files.exists(storage.getFile()));
+		//the mapped values can still be read
+		assertEquals(10, storage.get(4), epsilon);
+		assertThrows(IllegalStateException.class, () -> storage.append(new double[] {11, 12, 13}, 0, 3));
+		Files.delete(directory);
+	}
+	
+	@Test
+	public void testSlidingWindowReusesSegments() throws IOException {
+		Path directory = Files.createTempDirectory("phyphox_test");
+		PhyphoxMappedStorage storage = new PhyphoxMappedStorage(directory, "time", 4);
+		//keep a window of 5 values, that is moved through 100 values
+		for (int i = 1; i <= 100; i++) {
+			storage.append(new double[] {i}, 0, 1);
+			if (storage.size() > 5) {
+				storage.removeOldest(1);
+			}
+		}
+		assertEquals(5, storage.size());
+		for (int i = 0; i < 5; i++) {
+			assertEquals(96 + i, storage.get(i), epsilon);
+		}
+		double[] values = new double[5];
+		storage.copyValues(0, values, 0, 5);
+		assertArrayEquals(new double[] {96, 97, 98, 99, 100}, values, epsilon);
+		//the window never covers more than 3 segments, so the file doesn't grow
+		assertTrue(Files.size(storage.getFile()) <= 3 * 4 * Double.BYTES);
+		
+		storage.close();
+		assertFalse(Files.exists(storage.getFile()));
+		Files.delete(directory);
+	}
+}
\ No newline at end of file
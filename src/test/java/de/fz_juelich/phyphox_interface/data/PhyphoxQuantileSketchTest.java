@@ -0,0 +1,137 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PhyphoxQuantileSketchTest {
+	
+	/**
+	 * The maximum rank error that is accepted in the tests (about 2.5 times the expected error of the default sketch size).
+	 */
+	private static final double RANK_ERROR = 0.02;
+	
+	/**
+	 * Check that the estimated quantiles of the sketch have the expected ranks in the (sorted) values.
+	 */
+	private static void assertQuantiles(double[] sortedValues, PhyphoxQuantileSketch sketch) {
+		for (double quantile = 0.01; quantile < 1; quantile += 0.01) {
+			double estimate = sketch.getQuantile(quantile);
+			int index = Arrays.binarySearch(sortedValues, estimate);
+			assertTrue(index >= 0);
+			assertEquals(quantile, (double) index / sortedValues.length, RANK_ERROR);
+		}
+	}
+	
+	@Test
+	public void testQuantiles() {
+		Random random = new Random(42);
+		PhyphoxQuantileSketch sketch = new PhyphoxQuantileSketch(PhyphoxQuantileSketch.DEFAULT_K, 42);
+		assertEquals(Double.NaN, sketch.getQuantile(0.5));
+		double[] values = new double[100000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextGaussian();
+			sketch.add(values[i]);
+		}
+		Arrays.sort(values);
+		
+		assertEquals(values.length, sketch.getCount());
+		assertEquals(values[0], sketch.getQuantile(0));
+		assertEquals(values[values.length - 1], sketch.getQuantile(1));
+		assertQuantiles(values, sketch);
+		assertEquals(0.5, sketch.getRank(0), RANK_ERROR);
+		//the memory is bounded
+		assertTrue(sketch.getRetainedValues() < 4 * PhyphoxQuantileSketch.DEFAULT_K);
+		
+		assertThrows(IllegalArgumentException.class, () -> sketch.getQuantile(1.5));
+		assertThrows(IllegalArgumentException.class, () -> new PhyphoxQuantileSketch(2));
+	}
+	
+	@Test
+	public void testMerge() {
+		Random random = new Random(42);
+		PhyphoxQuantileSketch[] phones = new PhyphoxQuantileSketch[5];
+		double[] values = new double[50000];
+		for (int phone = 0; phone < phones.length; phone++) {
+			phones[phone] = new PhyphoxQuantileSketch(PhyphoxQuantileSketch.DEFAULT_K, phone);
+			for (int i = 0; i < values.length / phones.length; i++) {
+				//every phone measures other values
+				double value = phone + random.nextDouble();
+				values[phone * values.length / phones.length + i] = value;
+				phones[phone].add(value);
+			}
+		}
+		PhyphoxQuantileSketch fleet = new PhyphoxQuantileSketch(PhyphoxQuantileSketch.DEFAULT_K, 42);
+		for (PhyphoxQuantileSketch phone : phones) {
+			fleet.merge(phone);
+		}
+		Arrays.sort(values);
+		
+		assertEquals(values.length, fleet.getCount());
+		assertEquals(values[0], fleet.getMin());
+		assertEquals(values[values.length - 1], fleet.getMax());
+		assertQuantiles(values, fleet);
+		//the merged sketches are not changed
+		assertEquals(values.length / phones.length, phones[0].getCount());
+	}
+	
+	@Test
+	public void testWindowQuantiles() {
+		PhyphoxQuantiles quantiles = new PhyphoxQuantiles("x", 0, PhyphoxRetentionPolicy.bySampleCount(800), PhyphoxQuantileSketch.DEFAULT_K, 42);
+		for (int i = 0; i < 10000; i++) {
+			quantiles.add(Double.NaN, i);
+		}
+		//the window includes up to one pane before the last 800 values
+		assertTrue(quantiles.getCount() >= 800 && quantiles.getCount() < 900);
+		assertEquals(9999, quantiles.getQuantile(1));
+		assertEquals(10000 - quantiles.getCount(), quantiles.getQuantile(0));
+		assertEquals(9999 - quantiles.getCount() / 2, quantiles.getQuantile(0.5), RANK_ERROR * quantiles.getCount());
+		
+		PhyphoxQuantiles timeQuantiles = new PhyphoxQuantiles("x", 0, PhyphoxRetentionPolicy.byTimeWindow(8), PhyphoxQuantileSketch.DEFAULT_K, 42);
+		for (int i = 0; i < 1000; i++) {
+			timeQuantiles.add(i / 10., i);
+		}
+		//the values of the last 8 or 9 seconds
+		assertTrue(timeQuantiles.getQuantile(0) >= 900 && timeQuantiles.getQuantile(0) <= 920);
+		assertEquals(999, timeQuantiles.getQuantile(1));
+		
+		timeQuantiles.reset();
+		assertEquals(0, timeQuantiles.getCount());
+		assertEquals(Double.NaN, timeQuantiles.getQuantile(0.5));
+	}
+	
+	@Test
+	public void testExperimentQuantiles() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "acc");
+		experiment.setContinuesBuffer("time");
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {0, 1, 2}), new PhyphoxBuffer("acc", new double[] {3, 1, 2}))));
+		
+		PhyphoxQuantiles session = experiment.createQuantiles("acc", PhyphoxRetentionPolicy.UNLIMITED);
+		PhyphoxQuantiles lastSecond = experiment.createQuantiles(experiment.getBufferHandle("acc"), PhyphoxRetentionPolicy.byTimeWindow(1));
+		assertEquals(2, session.getQuantile(0.5));
+		assertEquals(1, lastSecond.getQuantile(0));
+		
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {3, 4}), new PhyphoxBuffer("acc", new double[] {10, 11}))));
+		assertEquals(5, session.getCount());
+		assertEquals(11, session.getQuantile(1));
+		assertEquals(10, lastSecond.getQuantile(0));
+		
+		//the sketches of several experiments can be merged
+		PhyphoxQuantileSketch fleet = session.getSketch();
+		fleet.merge(lastSecond.getSketch());
+		assertEquals(session.getCount() + lastSecond.getCount(), fleet.getCount());
+		
+		experiment.removeQuantiles(session);
+		experiment.clearBuffer("acc");
+		assertEquals(5, session.getCount());
+		assertEquals(0, lastSecond.getCount());
+	}
+}
\ No newline at end of file
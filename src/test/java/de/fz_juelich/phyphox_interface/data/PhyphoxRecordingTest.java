@@ -0,0 +1,116 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class PhyphoxRecordingTest {
+	
+	private static final double epsilon = 1e-5;
+	
+	@Test
+	public void testRecordExperiment() throws IOException {
+		Path directory = Files.createTempDirectory("phyphox_test").resolve("recording");
+		PhyphoxExperiment experiment = new PhyphoxExperiment("time", "buffer_x");
+		experiment.setContinuesBuffer("time");
+		experiment.startRecording(directory);
+		
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {1, 2, 3}), new PhyphoxBuffer("buffer_x", new double[] {10, 20, 30}))));
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {4, 5}), new PhyphoxBuffer("buffer_x", new double[] {40, 50}))));
+		experiment.stopRecording();
+		
+		try (PhyphoxRecordingReader reader = new PhyphoxRecordingReader(directory)) {
+			assertEquals(Arrays.asList("time", "buffer_x"), reader.getBufferNames());
+			assertEquals("time", reader.getTimeBufferName());
+			assertEquals(5, reader.size("buffer_x"));
+			assertArrayEquals(new double[] {1, 2, 3, 4, 5}, reader.getBuffer("time").getData(), epsilon);
+			assertArrayEquals(new double[] {20, 30, 40}, reader.getBuffer("buffer_x", 1, 4).getData(), epsilon);
+			assertArrayEquals(new double[] {20, 30, 40}, reader.getBufferInTimeRange("buffer_x", 1.5, 4).getData(), epsilon);
+		}
+	}
+	
+	@Test
+	public void testTimeRangeOverBlocks() throws IOException {
+		Path directory = Files.createTempDirectory("phyphox_test").resolve("recording");
+		try (PhyphoxRecordingWriter writer = new PhyphoxRecordingWriter(directory, Arrays.asList("time", "x"), "time", 8)) {
+			for (int i = 0; i < 100; i++) {
+				writer.write(Arrays.asList(new PhyphoxBuffer("time", new double[] {2 * i, 2 * i + 1}),
+						new PhyphoxBuffer("x", new double[] {-2 * i, -2 * i - 1})));
+			}
+		}
+		
+		try (PhyphoxRecordingReader reader = new PhyphoxRecordingReader(directory)) {
+			PhyphoxBuffer range = reader.getBufferInTimeRange("x", 41, 57.5);
+			assertEquals(17, range.size());
+			assertEquals(-41, range.get(0), epsilon);
+			assertEquals(-57, range.get(16), epsilon);
+			//the values of the recording can be extended on the heap
+			range.attachData(new double[] {42});
+			assertEquals(42, range.get(17), epsilon);
+			
+			assertEquals(0, reader.getBufferInTimeRange("x", 500, 600).size());
+			assertEquals(200, reader.getBufferInTimeRange("time", -1, 1000).size());
+		}
+	}
+	
+	private static boolean isWriterThreadBlocked() {
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().equals("phyphox_recording_thread") && thread.getState() == Thread.State.BLOCKED) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	@Test
+	public void testQueueOverflow() throws IOException, InterruptedException {
+		Path directory = Files.createTempDirectory("phyphox_test").resolve("recording");
+		PhyphoxRecordingWriter writer = new PhyphoxRecordingWriter(directory, Arrays.asList("time"), "time", 8, 2);
+		synchronized (writer) {
+			//the writer thread takes the first batch, but can't write it while the lock is held, so the next batches fill the queue
+			writer.append(Arrays.asList(new PhyphoxBuffer("time", new double[] {1, 2})));
+			while (!isWriterThreadBlocked()) {
+				Thread.sleep(1);
+			}
+			writer.append(Arrays.asList(new PhyphoxBuffer("time", new double[] {3})));
+			writer.append(Arrays.asList(new PhyphoxBuffer("time", new double[] {4})));
+			assertEquals(2, writer.getQueueSize());
+			//the queue is full, so the recording is stopped (the data is dropped, but the caller is not stopped)
+			writer.append(Arrays.asList(new PhyphoxBuffer("time", new double[] {5})));
+		}
+		writer.append(Arrays.asList(new PhyphoxBuffer("time", new double[] {6})));
+		assertThrows(IOException.class, writer::close);
+		assertThrows(IllegalStateException.class, () -> writer.append(Arrays.asList(new PhyphoxBuffer("time", new double[] {7}))));
+		
+		//the data that was queued before the overflow was written
+		try (PhyphoxRecordingReader reader = new PhyphoxRecordingReader(directory)) {
+			assertArrayEquals(new double[] {1, 2, 3, 4}, reader.getBuffer("time").getData(), epsilon);
+		}
+	}
+	
+	@Test
+	public void testBufferAddedAfterStart() throws IOException {
+		Path directory = Files.createTempDirectory("phyphox_test").resolve("recording");
+		PhyphoxExperiment experiment = new PhyphoxExperiment("buffer_x");
+		experiment.startRecording(directory);
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("buffer_x", new double[] {1, 2}))));
+		//a buffer that is added after the recording was started is not recorded, but doesn't stop the recording
+		experiment.setContinuesBuffer("time");
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {10}), new PhyphoxBuffer("buffer_x", new double[] {3}))));
+		experiment.stopRecording();
+		
+		try (PhyphoxRecordingReader reader = new PhyphoxRecordingReader(directory)) {
+			assertEquals(Arrays.asList("buffer_x"), reader.getBufferNames());
+			assertArrayEquals(new double[] {1, 2, 3}, reader.getBuffer("buffer_x").getData(), epsilon);
+		}
+	}
+}
\ No newline at end of file
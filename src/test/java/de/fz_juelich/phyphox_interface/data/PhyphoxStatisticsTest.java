@@ -0,0 +1,114 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PhyphoxStatisticsTest {
+	
+	private static final double epsilon = 1e-9;
+	
+	/**
+	 * Compare the statistics to the statistics of the values, that are calculated directly.
+	 */
+	private static void assertStatistics(double[] values, PhyphoxStatistics statistics) {
+		assertEquals(values.length, statistics.getCount());
+		double mean = Arrays.stream(values).average().orElse(Double.NaN);
+		assertEquals(mean, statistics.getMean(), epsilon);
+		assertEquals(Arrays.stream(values).min().orElse(Double.NaN), statistics.getMin());
+		assertEquals(Arrays.stream(values).max().orElse(Double.NaN), statistics.getMax());
+		double rms = Math.sqrt(Arrays.stream(values).map(value -> value * value).average().orElse(Double.NaN));
+		assertEquals(rms, statistics.getRms(), epsilon);
+		if (values.length > 1) {
+			double variance = Arrays.stream(values).map(value -> (value - mean) * (value - mean)).sum() / (values.length - 1);
+			assertEquals(variance, statistics.getVariance(), epsilon);
+		}
+		else {
+			assertEquals(Double.NaN, statistics.getVariance());
+		}
+	}
+	
+	@Test
+	public void testUnlimited() {
+		Random random = new Random(42);
+		PhyphoxStatistics statistics = new PhyphoxStatistics("x", 0, PhyphoxRetentionPolicy.UNLIMITED);
+		assertStatistics(new double[0], statistics);
+		double[] values = new double[1000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 10 + random.nextGaussian();
+			statistics.add(Double.NaN, values[i]);
+		}
+		statistics.add(Double.NaN, Double.NaN);//ignored
+		assertStatistics(values, statistics);
+		
+		statistics.reset();
+		assertStatistics(new double[0], statistics);
+	}
+	
+	@Test
+	public void testSampleWindow() {
+		Random random = new Random(42);
+		PhyphoxStatistics statistics = new PhyphoxStatistics("x", 0, PhyphoxRetentionPolicy.bySampleCount(50));
+		double[] values = new double[1000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 1000 + random.nextInt(100);
+			statistics.add(Double.NaN, values[i]);
+			assertStatistics(Arrays.copyOfRange(values, Math.max(0, i - 49), i + 1), statistics);
+		}
+	}
+	
+	@Test
+	public void testTimeWindow() {
+		Random random = new Random(42);
+		PhyphoxStatistics statistics = new PhyphoxStatistics("x", 0, PhyphoxRetentionPolicy.byTimeWindow(10));
+		double[] times = new double[1000];
+		double[] values = new double[1000];
+		for (int i = 0; i < values.length; i++) {
+			times[i] = i == 0 ? 0 : times[i - 1] + random.nextInt(3);
+			values[i] = random.nextGaussian();
+			statistics.add(times[i], values[i]);
+			int first = i;
+			while (first > 0 && times[first - 1] >= times[i] - 10) {
+				first--;
+			}
+			assertStatistics(Arrays.copyOfRange(values, first, i + 1), statistics);
+		}
+	}
+	
+	@Test
+	public void testExperimentStatistics() {
+		PhyphoxExperiment experiment = new PhyphoxExperiment("acc_x");
+		assertThrows(IllegalStateException.class, () -> experiment.createStatistics("acc_x", PhyphoxRetentionPolicy.byTimeWindow(1)));
+		experiment.setContinuesBuffer("time");
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {0, 1}), new PhyphoxBuffer("acc_x", new double[] {1, 2}))));
+		
+		//the statistics start with the values of the buffer
+		PhyphoxStatistics session = experiment.createStatistics("acc_x", PhyphoxRetentionPolicy.UNLIMITED);
+		PhyphoxStatistics lastValues = experiment.createStatistics(experiment.getBufferHandle("acc_x"), PhyphoxRetentionPolicy.bySampleCount(2));
+		PhyphoxStatistics lastSeconds = experiment.createStatistics("acc_x", PhyphoxRetentionPolicy.byTimeWindow(1.5));
+		assertStatistics(new double[] {1, 2}, session);
+		
+		//the values without a time are added to the time window later
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {2}), new PhyphoxBuffer("acc_x", new double[] {6, 3}))));
+		assertStatistics(new double[] {1, 2, 6, 3}, session);
+		assertStatistics(new double[] {6, 3}, lastValues);
+		assertStatistics(new double[] {2, 6}, lastSeconds);
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(Arrays.asList(new PhyphoxBuffer("time", new double[] {3}))));
+		assertStatistics(new double[] {6, 3}, lastSeconds);
+		
+		experiment.clearBuffer("acc_x");
+		assertStatistics(new double[0], session);
+		experiment.removeStatistics(session);
+		experiment.addNewDataToBuffers(new ArrayList<PhyphoxBuffer>(
+				Arrays.asList(new PhyphoxBuffer("time", new double[] {4}), new PhyphoxBuffer("acc_x", new double[] {5}))));
+		assertStatistics(new double[0], session);
+		assertStatistics(new double[] {5}, lastValues);
+	}
+}
\ No newline at end of file
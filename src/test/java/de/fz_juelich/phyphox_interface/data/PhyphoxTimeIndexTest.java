@@ -0,0 +1,47 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PhyphoxTimeIndexTest {
+	
+	/**
+	 * Find the first index like the time index, but using a linear search.
+	 */
+	private static int findFirstIndexLinear(PhyphoxBuffer buffer, double value, boolean after) {
+		for (int i = 0; i < buffer.size(); i++) {
+			if (buffer.get(i) > value || (!after && buffer.get(i) == value)) {
+				return i;
+			}
+		}
+		return buffer.size();
+	}
+	
+	@Test
+	public void testFindFirstIndex() {
+		Random random = new Random(42);
+		PhyphoxBuffer time = new PhyphoxBuffer("time", new double[0]);
+		time.setMaxSize(50);
+		PhyphoxTimeIndex index = new PhyphoxTimeIndex(4);
+		double lastTime = 0;
+		for (int update = 0; update < 100; update++) {
+			double[] newTimes = new double[random.nextInt(7)];
+			for (int i = 0; i < newTimes.length; i++) {
+				//some times are equal
+				lastTime += random.nextInt(3);
+				newTimes[i] = lastTime;
+			}
+			time.attachData(newTimes);
+			index.update(time);
+			
+			for (int query = 0; query < 10; query++) {
+				double value = random.nextInt((int) lastTime + 3) - 1;
+				assertEquals(findFirstIndexLinear(time, value, false), index.findFirstIndex(time, value, false));
+				assertEquals(findFirstIndexLinear(time, value, true), index.findFirstIndex(time, value, true));
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+package de.fz_juelich.phyphox_interface.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class PhyphoxUpdateTimerTest {
+	
+	private static final long MILLIS = 1000000L;//one millisecond in nanoseconds
+	
+	@Test
+	public void testFixedDelay() {
+		PhyphoxUpdateTimer timer = new PhyphoxUpdateTimer(PhyphoxUpdateMode.FIXED_DELAY, PhyphoxMissedUpdatePolicy.SKIP, 100);
+		timer.start(0);
+		
+		//the duration of the update is not subtracted
+		assertEquals(100 * MILLIS, timer.getDelayToNextUpdate(30 * MILLIS));
+		assertEquals(100 * MILLIS, timer.getDelayToNextUpdate(250 * MILLIS));
+	}
+	
+	@Test
+	public void testFixedRate() {
+		PhyphoxUpdateTimer timer = new PhyphoxUpdateTimer(PhyphoxUpdateMode.FIXED_RATE, PhyphoxMissedUpdatePolicy.SKIP, 100);
+		timer.start(0);
+		
+		//the first update took 30 ms
+		assertEquals(70 * MILLIS, timer.getDelayToNextUpdate(30 * MILLIS));
+		//the second update (started at 100 ms) took 45 ms
+		assertEquals(55 * MILLIS, timer.getDelayToNextUpdate(145 * MILLIS));
+		assertEquals(0, timer.getMissedUpdates());
+	}
+	
+	@Test
+	public void testFixedRate_skipMissedUpdates() {
+		PhyphoxUpdateTimer timer = new PhyphoxUpdateTimer(PhyphoxUpdateMode.FIXED_RATE, PhyphoxMissedUpdatePolicy.SKIP, 100);
+		timer.start(0);
+		
+		//the first update took 250 ms, so the updates at 100 and 200 ms were missed
+		assertEquals(50 * MILLIS, timer.getDelayToNextUpdate(250 * MILLIS));
+		assertEquals(2, timer.getMissedUpdates());
+		//the next update (at 300 ms) is fast again
+		assertEquals(90 * MILLIS, timer.getDelayToNextUpdate(310 * MILLIS));
+	}
+	
+	@Test
+	public void testFixedRate_coalesceMissedUpdates() {
+		PhyphoxUpdateTimer timer = new PhyphoxUpdateTimer(PhyphoxUpdateMode.FIXED_RATE, PhyphoxMissedUpdatePolicy.COALESCE, 100);
+		timer.start(0);
+		
+		//the first update took 250 ms; one update is started immediately (replacing the update at 200 ms)
+		assertEquals(0, timer.getDelayToNextUpdate(250 * MILLIS));
+		assertEquals(1, timer.getMissedUpdates());
+		//the coalesced update took 20 ms; the next regular update is at 300 ms
+		assertEquals(30 * MILLIS, timer.getDelayToNextUpdate(270 * MILLIS));
+	}
+	
+	@Test
+	public void testAdaptiveUpdateRate() {
+		PhyphoxAdaptiveUpdateRate adaptive = new PhyphoxAdaptiveUpdateRate(10, 1000, 50);
+		PhyphoxUpdateTimer timer = new PhyphoxUpdateTimer(PhyphoxUpdateMode.FIXED_DELAY, PhyphoxMissedUpdatePolicy.SKIP, 100, adaptive);
+		timer.start(0);
+		
+		//the phone records 1 sample per millisecond, so 50 samples are received every 50 ms
+		timer.reportUpdate(0, 5 * MILLIS, 100);
+		timer.reportUpdate(100 * MILLIS, 105 * MILLIS, 100);
+		assertEquals(50, timer.getUpdateRate());
+		assertEquals(50 * MILLIS, timer.getDelayToNextUpdate(105 * MILLIS));
+	}
+	
+	@Test
+	public void testAdaptiveUpdateRate_bounds() {
+		PhyphoxAdaptiveUpdateRate adaptive = new PhyphoxAdaptiveUpdateRate(10, 200, 50);
+		PhyphoxUpdateTimer timer = new PhyphoxUpdateTimer(PhyphoxUpdateMode.FIXED_DELAY, PhyphoxMissedUpdatePolicy.SKIP, 100, adaptive);
+		timer.start(0);
+		
+		//no new samples; the update rate is increased up to the maximum
+		timer.reportUpdate(0, 5 * MILLIS, 0);
+		for (int i = 1; i < 5; i++) {
+			timer.reportUpdate(i * 100 * MILLIS, i * 100 * MILLIS + 5 * MILLIS, 0);
+		}
+		assertEquals(200, timer.getUpdateRate());
+		
+		//a lot of new samples, but the update rate is not lower than the duration of an update
+		PhyphoxUpdateTimer fastTimer = new PhyphoxUpdateTimer(PhyphoxUpdateMode.FIXED_DELAY, PhyphoxMissedUpdatePolicy.SKIP, 100, adaptive);
+		fastTimer.reportUpdate(0, 30 * MILLIS, 10000);
+		fastTimer.reportUpdate(100 * MILLIS, 130 * MILLIS, 10000);
+		assertEquals(30, fastTimer.getUpdateRate());
+	}
+}
\ No newline at end of file